@@ -0,0 +1,136 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.convertor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import swim.structure.Value;
+
+/**
+ * Cost of {@link MessageConvertor#toValue} for each of the payload shapes the sink receives.
+ */
+@State(Scope.Benchmark)
+public class MessageConvertorBenchmark {
+
+  private static final String JSON = "{\"userId\": \"User_5\", \"temperature\": 21.5, \"humidity\": 40,"
+        + " \"location\": {\"site\": \"plant-7\", \"line\": 3}, \"alarms\": [\"low-battery\", \"door-open\"]}";
+
+  private final MessageConvertor messageConvertor = new MessageConvertor(MessageConvertor.DEFAULT_SCHEMA_CACHE_SIZE,
+        BytesFormat.DATA, Collections.emptyList());
+  private final MessageConvertor jsonBytesConvertor = new MessageConvertor(MessageConvertor.DEFAULT_SCHEMA_CACHE_SIZE,
+        BytesFormat.JSON, Collections.emptyList());
+
+  private Map<String, Object> schemalessMap;
+  private byte[] jsonBytes;
+  private Schema structSchema;
+  private Struct struct;
+  private Schema arraySchema;
+  private List<Object> array;
+  private Schema mapSchema;
+  private Map<String, Object> map;
+
+  @Setup
+  public void setup() {
+    final Map<String, Object> location = new HashMap<>();
+    location.put("site", "plant-7");
+    location.put("line", 3);
+    this.schemalessMap = new HashMap<>();
+    this.schemalessMap.put("userId", "User_5");
+    this.schemalessMap.put("temperature", 21.5);
+    this.schemalessMap.put("humidity", 40);
+    this.schemalessMap.put("location", location);
+    this.schemalessMap.put("alarms", List.of("low-battery", "door-open"));
+
+    this.jsonBytes = JSON.getBytes(StandardCharsets.UTF_8);
+
+    final Schema locationSchema = SchemaBuilder.struct()
+          .field("site", Schema.STRING_SCHEMA)
+          .field("line", Schema.INT32_SCHEMA)
+          .build();
+    this.structSchema = SchemaBuilder.struct()
+          .field("userId", Schema.STRING_SCHEMA)
+          .field("temperature", Schema.FLOAT64_SCHEMA)
+          .field("humidity", Schema.INT32_SCHEMA)
+          .field("location", locationSchema)
+          .field("alarms", SchemaBuilder.array(Schema.STRING_SCHEMA).build())
+          .build();
+    final Struct locationStruct = new Struct(locationSchema).put("site", "plant-7").put("line", 3);
+    this.struct = new Struct(this.structSchema)
+          .put("userId", "User_5")
+          .put("temperature", 21.5)
+          .put("humidity", 40)
+          .put("location", locationStruct)
+          .put("alarms", List.of("low-battery", "door-open"));
+
+    this.arraySchema = SchemaBuilder.struct()
+          .field("readings", SchemaBuilder.array(locationSchema).build())
+          .build();
+    final List<Object> readings = new ArrayList<>();
+    for (int i = 0; i < 16; i += 1) {
+      readings.add(locationStruct);
+    }
+    this.array = readings;
+
+    this.mapSchema = SchemaBuilder.struct()
+          .field("tags", SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.INT64_SCHEMA).build())
+          .build();
+    this.map = new HashMap<>();
+    for (int i = 0; i < 16; i += 1) {
+      this.map.put("tag-" + i, (long) i);
+    }
+  }
+
+  @Benchmark
+  public Value schemalessMap() {
+    return this.messageConvertor.toValue(this.schemalessMap, null);
+  }
+
+  @Benchmark
+  public Value jsonString() {
+    return this.messageConvertor.toValue(JSON, null);
+  }
+
+  @Benchmark
+  public Value jsonBytes() {
+    return this.jsonBytesConvertor.toValue(this.jsonBytes, null);
+  }
+
+  @Benchmark
+  public Value nestedStruct() {
+    return this.messageConvertor.toValue(this.struct, this.structSchema);
+  }
+
+  @Benchmark
+  public Value structWithArray() {
+    return this.messageConvertor.toValue(new Struct(this.arraySchema).put("readings", this.array), this.arraySchema);
+  }
+
+  @Benchmark
+  public Value structWithMap() {
+    return this.messageConvertor.toValue(new Struct(this.mapSchema).put("tags", this.map), this.mapSchema);
+  }
+
+}
@@ -0,0 +1,109 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.convertor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import swim.structure.Value;
+
+/**
+ * Compares converting nested, Avro like, structs through the compiled schema writers against
+ * walking the schema for every record, and against only converting a few projected fields.
+ */
+@State(Scope.Benchmark)
+public class SchemaConvertorBenchmark {
+
+  private final MessageConvertor compiledConvertor = new MessageConvertor(MessageConvertor.DEFAULT_SCHEMA_CACHE_SIZE,
+        BytesFormat.DATA, Collections.emptyList());
+  private final MessageConvertor uncompiledConvertor = new MessageConvertor(0, BytesFormat.DATA,
+        Collections.emptyList());
+  private final MessageConvertor projectedConvertor = new MessageConvertor(MessageConvertor.DEFAULT_SCHEMA_CACHE_SIZE,
+        BytesFormat.DATA, Arrays.asList("deviceId", "location.region", "readings.value"));
+
+  private Schema schema;
+  private Struct struct;
+
+  @Setup
+  public void setup() {
+    final Schema locationSchema = SchemaBuilder.struct().name("Location")
+          .field("latitude", Schema.FLOAT64_SCHEMA)
+          .field("longitude", Schema.FLOAT64_SCHEMA)
+          .field("region", Schema.STRING_SCHEMA)
+          .build();
+    final Schema readingSchema = SchemaBuilder.struct().name("Reading")
+          .field("sensor", Schema.STRING_SCHEMA)
+          .field("timestamp", Schema.INT64_SCHEMA)
+          .field("value", Schema.FLOAT64_SCHEMA)
+          .field("valid", Schema.BOOLEAN_SCHEMA)
+          .build();
+    this.schema = SchemaBuilder.struct().name("Device").version(1)
+          .field("deviceId", Schema.STRING_SCHEMA)
+          .field("firmware", Schema.INT32_SCHEMA)
+          .field("location", locationSchema)
+          .field("readings", SchemaBuilder.array(readingSchema).build())
+          .field("tags", SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.STRING_SCHEMA).build())
+          .field("payload", Schema.BYTES_SCHEMA)
+          .build();
+
+    final List<Struct> readings = new ArrayList<>();
+    for (int i = 0; i < 8; i += 1) {
+      readings.add(new Struct(readingSchema)
+            .put("sensor", "sensor-" + i)
+            .put("timestamp", 1660000000000L + i)
+            .put("value", 20.0 + i)
+            .put("valid", i % 2 == 0));
+    }
+    final Map<String, String> tags = new HashMap<>();
+    tags.put("site", "plant-7");
+    tags.put("line", "assembly");
+    this.struct = new Struct(this.schema)
+          .put("deviceId", "device-42")
+          .put("firmware", 7)
+          .put("location", new Struct(locationSchema)
+                .put("latitude", 37.77)
+                .put("longitude", -122.42)
+                .put("region", "us-west"))
+          .put("readings", readings)
+          .put("tags", tags)
+          .put("payload", new byte[] {1, 2, 3, 4});
+  }
+
+  @Benchmark
+  public Value compiled() {
+    return this.compiledConvertor.toValue(this.struct, this.schema);
+  }
+
+  @Benchmark
+  public Value uncompiled() {
+    return this.uncompiledConvertor.toValue(this.struct, this.schema);
+  }
+
+  @Benchmark
+  public Value projected() {
+    return this.projectedConvertor.toValue(this.struct, this.schema);
+  }
+
+}
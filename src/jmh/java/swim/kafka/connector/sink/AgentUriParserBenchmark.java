@@ -0,0 +1,102 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import swim.json.Json;
+import swim.kafka.connector.id.AgentIdSource;
+import swim.kafka.connector.id.AgentUriCache;
+import swim.kafka.connector.id.AgentUriParser;
+import swim.kafka.connector.id.RawFieldScanner;
+import swim.structure.Selector;
+import swim.structure.Text;
+import swim.structure.Value;
+import swim.uri.Uri;
+import swim.uri.UriPattern;
+
+/**
+ * Cost of computing the agent uri of a record from its key, from a field of its value, and from a
+ * field of its encoded value in passthrough mode, with and without the agent uri cache.
+ */
+@State(Scope.Benchmark)
+public class AgentUriParserBenchmark {
+
+  @Param({"1", "1000", "100000"})
+  public int idCardinality;
+
+  @Param({"0", "10000"})
+  public int cacheSize;
+
+  private AgentUriParser agentUriParser;
+
+  private RoutingPlan keyPlan;
+  private RoutingPlan valuePlan;
+  private Value[] keys;
+  private Value[] values;
+  private byte[][] encodedValues;
+  private int index;
+
+  @Setup
+  public void setup() {
+    this.agentUriParser = new AgentUriParser(this.cacheSize, AgentUriCache.Policy.SLRU);
+    final Uri hostUri = Uri.parse("warp://localhost:9001");
+    final Uri laneUri = Uri.parse("latest");
+    final UriPattern agentUriPattern = UriPattern.parse("/agent/:id");
+    this.keyPlan = new RoutingPlan(HostRouter.of(hostUri), Collections.singletonList(new Route(
+          SwimSinkConfig.DEFAULT_ROUTE_NAME, laneUri, agentUriPattern, Selector.identity(), AgentIdSource.KEY, null,
+          null, null, LaneType.VALUE, null, false, null)));
+    this.valuePlan = new RoutingPlan(HostRouter.of(hostUri), Collections.singletonList(new Route(
+          SwimSinkConfig.DEFAULT_ROUTE_NAME, laneUri, agentUriPattern, Selector.identity().get("userId"),
+          AgentIdSource.VALUE, null, RawFieldScanner.forSelector("$userId"), null, LaneType.VALUE, null, false, null)));
+
+    this.keys = new Value[this.idCardinality];
+    this.values = new Value[this.idCardinality];
+    this.encodedValues = new byte[this.idCardinality][];
+    for (int i = 0; i < this.idCardinality; i += 1) {
+      final String json = "{\"userId\": \"User_" + i + "\", \"temperature\": 21.5, \"humidity\": 40}";
+      this.keys[i] = Text.from("User_" + i);
+      this.values[i] = Json.parse(json);
+      this.encodedValues[i] = json.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  private int nextIndex() {
+    final int index = this.index;
+    this.index = index + 1 < this.idCardinality ? index + 1 : 0;
+    return index;
+  }
+
+  @Benchmark
+  public Uri fromKey() {
+    return this.agentUriParser.computeAgentUri(this.keys[nextIndex()], Value.absent(), this.keyPlan);
+  }
+
+  @Benchmark
+  public Uri fromValueField() {
+    return this.agentUriParser.computeAgentUri(Value.absent(), this.values[nextIndex()], this.valuePlan);
+  }
+
+  @Benchmark
+  public Uri fromEncodedValueField() {
+    return this.agentUriParser.computeAgentUriFromRaw(Value.absent(), this.encodedValues[nextIndex()], this.valuePlan);
+  }
+
+}
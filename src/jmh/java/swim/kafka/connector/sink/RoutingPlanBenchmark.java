@@ -0,0 +1,76 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import swim.kafka.connector.id.AgentUriParser;
+import swim.structure.Record;
+import swim.structure.Value;
+import swim.uri.Uri;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_EXTRACTOR_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_URI_PATTERN_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_HOST_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP;
+
+/**
+ * Compares the per record routing cost of reading the {@link SwimSinkConfig} on every record
+ * against the pre-parsed {@link RoutingPlan}.
+ */
+@State(Scope.Benchmark)
+public class RoutingPlanBenchmark {
+
+  private final AgentUriParser agentUriParser = new AgentUriParser();
+
+  private SwimSinkConfig config;
+  private RoutingPlan plan;
+  private Value value;
+
+  @Setup
+  public void setup() {
+    final Map<String, String> props = new HashMap<>();
+    props.put(SWIM_HOST_URI_PROP, "warp://localhost:9001");
+    props.put(SWIM_AGENT_URI_PATTERN_PROP, "/agent/:id");
+    props.put(SWIM_LANE_URI_PROP, "latest");
+    props.put(SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP, "true");
+    props.put(SWIM_AGENT_ID_EXTRACTOR_PROP, "$userId");
+    this.config = new SwimSinkConfig(props);
+    this.plan = RoutingPlan.from(this.config);
+    this.value = Record.create(3).slot("userId", "User_5").slot("temperature", 21.5).slot("humidity", 40);
+  }
+
+  @Benchmark
+  public void routeWithConfig(Blackhole blackhole) {
+    final Uri agentUri = this.agentUriParser.computeAgentUri(Value.absent(), this.value, this.config);
+    blackhole.consume(this.config.getHostUri());
+    blackhole.consume(agentUri);
+    blackhole.consume(this.config.getLaneUri());
+  }
+
+  @Benchmark
+  public void routeWithPlan(Blackhole blackhole) {
+    final Uri agentUri = this.agentUriParser.computeAgentUri(Value.absent(), this.value, this.plan);
+    blackhole.consume(this.plan.getHostUri());
+    blackhole.consume(agentUri);
+    blackhole.consume(this.plan.getLaneUri());
+  }
+
+}
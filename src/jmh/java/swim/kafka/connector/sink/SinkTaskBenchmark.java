@@ -0,0 +1,151 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import swim.client.ClientRuntime;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_EXTRACTOR_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_URI_PATTERN_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_CONVERSION_PARALLELISM_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_HOST_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_VALUE_PASSTHROUGH_PROP;
+
+/**
+ * End to end cost of {@link SwimKafkaSinkTask#put} for a batch of records, from conversion and
+ * routing to the acknowledgement of the commands, against a client that acknowledges every
+ * command immediately. Scores are per record.
+ */
+@State(Scope.Benchmark)
+public class SinkTaskBenchmark {
+
+  static final int BATCH_SIZE = 500;
+  static final String TOPIC = "benchmark";
+
+  @Param({"schemaless", "json", "struct", "passthrough"})
+  public String payload;
+
+  @Param({"1", "4"})
+  public int conversionParallelism;
+
+  private SwimKafkaSinkTask task;
+  private List<SinkRecord> batch;
+  private Map<TopicPartition, OffsetAndMetadata> offsets;
+
+  @Setup
+  public void setup() {
+    final Map<String, String> props = new HashMap<>();
+    props.put(SWIM_HOST_URI_PROP, "warp://localhost:9001");
+    props.put(SWIM_AGENT_URI_PATTERN_PROP, "/agent/:id");
+    props.put(SWIM_LANE_URI_PROP, "latest");
+    props.put(SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP, "true");
+    props.put(SWIM_AGENT_ID_EXTRACTOR_PROP, "$userId");
+    props.put(SWIM_VALUE_PASSTHROUGH_PROP, Boolean.toString("passthrough".equals(this.payload)));
+    props.put(SWIM_CONVERSION_PARALLELISM_PROP, Integer.toString(this.conversionParallelism));
+
+    final Set<TopicPartition> assignment = new HashSet<>();
+    assignment.add(new TopicPartition(TOPIC, 0));
+    this.task = new StubSinkTask();
+    this.task.initialize(new StubSinkTaskContext(props, assignment));
+    this.task.start(props);
+    this.batch = makeBatch(this.payload);
+    this.offsets = Collections.singletonMap(new TopicPartition(TOPIC, 0), new OffsetAndMetadata(BATCH_SIZE));
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.task.close(Collections.singleton(new TopicPartition(TOPIC, 0)));
+    this.task.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public Map<TopicPartition, OffsetAndMetadata> put() {
+    this.task.put(this.batch);
+    return this.task.preCommit(this.offsets);
+  }
+
+  static List<SinkRecord> makeBatch(String payload) {
+    final Schema schema = SchemaBuilder.struct()
+          .field("userId", Schema.STRING_SCHEMA)
+          .field("temperature", Schema.FLOAT64_SCHEMA)
+          .field("humidity", Schema.INT32_SCHEMA)
+          .build();
+    final List<SinkRecord> records = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i += 1) {
+      final String userId = "User_" + (i % 100);
+      final String json = "{\"userId\": \"" + userId + "\", \"temperature\": 21.5, \"humidity\": " + i + "}";
+      final Schema valueSchema;
+      final Object value;
+      switch (payload) {
+        case "schemaless":
+          final Map<String, Object> map = new HashMap<>();
+          map.put("userId", userId);
+          map.put("temperature", 21.5);
+          map.put("humidity", i);
+          valueSchema = null;
+          value = map;
+          break;
+        case "json":
+          valueSchema = null;
+          value = json;
+          break;
+        case "struct":
+          valueSchema = schema;
+          value = new Struct(schema).put("userId", userId).put("temperature", 21.5).put("humidity", i);
+          break;
+        case "passthrough":
+          valueSchema = null;
+          value = json.getBytes(StandardCharsets.UTF_8);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown payload " + payload);
+      }
+      records.add(new SinkRecord(TOPIC, 0, null, null, valueSchema, value, i));
+    }
+    return records;
+  }
+
+  static final class StubSinkTask extends SwimKafkaSinkTask {
+
+    @Override
+    protected ClientRuntime createClientRuntime() {
+      return new StubClientRuntime();
+    }
+
+  }
+
+}
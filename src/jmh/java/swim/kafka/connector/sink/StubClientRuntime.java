@@ -0,0 +1,44 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import swim.client.ClientRuntime;
+import swim.concurrent.Cont;
+import swim.structure.Value;
+import swim.uri.Uri;
+import swim.warp.CommandMessage;
+
+/**
+ * Client that acknowledges every command as soon as it is sent, so that the benchmarks measure
+ * the cost of the sink and not of the network.
+ */
+final class StubClientRuntime extends ClientRuntime {
+
+  @Override
+  public void start() {
+    // nothing to connect to
+  }
+
+  @Override
+  public void stop() {
+    // nothing to close
+  }
+
+  @Override
+  public void command(Uri hostUri, Uri nodeUri, Uri laneUri, float prio, Value body, Cont<CommandMessage> cont) {
+    cont.bind(new CommandMessage(nodeUri, laneUri, body));
+  }
+
+}
@@ -0,0 +1,81 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkTaskContext;
+
+/**
+ * Minimal {@link SinkTaskContext} that records the assignment and the paused partitions.
+ */
+final class StubSinkTaskContext implements SinkTaskContext {
+
+  private final Map<String, String> configs;
+  private final Set<TopicPartition> assignment;
+  private final Set<TopicPartition> paused = new HashSet<>();
+
+  StubSinkTaskContext(Map<String, String> configs, Set<TopicPartition> assignment) {
+    this.configs = new HashMap<>(configs);
+    this.assignment = assignment;
+  }
+
+  @Override
+  public Map<String, String> configs() {
+    return this.configs;
+  }
+
+  @Override
+  public void offset(Map<TopicPartition, Long> offsets) {
+  }
+
+  @Override
+  public void offset(TopicPartition tp, long offset) {
+  }
+
+  @Override
+  public void timeout(long timeoutMs) {
+  }
+
+  @Override
+  public Set<TopicPartition> assignment() {
+    return Collections.unmodifiableSet(this.assignment);
+  }
+
+  @Override
+  public void pause(TopicPartition... partitions) {
+    Collections.addAll(this.paused, partitions);
+  }
+
+  @Override
+  public void resume(TopicPartition... partitions) {
+    for (TopicPartition partition : partitions) {
+      this.paused.remove(partition);
+    }
+  }
+
+  @Override
+  public void requestCommit() {
+  }
+
+  Set<TopicPartition> paused() {
+    return this.paused;
+  }
+
+}
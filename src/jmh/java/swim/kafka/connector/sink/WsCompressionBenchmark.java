@@ -0,0 +1,109 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the CPU cost and the bytes on the wire of the WebSocket permessage-deflate levels
+ * offered through {@code swim.ws.compression.level}. Every command envelope is deflated as one
+ * message, with the sync flush and the context takeover of permessage-deflate.
+ * <p>
+ * The {@code wireBytes} and {@code rawBytes} counters report the compressed and uncompressed
+ * size of the messages; their ratio is the bandwidth saved at each level.
+ */
+@State(Scope.Thread)
+public class WsCompressionBenchmark {
+
+  private static final int MESSAGE_COUNT = 500;
+
+  @Param({"0", "1", "3", "6", "9"})
+  public int compressionLevel;
+
+  private byte[][] messages;
+  private Deflater deflater;
+  private byte[] buffer;
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class WireCounters {
+
+    public long rawBytes;
+    public long wireBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      this.rawBytes = 0L;
+      this.wireBytes = 0L;
+    }
+
+  }
+
+  @Setup
+  public void setup() {
+    this.messages = new byte[MESSAGE_COUNT][];
+    for (int i = 0; i < MESSAGE_COUNT; i += 1) {
+      final String envelope = "@command(node:\"/agent/device-" + (i % 50) + "\",lane:latest)"
+            + "{deviceId:\"device-" + (i % 50) + "\",timestamp:" + (1660000000000L + i)
+            + ",temperature:" + (20.0 + (i % 13) * 0.5) + ",humidity:" + (40 + i % 7)
+            + ",location:{latitude:37.77,longitude:-122.42,region:\"us-west\"},status:\"ok\"}";
+      this.messages[i] = envelope.getBytes(StandardCharsets.UTF_8);
+    }
+    // WebSocket deflate streams are raw, without the zlib header; level 0 turns the extension off
+    this.deflater = this.compressionLevel > 0 ? new Deflater(this.compressionLevel, true) : null;
+    this.buffer = new byte[64 * 1024];
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (this.deflater != null) {
+      this.deflater.end();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGE_COUNT)
+  public long deflateMessages(WireCounters counters) {
+    long wireBytes = 0L;
+    for (byte[] message : this.messages) {
+      counters.rawBytes += message.length;
+      if (this.deflater == null) {
+        wireBytes += message.length;
+        continue;
+      }
+      this.deflater.setInput(message);
+      int length;
+      do {
+        length = this.deflater.deflate(this.buffer, 0, this.buffer.length, Deflater.SYNC_FLUSH);
+        wireBytes += length;
+      } while (length == this.buffer.length);
+      // The trailing empty block of the sync flush is not sent
+      wireBytes -= 4;
+    }
+    counters.wireBytes += wireBytes;
+    return wireBytes;
+  }
+
+}
@@ -0,0 +1,54 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package swim.kafka.connector.sink;
+
+import java.util.concurrent.atomic.LongAdder;
+import swim.app.LatestValue;
+import swim.structure.Value;
+
+/**
+ * The {@link LatestValue} agent of the test application, which also records the end to end
+ * latency of every value it receives, from the {@code sentAt} slot stamped by the load test, and
+ * optionally holds every command for a fixed time to simulate a slow host.
+ */
+public class LoadTestAgent extends LatestValue {
+
+  // Shared by all the agents of the load test
+  static final LongAdder RECEIVED = new LongAdder();
+  static volatile LatencyHistogram latencies = new LatencyHistogram(Long.MAX_VALUE);
+  static volatile long processingMillis;
+
+  @Override
+  public void didStart() {
+    // Without the start log of LatestValue, which would be written for each of the keys
+    this.latest.didSet((newValue, oldValue) -> didReceive(newValue));
+  }
+
+  private static void didReceive(Value value) {
+    final long sentAt = value.get("sentAt").longValue(0L);
+    if (sentAt != 0L) {
+      latencies.record(System.nanoTime() - sentAt);
+    }
+    RECEIVED.increment();
+    if (processingMillis > 0L) {
+      // Blocks the thread of the agent, as a host that is paused or overloaded would
+      try {
+        Thread.sleep(processingMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,29 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package swim.kafka.connector.sink;
+
+import swim.api.SwimRoute;
+import swim.api.agent.AgentRoute;
+import swim.api.plane.AbstractPlane;
+
+/**
+ * The plane of the in-process Swim server of the load test, which routes the commands of the
+ * sink to the agents of the test application.
+ */
+public class LoadTestPlane extends AbstractPlane {
+
+  @SwimRoute("/agent/:id")
+  AgentRoute<LoadTestAgent> agentRoute;
+
+}
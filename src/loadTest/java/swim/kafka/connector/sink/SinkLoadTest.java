@@ -0,0 +1,326 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package swim.kafka.connector.sink;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.sink.SinkTaskContext;
+import swim.actor.ActorSpaceDef;
+import swim.kernel.Kernel;
+import swim.server.ServerLoader;
+import swim.service.web.WebServiceDef;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_EXTRACTOR_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_URI_PATTERN_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_HOST_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP;
+
+/**
+ * Load test of the sink without a Kafka broker: drives {@link SwimKafkaSinkTask#put} with
+ * synthetic batches of records, the way the Connect worker would, against an in-process Swim
+ * server running the {@code LatestValue} agent of the test application, over a real WARP
+ * connection. Reports the sustained throughput, the end to end latency from {@code put} to the
+ * agent, and the heap and garbage collection behaviour of the JVM, which runs both sides.
+ * <p>
+ * Configured with system properties, eg: {@code -DloadTest.keys=1000}, see {@code build.gradle}
+ * for their defaults. Properties prefixed with {@code loadTest.swim.} are passed to the sink,
+ * without the {@code loadTest.} prefix, eg: {@code -DloadTest.swim.coalesce.enabled=true}.
+ */
+public final class SinkLoadTest {
+
+  static final String TOPIC = "load-test";
+  static final String PREFIX = "loadTest.";
+  static final Schema VALUE_SCHEMA = SchemaBuilder.struct()
+        .field("deviceId", Schema.STRING_SCHEMA)
+        .field("seq", Schema.INT64_SCHEMA)
+        .field("sentAt", Schema.INT64_SCHEMA)
+        .field("payload", Schema.STRING_SCHEMA)
+        .build();
+
+  private final String schema;
+  private final int keys;
+  private final int batchSize;
+  private final int partitions;
+  private final long warmupMillis;
+  private final long durationMillis;
+  private final int port;
+  private final String payload;
+  private final Map<String, String> sinkProps;
+  private final Set<TopicPartition> assignment;
+  private final Set<TopicPartition> paused;
+  // The next offset of each partition
+  private final long[] offsets;
+  private long seq;
+
+  SinkLoadTest(Properties props) {
+    this.schema = props.getProperty(PREFIX + "schema", "struct");
+    this.keys = Integer.parseInt(props.getProperty(PREFIX + "keys", "1000"));
+    this.batchSize = Integer.parseInt(props.getProperty(PREFIX + "batchSize", "500"));
+    this.partitions = Integer.parseInt(props.getProperty(PREFIX + "partitions", "4"));
+    this.warmupMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(props.getProperty(PREFIX + "warmupSeconds", "10")));
+    this.durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(props.getProperty(PREFIX + "durationSeconds",
+          "30")));
+    this.port = Integer.parseInt(props.getProperty(PREFIX + "port", "9091"));
+    final int payloadSize = Integer.parseInt(props.getProperty(PREFIX + "payloadSize", "100"));
+    final StringBuilder payload = new StringBuilder(payloadSize);
+    for (int i = 0; i < payloadSize; i += 1) {
+      payload.append((char) ('a' + i % 26));
+    }
+    this.payload = payload.toString();
+    LoadTestAgent.processingMillis = Long.parseLong(props.getProperty(PREFIX + "hostLatencyMs", "0"));
+
+    this.sinkProps = new HashMap<>();
+    this.sinkProps.put(SWIM_HOST_URI_PROP, "warp://localhost:" + this.port);
+    this.sinkProps.put(SWIM_AGENT_URI_PATTERN_PROP, "/agent/:id");
+    this.sinkProps.put(SWIM_LANE_URI_PROP, "latest");
+    this.sinkProps.put(SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP, "true");
+    this.sinkProps.put(SWIM_AGENT_ID_EXTRACTOR_PROP, "$deviceId");
+    for (String name : props.stringPropertyNames()) {
+      if (name.startsWith(PREFIX + "swim.")) {
+        this.sinkProps.put(name.substring(PREFIX.length()), props.getProperty(name));
+      }
+    }
+    this.assignment = new HashSet<>();
+    for (int i = 0; i < this.partitions; i += 1) {
+      this.assignment.add(new TopicPartition(TOPIC, i));
+    }
+    this.paused = new HashSet<>();
+    this.offsets = new long[this.partitions];
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    new SinkLoadTest(System.getProperties()).run();
+  }
+
+  void run() throws InterruptedException {
+    final Kernel kernel = ServerLoader.loadServerStack();
+    kernel.openSpace(ActorSpaceDef.fromName("load-test")).openPlane("load-test", LoadTestPlane.class);
+    kernel.openService(WebServiceDef.standard().port(this.port).spaceName("load-test"));
+    kernel.start();
+    final SwimKafkaSinkTask task = new SwimKafkaSinkTask();
+    try {
+      task.initialize(new LoadTestContext());
+      task.start(this.sinkProps);
+      System.out.println("Sink properties: " + this.sinkProps);
+      System.out.println("Warming up for " + this.warmupMillis + " ms");
+      drive(task, this.warmupMillis, false);
+      awaitReceived(this.seq);
+      LoadTestAgent.latencies = new LatencyHistogram(Long.MAX_VALUE);
+      final long receivedBefore = LoadTestAgent.RECEIVED.sum();
+      final long gcCountBefore = gcCount();
+      final long gcTimeBefore = gcTime();
+
+      System.out.println("Running for " + this.durationMillis + " ms");
+      final long seqBefore = this.seq;
+      final long startTime = System.nanoTime();
+      final long maxHeap = drive(task, this.durationMillis, true);
+      final long sent = this.seq - seqBefore;
+      task.flush(Collections.emptyMap());
+      final long sendTime = System.nanoTime() - startTime;
+      awaitReceived(this.seq);
+      report(sent, LoadTestAgent.RECEIVED.sum() - receivedBefore, sendTime, maxHeap,
+            gcCount() - gcCountBefore, gcTime() - gcTimeBefore);
+    } finally {
+      task.close(this.assignment);
+      task.stop();
+      kernel.stop();
+    }
+  }
+
+  // Puts batches for the given time, committing offsets every second; returns the peak heap usage
+  private long drive(SwimKafkaSinkTask task, long millis, boolean log) {
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    final long startTime = System.currentTimeMillis();
+    final long endTime = startTime + millis;
+    long maxHeap = 0L;
+    long nextReport = startTime + 1000L;
+    long reportSeq = this.seq;
+    long now;
+    while ((now = System.currentTimeMillis()) < endTime) {
+      // Connect keeps calling put with empty batches while the partitions are paused
+      task.put(this.paused.isEmpty() ? makeBatch() : Collections.emptyList());
+      if (now >= nextReport) {
+        task.preCommit(currentOffsets());
+        final long heap = memory.getHeapMemoryUsage().getUsed();
+        maxHeap = Math.max(maxHeap, heap);
+        if (log) {
+          System.out.printf("%6d ms: %9d msgs/s put, %9d received, heap %5d MB%s%n", now - startTime,
+                this.seq - reportSeq, LoadTestAgent.RECEIVED.sum(), heap >> 20,
+                this.paused.isEmpty() ? "" : ", paused");
+        }
+        reportSeq = this.seq;
+        nextReport += 1000L;
+      }
+    }
+    return maxHeap;
+  }
+
+  private List<SinkRecord> makeBatch() {
+    final List<SinkRecord> batch = new ArrayList<>(this.batchSize);
+    final long sentAt = System.nanoTime();
+    for (int i = 0; i < this.batchSize; i += 1) {
+      final long seq = this.seq;
+      this.seq += 1L;
+      final String deviceId = "device-" + (seq % this.keys);
+      final Schema valueSchema;
+      final Object value;
+      switch (this.schema) {
+        case "struct":
+          valueSchema = VALUE_SCHEMA;
+          value = new Struct(VALUE_SCHEMA).put("deviceId", deviceId).put("seq", seq).put("sentAt", sentAt)
+                .put("payload", this.payload);
+          break;
+        case "schemaless":
+          final Map<String, Object> map = new HashMap<>();
+          map.put("deviceId", deviceId);
+          map.put("seq", seq);
+          map.put("sentAt", sentAt);
+          map.put("payload", this.payload);
+          valueSchema = null;
+          value = map;
+          break;
+        case "json":
+          valueSchema = null;
+          value = "{\"deviceId\":\"" + deviceId + "\",\"seq\":" + seq + ",\"sentAt\":" + sentAt
+                + ",\"payload\":\"" + this.payload + "\"}";
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown schema " + this.schema);
+      }
+      // The records of a key always land on the same partition
+      final int partition = (int) (seq % this.keys % this.partitions);
+      batch.add(new SinkRecord(TOPIC, partition, null, null, valueSchema, value, this.offsets[partition]));
+      this.offsets[partition] += 1L;
+    }
+    return batch;
+  }
+
+  private Map<TopicPartition, OffsetAndMetadata> currentOffsets() {
+    final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    for (TopicPartition partition : this.assignment) {
+      offsets.put(partition, new OffsetAndMetadata(this.offsets[partition.partition()]));
+    }
+    return offsets;
+  }
+
+  // Waits up to 30 seconds for the agents to receive the records sent so far, fewer when coalescing
+  private void awaitReceived(long count) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 30000L;
+    long received = LoadTestAgent.RECEIVED.sum();
+    while (received < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100L);
+      final long next = LoadTestAgent.RECEIVED.sum();
+      if (next == received && received > 0L) {
+        // Nothing more is coming, eg: coalesced or unchanged records
+        Thread.sleep(1000L);
+        if (LoadTestAgent.RECEIVED.sum() == received) {
+          return;
+        }
+      }
+      received = next;
+    }
+  }
+
+  private void report(long sent, long received, long sendNanos, long maxHeap, long gcCount, long gcTime) {
+    final LatencyHistogram latencies = LoadTestAgent.latencies;
+    final long now = System.currentTimeMillis();
+    System.out.println();
+    System.out.printf("Records put:       %d in %d ms%n", sent, TimeUnit.NANOSECONDS.toMillis(sendNanos));
+    System.out.printf("Throughput:        %.0f msgs/s%n", sent * 1e9 / sendNanos);
+    System.out.printf("Records received:  %d%n", received);
+    // Upper bounds of power of two buckets, precise to within a factor of two
+    System.out.printf("End to end (ms):   p50 %.3f, p99 %.3f, p999 %.3f, max %.3f%n",
+          latencies.percentile(0.5, now) / 1e6, latencies.percentile(0.99, now) / 1e6,
+          latencies.percentile(0.999, now) / 1e6, latencies.max(now) / 1e6);
+    System.out.printf("Peak heap used:    %d MB of %d MB%n", maxHeap >> 20,
+          ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() >> 20);
+    System.out.printf("Garbage collected: %d collections, %d ms%n", gcCount, gcTime);
+  }
+
+  private static long gcCount() {
+    long count = 0L;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0L, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcTime() {
+    long time = 0L;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0L, gc.getCollectionTime());
+    }
+    return time;
+  }
+
+  // The context of the task, which pauses and resumes partitions as the Connect worker would
+  private final class LoadTestContext implements SinkTaskContext {
+
+    @Override
+    public Map<String, String> configs() {
+      return SinkLoadTest.this.sinkProps;
+    }
+
+    @Override
+    public void offset(Map<TopicPartition, Long> offsets) {
+    }
+
+    @Override
+    public void offset(TopicPartition tp, long offset) {
+    }
+
+    @Override
+    public void timeout(long timeoutMs) {
+    }
+
+    @Override
+    public Set<TopicPartition> assignment() {
+      return Collections.unmodifiableSet(SinkLoadTest.this.assignment);
+    }
+
+    @Override
+    public void pause(TopicPartition... partitions) {
+      Collections.addAll(SinkLoadTest.this.paused, partitions);
+    }
+
+    @Override
+    public void resume(TopicPartition... partitions) {
+      for (TopicPartition partition : partitions) {
+        SinkLoadTest.this.paused.remove(partition);
+      }
+    }
+
+    @Override
+    public void requestCommit() {
+    }
+
+  }
+
+}
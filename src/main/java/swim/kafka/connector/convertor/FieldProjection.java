@@ -0,0 +1,119 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.convertor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import swim.structure.Field;
+import swim.structure.Item;
+import swim.structure.Record;
+import swim.structure.Value;
+
+/**
+ * Tree of the field paths of the values that are kept by a {@link MessageConvertor}, eg:
+ * {@code deviceId, location.region}. The fields of structs and maps that are not on a path are
+ * never converted, and the fields of parsed values that are not on a path are pruned. Paths go
+ * through arrays, and through the values of map fields of a schema, so that
+ * {@code readings.value} keeps the {@code value} of every item of the {@code readings} array.
+ * Schemaless maps are projected like structs.
+ */
+final class FieldProjection {
+
+  // Keeps the whole value
+  static final FieldProjection ALL = new FieldProjection(null);
+
+  // Null for ALL
+  private final Map<String, FieldProjection> fields;
+
+  private FieldProjection(Map<String, FieldProjection> fields) {
+    this.fields = fields;
+  }
+
+  /**
+   * Parses dot separated field paths, optionally prefixed by {@code $} like selectors. A path
+   * keeps the whole value of its last field; no path keeps the whole value.
+   */
+  static FieldProjection parse(Collection<String> paths) {
+    if (paths == null || paths.isEmpty()) {
+      return ALL;
+    }
+    final FieldProjection projection = new FieldProjection(new HashMap<>());
+    for (String path : paths) {
+      String trimmed = path.trim();
+      if (trimmed.startsWith("$")) {
+        trimmed = trimmed.substring(1);
+      }
+      projection.add(trimmed.split("\\."), 0);
+    }
+    return projection;
+  }
+
+  private void add(String[] names, int index) {
+    final String name = names[index].trim();
+    if (name.isEmpty()) {
+      throw new IllegalArgumentException("Empty field name in path: " + String.join(".", names));
+    }
+    if (index == names.length - 1) {
+      this.fields.put(name, ALL);
+      return;
+    }
+    FieldProjection child = this.fields.get(name);
+    if (child == ALL) {
+      // A shorter path already keeps the whole field
+      return;
+    } else if (child == null) {
+      child = new FieldProjection(new HashMap<>());
+      this.fields.put(name, child);
+    }
+    child.add(names, index + 1);
+  }
+
+  boolean isAll() {
+    return this.fields == null;
+  }
+
+  /**
+   * Returns the projection of a field, or null if the field is pruned.
+   */
+  FieldProjection field(String name) {
+    return this.fields == null ? ALL : this.fields.get(name);
+  }
+
+  /**
+   * Prunes an already converted value, eg: a value parsed from JSON.
+   */
+  Value apply(Value value) {
+    if (this.fields == null || !(value instanceof Record)) {
+      return value;
+    }
+    final Record record = (Record) value;
+    final Record projected = Record.create();
+    for (Item item : record) {
+      if (item instanceof Field) {
+        final Value key = item.key();
+        final FieldProjection child = key.isDefined() ? field(key.stringValue("")) : null;
+        if (child != null) {
+          projected.add(child == ALL ? item : ((Field) item).updatedValue(child.apply(((Field) item).getValue())));
+        }
+      } else {
+        // The items of arrays are projected like the array itself
+        projected.add(apply(item.toValue()));
+      }
+    }
+    return projected;
+  }
+
+}
@@ -14,6 +14,7 @@
 
 package swim.kafka.connector.convertor;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -21,7 +22,14 @@ import java.util.Set;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Struct;
+import swim.codec.Binary;
+import swim.codec.Diagnostic;
+import swim.codec.Input;
+import swim.codec.Parser;
+import swim.codec.Unicode;
+import swim.codec.Utf8;
 import swim.json.Json;
+import swim.recon.Recon;
 import swim.structure.Record;
 import swim.structure.Value;
 import static org.apache.kafka.connect.data.Schema.Type.ARRAY;
@@ -30,24 +38,106 @@ import static org.apache.kafka.connect.data.Schema.Type.STRUCT;
 
 public class MessageConvertor {
 
-  public MessageConvertor() {
+  public static final int DEFAULT_SCHEMA_CACHE_SIZE = 1000;
 
+  // Compiled writers per schema, or null when every record walks its schema
+  private final SchemaWriterCache schemaWriters;
+  private final BytesFormat bytesFormat;
+  // The fields that are converted, FieldProjection.ALL to convert every field
+  private final FieldProjection projection;
+
+  /**
+   * Creates a convertor that keeps compiled writers for up to {@code schemaCacheSize} schemas, 0
+   * to walk the schema of every record, parses schemaless byte payloads according to
+   * {@code bytesFormat}, and only converts the fields on the given dot separated paths, eg:
+   * {@code deviceId} or {@code location.region}. Every field is converted when no path is given,
+   * or when {@code fieldPaths} is null.
+   *
+   * @throws IllegalArgumentException if a path has an empty field name.
+   */
+  public MessageConvertor(int schemaCacheSize, BytesFormat bytesFormat, List<String> fieldPaths) {
+    this.projection = FieldProjection.parse(fieldPaths);
+    this.schemaWriters = schemaCacheSize > 0 ? new SchemaWriterCache(schemaCacheSize, this.projection) : null;
+    this.bytesFormat = bytesFormat;
   }
 
   public Value toValue(Object object, Schema schema) {
     if (schema != null && object instanceof Struct) {
-      return schemaToValue((Struct) object, schema, Record.create());
+      if (this.schemaWriters != null) {
+        return this.schemaWriters.get(schema).write(object);
+      }
+      return schemaToValue((Struct) object, schema, Record.create(), this.projection);
+    } else if (this.bytesFormat != BytesFormat.DATA && object instanceof byte[]) {
+      // only whole payloads are parsed, nested bytes stay opaque; parsed values are pruned as a whole
+      return this.projection.apply(parseBytes(Binary.inputBuffer((byte[]) object)));
+    } else if (this.bytesFormat != BytesFormat.DATA && object instanceof ByteBuffer) {
+      return this.projection.apply(parseBytes(Binary.inputBuffer(((ByteBuffer) object).duplicate())));
     } else {
-      return schemalessToValue(object, Record.create());
+      return schemalessToValue(object, Record.create(), this.projection);
+    }
+  }
+
+  /**
+   * Parses a JSON, or Recon, encoded string, or UTF-8 encoded byte array or buffer, as a whole
+   * according to the bytes format, without pruning its fields. Returns null when the bytes format
+   * is {@link BytesFormat#DATA}, or when the object is not encoded.
+   */
+  public Value parseEncoded(Object object) {
+    if (this.bytesFormat == BytesFormat.DATA) {
+      return null;
+    } else if (object instanceof String) {
+      return parse(Unicode.stringInput((String) object));
+    } else if (object instanceof byte[]) {
+      return parseBytes(Binary.inputBuffer((byte[]) object));
+    } else if (object instanceof ByteBuffer) {
+      return parseBytes(Binary.inputBuffer(((ByteBuffer) object).duplicate()));
+    }
+    return null;
+  }
+
+  /**
+   * Returns a view of the object whose fields are only converted when they are read.
+   */
+  public ValueView toView(Object object, Schema schema) {
+    return new ValueView(this, object, schema);
+  }
+
+  // Converts the field on the path of a struct or of a schemaless map, null if the path goes through anything else
+  Value fieldValue(Object object, Schema schema, String[] path) {
+    FieldProjection projection = this.projection;
+    for (String name : path) {
+      if (schema != null && object instanceof Struct) {
+        final Field field = schema.field(name);
+        projection = projection.field(name);
+        if (field == null || projection == null) {
+          return Value.absent();
+        }
+        object = ((Struct) object).get(field);
+        schema = field.schema();
+      } else if (schema == null && object instanceof Map) {
+        projection = projection.field(name);
+        if (projection == null || !((Map<?, ?>) object).containsKey(name)) {
+          return Value.absent();
+        }
+        object = ((Map<?, ?>) object).get(name);
+      } else {
+        return null;
+      }
+    }
+    if (object == null) {
+      return Record.fromObject(null);
+    } else if (schema != null) {
+      return fieldToValue(schema, object, projection);
     }
+    return schemalessToValue(object, Record.create(), projection);
   }
 
-  private Value schemalessToValue(Object object, Record record) {
+  private Value schemalessToValue(Object object, Record record, FieldProjection projection) {
     if (object instanceof Collection) {
       final Collection<?> collection = (Collection<?>) object;
       final Record collectionRecord = Record.create();
       for (Object element : collection) {
-        collectionRecord.appended(schemalessToValue(element, Record.create()));
+        collectionRecord.appended(schemalessToValue(element, Record.create(), projection));
       }
       return record.isEmpty() ? collectionRecord : record.appended(collectionRecord);
     } else if (object instanceof Map) {
@@ -58,57 +148,103 @@ public class MessageConvertor {
         // only take keys of String type, ignore others
         if (key instanceof String) {
           final String keyStr = (String) key;
-          final Value valueRecord = schemalessToValue(map.get(key), Record.create());
-          mapRecord.updatedSlot(keyStr, valueRecord);
+          final FieldProjection keyProjection = projection.field(keyStr);
+          if (keyProjection != null) {
+            final Value valueRecord = schemalessToValue(map.get(key), Record.create(), keyProjection);
+            mapRecord.updatedSlot(keyStr, valueRecord);
+          }
         }
       }
       return record.isEmpty() ? mapRecord : record.appended(mapRecord);
     } else if (object instanceof String) {
       // use JSON parser for String
-      return Json.parse((String) object);
+      return projection.apply(Json.parse((String) object));
     } else {
       // this works for primitive types and byte arrays
       return record.isEmpty() ? Record.fromObject(object) : record.appended(Record.fromObject(object));
     }
   }
 
-  private Value schemaToValue(Struct struct, Schema schema, Record record) {
+  // Decodes and parses the payload incrementally, without first decoding it into a String
+  private Value parseBytes(Input bytes) {
+    return parse(Utf8.decodedInput(bytes));
+  }
+
+  private Value parse(Input input) {
+    input = skipWhitespace(input);
+    Parser<Value> parser;
+    if (this.bytesFormat == BytesFormat.JSON) {
+      parser = Json.structureParser().parseValue(input);
+    } else {
+      parser = Recon.structureParser().parseBlock(input);
+    }
+    if (parser.isDone()) {
+      input = skipWhitespace(input);
+    }
+    if (input.isCont() && !parser.isError()) {
+      parser = Parser.error(Diagnostic.unexpected(input));
+    } else if (input.isError()) {
+      parser = Parser.error(input.trap());
+    }
+    return parser.bind();
+  }
+
+  private static Input skipWhitespace(Input input) {
+    while (input.isCont()) {
+      final int c = input.head();
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+        input = input.step();
+      } else {
+        break;
+      }
+    }
+    return input;
+  }
+
+  private Value schemaToValue(Struct struct, Schema schema, Record record, FieldProjection projection) {
     final List<Field> fields = schema.fields();
     for (Field field : fields) {
-      record.updatedSlot(field.name(), fieldToValue(field.schema(), struct.get(field)));
+      final FieldProjection fieldProjection = projection.field(field.name());
+      if (fieldProjection != null) {
+        record.updatedSlot(field.name(), fieldToValue(field.schema(), struct.get(field), fieldProjection));
+      }
     }
     return record;
   }
 
   private Value fieldToValue(Schema fieldSchema, Object fieldValue) {
+    return fieldToValue(fieldSchema, fieldValue, FieldProjection.ALL);
+  }
+
+  private Value fieldToValue(Schema fieldSchema, Object fieldValue, FieldProjection projection) {
     final Schema.Type fieldSchemaType = fieldSchema.type();
     if (fieldSchemaType.isPrimitive()) {
       return Record.fromObject(fieldValue);
     } else if (fieldSchemaType == STRUCT) {
-      return schemaToValue((Struct) fieldValue, fieldSchema, Record.create());
+      return schemaToValue((Struct) fieldValue, fieldSchema, Record.create(), projection);
     } else if (fieldSchemaType == ARRAY) {
-      return arrayToValue(fieldSchema, (List<?>) fieldValue);
+      return arrayToValue(fieldSchema, (List<?>) fieldValue, projection);
     } else if (fieldSchemaType == MAP) {
-      return mapToValue(fieldSchema, (Map<?, ?>) fieldValue);
+      return mapToValue(fieldSchema, (Map<?, ?>) fieldValue, projection);
     } else {
       return Value.absent();
     }
   }
 
-  private Record mapToValue(Schema fieldSchema, Map<?, ?> map) {
+  private Record mapToValue(Schema fieldSchema, Map<?, ?> map, FieldProjection projection) {
     final Schema mapKeySchema = fieldSchema.keySchema();
     final Schema mapValueSchema = fieldSchema.valueSchema();
     final Set<?> keys = map.keySet();
     Record mapRecord = Record.create();
     for (Object key : keys) {
       final Value mapKey = fieldToValue(mapKeySchema, key);
-      final Value mapValue = fieldToValue(mapValueSchema, map.get(key));
+      final Value mapValue = fieldToValue(mapValueSchema, map.get(key), projection);
       mapRecord.updatedSlot(mapKey, mapValue);
     }
     return mapRecord;
   }
 
-  private Value arrayToValue(Schema fieldSchema, List<?> fieldValue) {
+  private Value arrayToValue(Schema fieldSchema, List<?> fieldValue, FieldProjection projection) {
     final Schema arrayItemSchema = fieldSchema.valueSchema();
     final Schema.Type arrayItemSchemaType = arrayItemSchema.type();
     Record arrayRecord = Record.create();
@@ -116,11 +252,11 @@ public class MessageConvertor {
       if (arrayItemSchemaType.isPrimitive()) {
         arrayRecord.appended(Record.fromObject(listItem));
       } else if (arrayItemSchemaType == STRUCT) {
-        arrayRecord.appended(schemaToValue((Struct) listItem, arrayItemSchema, Record.create()));
+        arrayRecord.appended(schemaToValue((Struct) listItem, arrayItemSchema, Record.create(), projection));
       } else if (arrayItemSchemaType == ARRAY) {
-        arrayRecord.appended(arrayToValue(arrayItemSchema, (List<?>) listItem));
+        arrayRecord.appended(arrayToValue(arrayItemSchema, (List<?>) listItem, projection));
       } else if (arrayItemSchemaType == MAP) {
-        arrayRecord.appended(mapToValue(arrayItemSchema, (Map<?, ?>) listItem));
+        arrayRecord.appended(mapToValue(arrayItemSchema, (Map<?, ?>) listItem, projection));
       }
     }
     return arrayRecord;
@@ -0,0 +1,117 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.convertor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.kafka.connect.data.Schema;
+
+/**
+ * Bounded LRU cache of compiled {@link ValueWriter}s.
+ * <p>
+ * Converters such as the Avro converter hand out the same {@code Schema} instance for every
+ * record of a schema version, so writers are looked up by schema identity first. Converters that
+ * build a new schema instance per record fall back to a lookup by schema equality, which still
+ * avoids recompiling the schema.
+ */
+final class SchemaWriterCache {
+
+  private final int maxSize;
+  private final FieldProjection projection;
+  private final LinkedHashMap<IdentityKey, ValueWriter> byIdentity;
+  private final LinkedHashMap<Schema, ValueWriter> byEquality;
+  private volatile IdentityKey last;
+
+  SchemaWriterCache(int maxSize) {
+    this(maxSize, FieldProjection.ALL);
+  }
+
+  SchemaWriterCache(int maxSize, FieldProjection projection) {
+    this.maxSize = maxSize;
+    this.projection = projection;
+    this.byIdentity = new LruMap<>(maxSize);
+    this.byEquality = new LruMap<>(maxSize);
+  }
+
+  ValueWriter get(Schema schema) {
+    final IdentityKey last = this.last;
+    if (last != null && last.schema == schema) {
+      return last.writer;
+    }
+    final IdentityKey key = new IdentityKey(schema);
+    synchronized (this) {
+      ValueWriter writer = this.byIdentity.get(key);
+      if (writer == null) {
+        writer = this.byEquality.get(schema);
+        if (writer == null) {
+          writer = SchemaWriters.compile(schema, this.projection);
+          this.byEquality.put(schema, writer);
+        }
+        this.byIdentity.put(key, writer);
+      }
+      key.writer = writer;
+    }
+    this.last = key;
+    return key.writer;
+  }
+
+  synchronized int size() {
+    return this.byEquality.size();
+  }
+
+  int maxSize() {
+    return this.maxSize;
+  }
+
+  private static final class IdentityKey {
+
+    final Schema schema;
+    ValueWriter writer;
+
+    IdentityKey(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof IdentityKey && ((IdentityKey) other).schema == this.schema;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.schema);
+    }
+
+  }
+
+  private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    LruMap(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > this.maxSize;
+    }
+
+  }
+
+}
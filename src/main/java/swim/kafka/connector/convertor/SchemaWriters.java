@@ -0,0 +1,260 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.convertor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import swim.structure.Bool;
+import swim.structure.Data;
+import swim.structure.Num;
+import swim.structure.Record;
+import swim.structure.Text;
+import swim.structure.Value;
+
+/**
+ * Compiles a Connect {@link Schema} into a tree of {@link ValueWriter}s, so that the schema is
+ * only walked, and its types only dispatched on, once per schema instead of once per record.
+ * The compiled writers produce the same values as the schema walk in {@link MessageConvertor}.
+ * <p>
+ * Struct writers compiled with a {@link FieldProjection} only hold the writers of the projected
+ * fields, so that the other fields are never read nor converted.
+ */
+final class SchemaWriters {
+
+  private SchemaWriters() {
+  }
+
+  static ValueWriter compile(Schema schema) {
+    return compile(schema, FieldProjection.ALL);
+  }
+
+  static ValueWriter compile(Schema schema, FieldProjection projection) {
+    switch (schema.type()) {
+      case INT32:
+        return new Int32Writer();
+      case INT64:
+        return new Int64Writer();
+      case FLOAT32:
+        return new Float32Writer();
+      case FLOAT64:
+        return new Float64Writer();
+      case BOOLEAN:
+        return new BooleanWriter();
+      case STRING:
+        return new StringWriter();
+      case BYTES:
+        return new BytesWriter();
+      case INT8:
+      case INT16:
+        return new PrimitiveWriter();
+      case STRUCT:
+        return compileStruct(schema, projection);
+      case ARRAY:
+        return new ArrayWriter(compile(schema.valueSchema(), projection));
+      case MAP:
+        return new MapWriter(compile(schema.keySchema()), compile(schema.valueSchema(), projection));
+      default:
+        return new AbsentWriter();
+    }
+  }
+
+  private static ValueWriter compileStruct(Schema schema, FieldProjection projection) {
+    final List<Field> fieldList = new ArrayList<>();
+    final List<FieldProjection> fieldProjections = new ArrayList<>();
+    for (Field field : schema.fields()) {
+      final FieldProjection fieldProjection = projection.field(field.name());
+      if (fieldProjection != null) {
+        fieldList.add(field);
+        fieldProjections.add(fieldProjection);
+      }
+    }
+    final int fieldCount = fieldList.size();
+    final Field[] fields = new Field[fieldCount];
+    final String[] names = new String[fieldCount];
+    final ValueWriter[] writers = new ValueWriter[fieldCount];
+    for (int i = 0; i < fieldCount; i += 1) {
+      final Field field = fieldList.get(i);
+      fields[i] = field;
+      names[i] = field.name();
+      writers[i] = compile(field.schema(), fieldProjections.get(i));
+    }
+    return new StructWriter(fields, names, writers);
+  }
+
+  static final class StructWriter implements ValueWriter {
+
+    private final Field[] fields;
+    private final String[] names;
+    private final ValueWriter[] writers;
+
+    StructWriter(Field[] fields, String[] names, ValueWriter[] writers) {
+      this.fields = fields;
+      this.names = names;
+      this.writers = writers;
+    }
+
+    @Override
+    public Value write(Object object) {
+      if (object == null) {
+        return Record.fromObject(null);
+      }
+      final Struct struct = (Struct) object;
+      final Field[] fields = this.fields;
+      final Record record = Record.create(fields.length);
+      for (int i = 0; i < fields.length; i += 1) {
+        record.slot(this.names[i], this.writers[i].write(struct.get(fields[i])));
+      }
+      return record;
+    }
+
+  }
+
+  static final class ArrayWriter implements ValueWriter {
+
+    private final ValueWriter itemWriter;
+
+    ArrayWriter(ValueWriter itemWriter) {
+      this.itemWriter = itemWriter;
+    }
+
+    @Override
+    public Value write(Object object) {
+      if (object == null) {
+        return Record.fromObject(null);
+      }
+      final List<?> list = (List<?>) object;
+      final Record record = Record.create(list.size());
+      for (Object item : list) {
+        record.item(this.itemWriter.write(item));
+      }
+      return record;
+    }
+
+  }
+
+  static final class MapWriter implements ValueWriter {
+
+    private final ValueWriter keyWriter;
+    private final ValueWriter valueWriter;
+
+    MapWriter(ValueWriter keyWriter, ValueWriter valueWriter) {
+      this.keyWriter = keyWriter;
+      this.valueWriter = valueWriter;
+    }
+
+    @Override
+    public Value write(Object object) {
+      if (object == null) {
+        return Record.fromObject(null);
+      }
+      final Map<?, ?> map = (Map<?, ?>) object;
+      final Record record = Record.create(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        record.updatedSlot(this.keyWriter.write(entry.getKey()), this.valueWriter.write(entry.getValue()));
+      }
+      return record;
+    }
+
+  }
+
+  // Primitive writers fall back to the generic conversion for values of logical types, such as
+  // Decimal, Date or Timestamp, whose Java representation differs from the schema type.
+
+  static final class Int32Writer implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return object instanceof Integer ? Num.from(((Integer) object).intValue()) : Record.fromObject(object);
+    }
+
+  }
+
+  static final class Int64Writer implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return object instanceof Long ? Num.from(((Long) object).longValue()) : Record.fromObject(object);
+    }
+
+  }
+
+  static final class Float32Writer implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return object instanceof Float ? Num.from(((Float) object).floatValue()) : Record.fromObject(object);
+    }
+
+  }
+
+  static final class Float64Writer implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return object instanceof Double ? Num.from(((Double) object).doubleValue()) : Record.fromObject(object);
+    }
+
+  }
+
+  static final class BooleanWriter implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return object instanceof Boolean ? Bool.from(((Boolean) object).booleanValue()) : Record.fromObject(object);
+    }
+
+  }
+
+  static final class StringWriter implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return object instanceof String ? Text.from((String) object) : Record.fromObject(object);
+    }
+
+  }
+
+  static final class BytesWriter implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return object instanceof byte[] ? Data.wrap((byte[]) object) : Record.fromObject(object);
+    }
+
+  }
+
+  static final class PrimitiveWriter implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return Record.fromObject(object);
+    }
+
+  }
+
+  static final class AbsentWriter implements ValueWriter {
+
+    @Override
+    public Value write(Object object) {
+      return Value.absent();
+    }
+
+  }
+
+}
@@ -0,0 +1,73 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.convertor;
+
+import org.apache.kafka.connect.data.Schema;
+import swim.structure.Value;
+
+/**
+ * Read-only view of a message value that is converted on demand. The fields on a path of a
+ * {@code Struct}, or of a schemaless {@code Map}, can be read without converting the rest of the
+ * value; the whole value is only converted, once, when it is first needed.
+ * <p>
+ * Views are not thread safe, they are meant to be read by the thread that converts the message.
+ */
+public final class ValueView {
+
+  private final MessageConvertor convertor;
+  private final Object object;
+  private final Schema schema;
+  // Null until the whole value is converted
+  private Value value;
+
+  ValueView(MessageConvertor convertor, Object object, Schema schema) {
+    this.convertor = convertor;
+    this.object = object;
+    this.schema = schema;
+  }
+
+  public boolean isConverted() {
+    return this.value != null;
+  }
+
+  public Value toValue() {
+    Value value = this.value;
+    if (value == null) {
+      value = this.convertor.toValue(this.object, this.schema);
+      this.value = value;
+    }
+    return value;
+  }
+
+  /**
+   * Returns the converted value of the field on a path, eg: {@code {"device", "id"}}, converting
+   * only that field, or absent if there is no such field. Returns null if the path goes through
+   * something other than structs and maps, such as an array or a string to parse, in which case
+   * the field can only be read from the whole value.
+   */
+  public Value get(String[] path) {
+    if (path.length == 0) {
+      return toValue();
+    } else if (this.value != null) {
+      Value field = this.value;
+      for (String name : path) {
+        field = field.get(name);
+      }
+      return field;
+    }
+    return this.convertor.fieldValue(this.object, this.schema, path);
+  }
+
+}
@@ -0,0 +1,57 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.id;
+
+/**
+ * Where the agent id of a record is taken from.
+ */
+public enum AgentIdSource {
+
+  // The converted key, through the agent id extractor
+  KEY("key"),
+  // The converted value, through the agent id extractor
+  VALUE("value"),
+  // The key as it was deserialized, without converting it
+  KEY_RAW("key.raw"),
+  // The value of a Kafka header
+  HEADER("header"),
+  TOPIC("topic"),
+  PARTITION("partition");
+
+  private final String label;
+
+  AgentIdSource(String label) {
+    this.label = label;
+  }
+
+  public String label() {
+    return this.label;
+  }
+
+  // Whether the id is read from the record itself rather than from its converted key or value
+  public boolean isRaw() {
+    return this != KEY && this != VALUE;
+  }
+
+  public static AgentIdSource from(String label) {
+    for (AgentIdSource source : values()) {
+      if (source.label.equals(label.trim())) {
+        return source;
+      }
+    }
+    throw new IllegalArgumentException("Unknown agent id source: " + label);
+  }
+
+}
@@ -0,0 +1,204 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.id;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import swim.uri.Uri;
+import swim.uri.UriPattern;
+
+/**
+ * Bounded, concurrent cache of the agent uris computed from the ids of an agent uri pattern.
+ * <p>
+ * The cache is split into independently locked stripes, selected by the hash of the id. Each
+ * stripe is either a plain LRU or a segmented LRU, in which ids enter a probation segment and
+ * are only promoted to the protected segment, which holds 80% of the entries, when they are hit
+ * again; a scan of one-off ids then only evicts other one-off ids. Looking up a cached id does
+ * not allocate.
+ */
+public final class AgentUriCache {
+
+  public enum Policy {
+    LRU, SLRU;
+
+    public static Policy from(String name) {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private static final int MAX_STRIPES = 64;
+
+  private final UriPattern agentUriPattern;
+  private final Stripe[] stripes;
+  private final int mask;
+  private final LongAdder hits;
+  private final LongAdder misses;
+
+  public AgentUriCache(UriPattern agentUriPattern, int maxSize, Policy policy) {
+    this.agentUriPattern = agentUriPattern;
+    int stripeCount = 1;
+    while (stripeCount < MAX_STRIPES && stripeCount < 2 * Runtime.getRuntime().availableProcessors()
+          && maxSize / (stripeCount * 2) >= 16) {
+      stripeCount *= 2;
+    }
+    this.stripes = new Stripe[stripeCount];
+    final int stripeSize = Math.max(1, maxSize / stripeCount);
+    for (int i = 0; i < stripeCount; i += 1) {
+      this.stripes[i] = policy == Policy.SLRU ? new SegmentedStripe(stripeSize) : new Stripe(stripeSize);
+    }
+    this.mask = stripeCount - 1;
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+  }
+
+  public UriPattern getAgentUriPattern() {
+    return this.agentUriPattern;
+  }
+
+  public Uri get(String id) {
+    final int hash = id.hashCode();
+    final Stripe stripe = this.stripes[(hash ^ (hash >>> 16)) & this.mask];
+    Uri uri;
+    synchronized (stripe) {
+      uri = stripe.get(id);
+    }
+    if (uri != null) {
+      this.hits.increment();
+      return uri;
+    }
+    this.misses.increment();
+    // Computed outside of the lock; racing threads compute equal uris
+    uri = this.agentUriPattern.apply(id);
+    synchronized (stripe) {
+      stripe.put(id, uri);
+    }
+    return uri;
+  }
+
+  public long hits() {
+    return this.hits.sum();
+  }
+
+  public long misses() {
+    return this.misses.sum();
+  }
+
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : this.stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  private static class Stripe {
+
+    final LruMap entries;
+
+    Stripe(int maxSize) {
+      this.entries = new LruMap(maxSize);
+    }
+
+    Uri get(String id) {
+      return this.entries.get(id);
+    }
+
+    void put(String id, Uri uri) {
+      this.entries.put(id, uri);
+    }
+
+    int size() {
+      return this.entries.size();
+    }
+
+  }
+
+  private static final class SegmentedStripe extends Stripe {
+
+    // Ids that were hit at least once since they were cached
+    final LinkedHashMap<String, Uri> protectedEntries;
+    final int maxProtectedSize;
+
+    SegmentedStripe(int maxSize) {
+      super(Math.max(1, maxSize - maxSize * 4 / 5));
+      this.maxProtectedSize = maxSize * 4 / 5;
+      this.protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    Uri get(String id) {
+      Uri uri = this.protectedEntries.get(id);
+      if (uri == null) {
+        uri = this.entries.remove(id);
+        if (uri != null) {
+          promote(id, uri);
+        }
+      }
+      return uri;
+    }
+
+    @Override
+    void put(String id, Uri uri) {
+      if (!this.protectedEntries.containsKey(id)) {
+        this.entries.put(id, uri);
+      }
+    }
+
+    @Override
+    int size() {
+      return this.entries.size() + this.protectedEntries.size();
+    }
+
+    private void promote(String id, Uri uri) {
+      if (this.maxProtectedSize == 0) {
+        this.entries.put(id, uri);
+        return;
+      }
+      this.protectedEntries.put(id, uri);
+      if (this.protectedEntries.size() > this.maxProtectedSize) {
+        // demote the least recently used protected id back to probation
+        final Iterator<Map.Entry<String, Uri>> eldest = this.protectedEntries.entrySet().iterator();
+        final Map.Entry<String, Uri> entry = eldest.next();
+        eldest.remove();
+        this.entries.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+  }
+
+  private static final class LruMap extends LinkedHashMap<String, Uri> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    LruMap(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Uri> eldest) {
+      return size() > this.maxSize;
+    }
+
+  }
+
+}
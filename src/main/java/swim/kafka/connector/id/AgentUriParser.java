@@ -14,6 +14,15 @@
 
 package swim.kafka.connector.id;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.sink.SinkRecord;
+import swim.kafka.connector.convertor.ValueView;
+import swim.kafka.connector.sink.Route;
+import swim.kafka.connector.sink.RoutingPlan;
 import swim.kafka.connector.sink.SwimSinkConfig;
 import swim.structure.Item;
 import swim.structure.Selector;
@@ -21,10 +30,30 @@ import swim.structure.Value;
 import swim.uri.Uri;
 import swim.uri.UriPattern;
 
+/**
+ * Computes the agent uri of a record from its agent id. An empty uri is returned when a record has
+ * no agent id; a {@link DataException} holding the cause is thrown when the id could not be read,
+ * or the uri could not be built from it.
+ */
 public class AgentUriParser {
 
+  private final int cacheSize;
+  private final AgentUriCache.Policy cachePolicy;
+  // One cache per agent uri pattern, looked up by identity since there are only a few patterns
+  private volatile AgentUriCache[] caches;
+
   public AgentUriParser() {
+    this(0, AgentUriCache.Policy.SLRU);
+  }
 
+  /**
+   * Creates a parser that caches up to {@code cacheSize} agent uris per agent uri pattern, or
+   * none if {@code cacheSize} is 0.
+   */
+  public AgentUriParser(int cacheSize, AgentUriCache.Policy cachePolicy) {
+    this.cacheSize = cacheSize;
+    this.cachePolicy = cachePolicy;
+    this.caches = new AgentUriCache[0];
   }
 
   public Uri computeAgentUri(Value key, Value value, SwimSinkConfig config) {
@@ -38,16 +67,193 @@ public class AgentUriParser {
       } else {
         id = agentIdExtractor.evaluate(key);
       }
-      if (id.isDefined()) {
-        final String idStr = id.stringValue("");
-        if (!idStr.equals("")) {
-          final UriPattern agentUriPattern = config.getAgentUriPattern();
-          return agentUriPattern.apply(idStr);
+      final String idStr = idString(id);
+      if (idStr != null) {
+        // The pattern is parsed anew for every record, so the uri is not cached
+        return config.getAgentUriPattern().apply(idStr);
+      }
+    } catch (Exception e) {
+      throw agentUriError(e);
+    }
+    return Uri.empty();
+  }
+
+  // Hot path variant which uses the pre-parsed extractor and pattern of the default route of the plan
+  public Uri computeAgentUri(Value key, Value value, RoutingPlan plan) {
+    return computeAgentUri(key, value, plan.getDefaultRoute());
+  }
+
+  public Uri computeAgentUri(Value key, Value value, Route route) {
+    try {
+      final Item id;
+      if (route.useValueForAgentId()) {
+        id = route.getAgentIdExtractor().evaluate(value);
+      } else {
+        id = route.getAgentIdExtractor().evaluate(key);
+      }
+      return applyAgentUriPattern(id, route.getAgentUriPattern());
+    } catch (Exception e) {
+      throw agentUriError(e);
+    }
+  }
+
+  // Lazy variant which only converts the field holding the id when the id extractor is a plain field path
+  public Uri computeAgentUri(Value key, ValueView value, Route route) {
+    if (!route.useValueForAgentId()) {
+      return computeAgentUri(key, Value.absent(), route);
+    }
+    final RawFieldScanner agentIdPath = route.getAgentIdScanner();
+    if (agentIdPath != null) {
+      try {
+        final Value id = value.get(agentIdPath.getPath());
+        if (id != null) {
+          return applyAgentUriPattern(id, route.getAgentUriPattern());
         }
+      } catch (Exception e) {
+        throw agentUriError(e);
+      }
+    }
+    return computeAgentUri(key, value.toValue(), route);
+  }
+
+  // Passthrough variant which scans the encoded value for the id instead of evaluating a selector
+  public Uri computeAgentUriFromRaw(Value key, Object rawValue, RoutingPlan plan) {
+    return computeAgentUriFromRaw(key, rawValue, plan.getDefaultRoute());
+  }
+
+  public Uri computeAgentUriFromRaw(Value key, Object rawValue, Route route) {
+    final RawFieldScanner agentIdScanner = route.getAgentIdScanner();
+    if (agentIdScanner == null) {
+      return computeAgentUri(key, Value.absent(), route);
+    }
+    try {
+      final String idStr = agentIdScanner.scan(rawValue);
+      if (idStr != null && !idStr.equals("")) {
+        return applyAgentUriPattern(idStr, route.getAgentUriPattern());
       }
     } catch (Exception e) {
+      throw agentUriError(e);
     }
     return Uri.empty();
   }
 
+  // Variant for the raw id sources, which reads the id from the record itself without any conversion
+  public Uri computeAgentUriFromRecord(SinkRecord record, Route route) {
+    try {
+      final String idStr;
+      switch (route.getAgentIdSource()) {
+        case KEY_RAW:
+          idStr = rawToString(record.key());
+          break;
+        case HEADER:
+          final Header header = record.headers().lastWithName(route.getAgentIdHeader());
+          idStr = header != null ? rawToString(header.value()) : null;
+          break;
+        case TOPIC:
+          idStr = record.topic();
+          break;
+        case PARTITION:
+          idStr = record.kafkaPartition() != null ? record.kafkaPartition().toString() : null;
+          break;
+        default:
+          return Uri.empty();
+      }
+      if (idStr != null && !idStr.equals("")) {
+        return applyAgentUriPattern(idStr, route.getAgentUriPattern());
+      }
+    } catch (Exception e) {
+      throw agentUriError(e);
+    }
+    return Uri.empty();
+  }
+
+  public long cacheHits() {
+    long hits = 0L;
+    for (AgentUriCache cache : this.caches) {
+      hits += cache.hits();
+    }
+    return hits;
+  }
+
+  public long cacheMisses() {
+    long misses = 0L;
+    for (AgentUriCache cache : this.caches) {
+      misses += cache.misses();
+    }
+    return misses;
+  }
+
+  public int cacheSize() {
+    int size = 0;
+    for (AgentUriCache cache : this.caches) {
+      size += cache.size();
+    }
+    return size;
+  }
+
+  // Keeps the cause of the failure, for the errant record handler to report it
+  private static DataException agentUriError(Exception cause) {
+    return new DataException("Failed to compute the agent uri: " + cause, cause);
+  }
+
+  private Uri applyAgentUriPattern(Item id, UriPattern agentUriPattern) {
+    final String idStr = idString(id);
+    if (idStr != null) {
+      return applyAgentUriPattern(idStr, agentUriPattern);
+    }
+    return Uri.empty();
+  }
+
+  // Strings, UTF-8 bytes and primitives; structured keys and headers have no raw id
+  private static String rawToString(Object raw) {
+    if (raw instanceof String) {
+      return (String) raw;
+    } else if (raw instanceof byte[]) {
+      return new String((byte[]) raw, StandardCharsets.UTF_8);
+    } else if (raw instanceof ByteBuffer) {
+      return StandardCharsets.UTF_8.decode(((ByteBuffer) raw).duplicate()).toString();
+    } else if (raw instanceof Number || raw instanceof Boolean || raw instanceof Character) {
+      return raw.toString();
+    }
+    return null;
+  }
+
+  private static String idString(Item id) {
+    if (id.isDefined()) {
+      final String idStr = id.stringValue("");
+      if (!idStr.equals("")) {
+        return idStr;
+      }
+    }
+    return null;
+  }
+
+  private Uri applyAgentUriPattern(String idStr, UriPattern agentUriPattern) {
+    if (this.cacheSize <= 0) {
+      return agentUriPattern.apply(idStr);
+    }
+    return cacheFor(agentUriPattern).get(idStr);
+  }
+
+  private AgentUriCache cacheFor(UriPattern agentUriPattern) {
+    for (AgentUriCache cache : this.caches) {
+      if (cache.getAgentUriPattern() == agentUriPattern) {
+        return cache;
+      }
+    }
+    synchronized (this) {
+      final AgentUriCache[] caches = this.caches;
+      for (AgentUriCache cache : caches) {
+        if (cache.getAgentUriPattern() == agentUriPattern) {
+          return cache;
+        }
+      }
+      final AgentUriCache cache = new AgentUriCache(agentUriPattern, this.cacheSize, this.cachePolicy);
+      final AgentUriCache[] newCaches = Arrays.copyOf(caches, caches.length + 1);
+      newCaches[caches.length] = cache;
+      this.caches = newCaches;
+      return cache;
+    }
+  }
+
 }
@@ -0,0 +1,396 @@
+// Copyright 2015-present SWIM Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.id;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Extracts the value of a field from an encoded JSON or Recon payload by scanning its text,
+ * without parsing the payload into a {@code Value}.
+ * <p>
+ * The field is identified by a path of keys, eg: {@code [device, id]} for {@code $device.id}.
+ * Only string, number and identifier values are extracted; the scan returns {@code null} if the
+ * field is missing or holds a nested structure. The structural characters of both formats are
+ * ASCII, so UTF-8 payloads are scanned byte by byte.
+ */
+public final class RawFieldScanner {
+
+  private final String[] path;
+
+  public RawFieldScanner(String[] path) {
+    this.path = path.clone();
+  }
+
+  /**
+   * Returns a scanner for a selector expression made only of field accesses, such as
+   * {@code $id} or {@code $device.id}, or {@code null} if the expression is not a plain field path.
+   */
+  public static RawFieldScanner forSelector(String selector) {
+    final String expression = selector.trim();
+    if (expression.isEmpty()) {
+      return new RawFieldScanner(new String[0]);
+    } else if (expression.charAt(0) != '$') {
+      return null;
+    }
+    final String[] path = expression.substring(1).split("\\.", -1);
+    for (String key : path) {
+      if (!isIdentifier(key)) {
+        return null;
+      }
+    }
+    return new RawFieldScanner(path);
+  }
+
+  // The field names of the path, eg: {"device", "id"} for $device.id
+  public String[] getPath() {
+    return this.path.clone();
+  }
+
+  public String scan(Object payload) {
+    if (payload instanceof byte[]) {
+      final byte[] bytes = (byte[]) payload;
+      return scan(new ByteSource(bytes, 0, bytes.length));
+    } else if (payload instanceof ByteBuffer) {
+      final ByteBuffer buffer = (ByteBuffer) payload;
+      if (buffer.hasArray()) {
+        return scan(new ByteSource(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+      }
+      final byte[] bytes = new byte[buffer.remaining()];
+      buffer.duplicate().get(bytes);
+      return scan(new ByteSource(bytes, 0, bytes.length));
+    } else if (payload instanceof CharSequence) {
+      return scan(new CharSource((CharSequence) payload));
+    }
+    return null;
+  }
+
+  private String scan(Source source) {
+    final int end = source.end();
+    int index = skipWhitespace(source, source.start());
+    if (index >= end) {
+      return null;
+    }
+    if (this.path.length == 0) {
+      // the whole payload is the id
+      return readScalar(source, index);
+    }
+    // The fields of a Recon record follow its attributes, eg: {@code @event {id: 1}}
+    index = skipAttributes(source, index);
+    if (index >= end) {
+      return null;
+    }
+    // A Recon block need not be wrapped in braces
+    int depth = isOpen(source.at(index)) ? 0 : 1;
+    int pathIndex = 0;
+    while (index < end) {
+      final int c = source.at(index);
+      if (isOpen(c)) {
+        depth += 1;
+        index += 1;
+      } else if (isClose(c)) {
+        depth -= 1;
+        if (depth < pathIndex + 1) {
+          // left the object that had to contain the next key
+          return null;
+        }
+        index += 1;
+      } else if (c == '"' || isIdentifierStart(c)) {
+        final int tokenStart = index;
+        final int tokenEnd = c == '"' ? skipString(source, index) : skipIdentifier(source, index);
+        final int next = skipWhitespace(source, tokenEnd);
+        if (depth == pathIndex + 1 && next < end && source.at(next) == ':'
+              && keyEquals(source, tokenStart, tokenEnd, this.path[pathIndex])) {
+          final int valueStart = skipWhitespace(source, next + 1);
+          if (pathIndex == this.path.length - 1) {
+            return valueStart < end ? readScalar(source, valueStart) : null;
+          } else if (valueStart < end && source.at(valueStart) == '{') {
+            pathIndex += 1;
+            depth += 1;
+            index = valueStart + 1;
+            continue;
+          }
+          return null;
+        }
+        index = tokenEnd;
+      } else {
+        index += 1;
+      }
+    }
+    return null;
+  }
+
+  private static String readScalar(Source source, int index) {
+    final int c = source.at(index);
+    if (c == '"') {
+      return readString(source, index);
+    } else if (isOpen(c) || isClose(c)) {
+      return null;
+    }
+    int end = index;
+    while (end < source.end() && !isDelimiter(source.at(end))) {
+      end += 1;
+    }
+    if (end == index) {
+      return null;
+    }
+    final String scalar = source.substring(index, end);
+    return "null".equals(scalar) ? null : scalar;
+  }
+
+  private static String readString(Source source, int index) {
+    final int end = skipString(source, index);
+    boolean escaped = false;
+    for (int i = index + 1; i < end - 1; i += 1) {
+      if (source.at(i) == '\\') {
+        escaped = true;
+        break;
+      }
+    }
+    if (!escaped) {
+      return source.substring(index + 1, end - 1);
+    }
+    final String raw = source.substring(index + 1, end - 1);
+    final StringBuilder builder = new StringBuilder(raw.length());
+    for (int i = 0; i < raw.length(); i += 1) {
+      char c = raw.charAt(i);
+      if (c == '\\' && i + 1 < raw.length()) {
+        i += 1;
+        c = raw.charAt(i);
+        switch (c) {
+          case 'n': builder.append('\n'); break;
+          case 'r': builder.append('\r'); break;
+          case 't': builder.append('\t'); break;
+          case 'b': builder.append('\b'); break;
+          case 'f': builder.append('\f'); break;
+          case 'u':
+            if (i + 4 < raw.length()) {
+              builder.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+              i += 4;
+            }
+            break;
+          default: builder.append(c);
+        }
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  private static boolean keyEquals(Source source, int start, int end, String key) {
+    if (source.at(start) == '"') {
+      start += 1;
+      end -= 1;
+    }
+    if (end - start != key.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i += 1) {
+      if (source.at(start + i) != key.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Returns the index just past the closing quote
+  private static int skipString(Source source, int index) {
+    final int end = source.end();
+    index += 1;
+    while (index < end) {
+      final int c = source.at(index);
+      if (c == '\\') {
+        index += 2;
+      } else if (c == '"') {
+        return index + 1;
+      } else {
+        index += 1;
+      }
+    }
+    return end;
+  }
+
+  // Returns the index of the first token after the leading attributes, and their arguments
+  private static int skipAttributes(Source source, int index) {
+    final int end = source.end();
+    while (index < end && source.at(index) == '@') {
+      index += 1;
+      if (index < end && source.at(index) == '"') {
+        index = skipString(source, index);
+      } else if (index < end && isIdentifierStart(source.at(index))) {
+        index = skipIdentifier(source, index);
+      }
+      if (index < end && source.at(index) == '(') {
+        index = skipGroup(source, index);
+      }
+      index = skipWhitespace(source, index);
+    }
+    return index;
+  }
+
+  // Returns the index just past the bracket that closes the one at index
+  private static int skipGroup(Source source, int index) {
+    final int end = source.end();
+    int depth = 0;
+    while (index < end) {
+      final int c = source.at(index);
+      if (c == '"') {
+        index = skipString(source, index);
+        continue;
+      } else if (isOpen(c)) {
+        depth += 1;
+      } else if (isClose(c)) {
+        depth -= 1;
+        if (depth == 0) {
+          return index + 1;
+        }
+      }
+      index += 1;
+    }
+    return end;
+  }
+
+  private static int skipIdentifier(Source source, int index) {
+    final int end = source.end();
+    index += 1;
+    while (index < end && isIdentifierChar(source.at(index))) {
+      index += 1;
+    }
+    return index;
+  }
+
+  private static int skipWhitespace(Source source, int index) {
+    final int end = source.end();
+    while (index < end && isWhitespace(source.at(index))) {
+      index += 1;
+    }
+    return index;
+  }
+
+  private static boolean isOpen(int c) {
+    return c == '{' || c == '[' || c == '(';
+  }
+
+  private static boolean isClose(int c) {
+    return c == '}' || c == ']' || c == ')';
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
+  private static boolean isDelimiter(int c) {
+    return isWhitespace(c) || isClose(c) || c == ',' || c == ';';
+  }
+
+  private static boolean isIdentifierStart(int c) {
+    return c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c == '_' || c >= 0x80;
+  }
+
+  private static boolean isIdentifierChar(int c) {
+    return isIdentifierStart(c) || c >= '0' && c <= '9' || c == '-';
+  }
+
+  // Path keys are restricted to ASCII so that they can be matched against UTF-8 bytes directly
+  private static boolean isIdentifier(String key) {
+    if (key.isEmpty() || !isIdentifierStart(key.charAt(0))) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i += 1) {
+      if (key.charAt(i) >= 0x80 || !isIdentifierChar(key.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private abstract static class Source {
+
+    abstract int start();
+
+    abstract int end();
+
+    abstract int at(int index);
+
+    abstract String substring(int start, int end);
+
+  }
+
+  private static final class ByteSource extends Source {
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    ByteSource(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    int start() {
+      return this.offset;
+    }
+
+    @Override
+    int end() {
+      return this.offset + this.length;
+    }
+
+    @Override
+    int at(int index) {
+      return this.bytes[index] & 0xff;
+    }
+
+    @Override
+    String substring(int start, int end) {
+      return new String(this.bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+  }
+
+  private static final class CharSource extends Source {
+
+    private final CharSequence chars;
+
+    CharSource(CharSequence chars) {
+      this.chars = chars;
+    }
+
+    @Override
+    int start() {
+      return 0;
+    }
+
+    @Override
+    int end() {
+      return this.chars.length();
+    }
+
+    @Override
+    int at(int index) {
+      return this.chars.charAt(index);
+    }
+
+    @Override
+    String substring(int start, int end) {
+      return this.chars.subSequence(start, end).toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,103 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import swim.client.ClientRuntime;
+
+/**
+ * Reference counted registry of the Swim client runtimes of the worker, so that the tasks that
+ * connect to the same hosts with the same settings share one runtime, along with its threads,
+ * timers and WebSocket connections. A runtime is started by the first task that acquires it and
+ * stopped when the last task releases it.
+ */
+final class ClientRuntimeRegistry {
+
+  private static final Map<String, Entry> RUNTIMES = new HashMap<>();
+
+  private ClientRuntimeRegistry() {
+    // static
+  }
+
+  /**
+   * Returns the runtime registered under {@code key}, creating and starting it with
+   * {@code factory} if no task currently holds it. Every call must be matched by a call to
+   * {@link #release(String)} with the same key.
+   */
+  static ClientRuntime acquire(String key, Supplier<ClientRuntime> factory) {
+    synchronized (RUNTIMES) {
+      Entry entry = RUNTIMES.get(key);
+      if (entry == null) {
+        final ClientRuntime runtime = factory.get();
+        runtime.start();
+        entry = new Entry(runtime);
+        RUNTIMES.put(key, entry);
+      }
+      entry.refCount += 1;
+      return entry.runtime;
+    }
+  }
+
+  // Acquires the runtime registered under key, if any, without creating one
+  static ClientRuntime acquireIfPresent(String key) {
+    synchronized (RUNTIMES) {
+      final Entry entry = RUNTIMES.get(key);
+      if (entry == null) {
+        return null;
+      }
+      entry.refCount += 1;
+      return entry.runtime;
+    }
+  }
+
+  static void release(String key) {
+    final ClientRuntime runtime;
+    synchronized (RUNTIMES) {
+      final Entry entry = RUNTIMES.get(key);
+      if (entry == null) {
+        return;
+      }
+      entry.refCount -= 1;
+      if (entry.refCount > 0) {
+        return;
+      }
+      RUNTIMES.remove(key);
+      runtime = entry.runtime;
+    }
+    // Stopped outside of the lock, a task acquiring the same key meanwhile gets a new runtime
+    runtime.stop();
+  }
+
+  static int refCount(String key) {
+    synchronized (RUNTIMES) {
+      final Entry entry = RUNTIMES.get(key);
+      return entry != null ? entry.refCount : 0;
+    }
+  }
+
+  private static final class Entry {
+
+    final ClientRuntime runtime;
+    int refCount;
+
+    Entry(ClientRuntime runtime) {
+      this.runtime = runtime;
+    }
+
+  }
+
+}
@@ -0,0 +1,416 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import swim.api.ref.WarpRef;
+import swim.recon.Recon;
+import swim.structure.Value;
+import swim.uri.Uri;
+
+/**
+ * Bounded outbound queue of commands between a {@link SwimKafkaSinkTask} and the Swim client.
+ * <p>
+ * Commands are enqueued and dispatched on the task thread. The number (and optionally the
+ * encoded size) of commands that have been handed to the client but not yet written to the host
+ * is capped, and a command only counts as delivered, and its offset as committable, once the
+ * client has written it.
+ * <p>
+ * When coalescing is enabled, a command replaces any command to the same lane of the same agent
+ * that is still waiting to be dispatched, so that only the latest value is sent; for map lanes,
+ * only a command to the same entry of the lane is replaced. The replaced
+ * command is acknowledged right away: its offset can be committed because the command that
+ * replaces it has a later offset, and is re-consumed if it is not written.
+ * <p>
+ * A command that fails to be written is never re-sent on its own, as later commands to the same
+ * lane may have been written in the meantime. Instead, the partition of the command is rewound to
+ * its offset: the commands from that offset on that have not been dispatched yet are dropped, and
+ * the records are re-consumed, so that the lane sees them again in order.
+ */
+final class CommandPipeline {
+
+  private final WarpRef swimRef;
+  // Null unless the commands of a host are sent through the runtime of the task that owns it
+  private final HostAffinity hostAffinity;
+  // Null unless the dispatch rate adapts to the responsiveness of the hosts
+  private final SendRateController rateController;
+  // Null unless the lag of the records is tracked when they are dispatched
+  private final SinkTaskMetrics lagMetrics;
+  private final int maxInFlightRecords;
+  private final long maxInFlightBytes;
+  private final long lingerMillis;
+  private final boolean sizeCommands;
+  private final boolean coalesce;
+  private final OffsetTracker offsetTracker;
+
+  // Only accessed from the task thread
+  private final ArrayDeque<SinkCommand> pending;
+  private final Map<LaneKey, SinkCommand> pendingByLane;
+  private long lingerDeadline;
+  // Written by the task thread, read by the metrics
+  private volatile int pendingRecords;
+  private volatile long coalescedRecords;
+
+  // Guarded by this
+  private final ArrayDeque<SinkCommand> failed;
+  private int inFlightRecords;
+  private long inFlightBytes;
+  private long writeFailures;
+  private long reconnects;
+  private boolean failing;
+
+  CommandPipeline(WarpRef swimRef, int maxInFlightRecords, long maxInFlightBytes, long lingerMillis,
+                  boolean sizeCommands, boolean coalesce, HostAffinity hostAffinity,
+                  SendRateController rateController, SinkTaskMetrics lagMetrics) {
+    this.swimRef = swimRef;
+    this.hostAffinity = hostAffinity;
+    this.rateController = rateController;
+    this.lagMetrics = lagMetrics;
+    this.maxInFlightRecords = maxInFlightRecords;
+    this.maxInFlightBytes = maxInFlightBytes;
+    this.lingerMillis = lingerMillis;
+    this.sizeCommands = sizeCommands || maxInFlightBytes > 0L;
+    this.coalesce = coalesce;
+    this.pendingByLane = coalesce ? new HashMap<>() : null;
+    this.offsetTracker = new OffsetTracker();
+    this.pending = new ArrayDeque<>();
+    this.failed = new ArrayDeque<>();
+  }
+
+  /**
+   * Queues a command for dispatch.
+   *
+   * @return the encoded size of the command body, or 0 if commands are not sized.
+   */
+  int enqueue(TopicPartition topicPartition, long offset, Uri hostUri, Uri nodeUri, Uri laneUri, Value body) {
+    return enqueue(topicPartition, offset, hostUri, nodeUri, laneUri, body, Value.absent());
+  }
+
+  /**
+   * Queues a command to an entry of a lane for dispatch. When coalescing, the command replaces
+   * the pending command to the same entry; an absent {@code entryKey} stands for the whole lane,
+   * and a null one for a command that must never be replaced.
+   *
+   * @return the encoded size of the command body, or 0 if commands are not sized.
+   */
+  int enqueue(TopicPartition topicPartition, long offset, Uri hostUri, Uri nodeUri, Uri laneUri, Value body,
+              Value entryKey) {
+    return enqueue(topicPartition, offset, hostUri, nodeUri, laneUri, body, entryKey, -1L);
+  }
+
+  /**
+   * Queues a command for a record with the given timestamp, in milliseconds since the epoch, or
+   * -1 if it has none, from which the lag of the record is measured when it is dispatched.
+   */
+  int enqueue(TopicPartition topicPartition, long offset, Uri hostUri, Uri nodeUri, Uri laneUri, Value body,
+              Value entryKey, long timestamp) {
+    // Only pay for sizing the body when the byte limit, or the byte metrics, are enabled
+    final int size = this.sizeCommands ? Recon.sizeOf(body) : 0;
+    final SinkCommand command = new SinkCommand(this, topicPartition, offset, hostUri, nodeUri, laneUri, body, size,
+          this.coalesce ? entryKey : null, timestamp);
+    this.offsetTracker.track(command);
+    if (command.entryKey() != null) {
+      final SinkCommand replaced = this.pendingByLane.put(new LaneKey(hostUri, nodeUri, laneUri, entryKey), command);
+      if (replaced != null) {
+        replaced.superseded = true;
+        this.offsetTracker.ack(replaced);
+        this.coalescedRecords += 1L;
+      }
+    }
+    if (this.pending.isEmpty()) {
+      this.lingerDeadline = System.currentTimeMillis() + this.lingerMillis;
+    }
+    this.pending.addLast(command);
+    return size;
+  }
+
+  /**
+   * Hands pending commands to the client for as long as the in-flight limits allow, waiting up to
+   * {@code maxBlockMillis} for capacity to free up. Unless {@code force} is set, commands are held
+   * back until the linger time has elapsed or a full window of commands is pending. With a rate
+   * controller, commands are also held back for as long as the rate requires.
+   *
+   * @return {@code false} if commands are still pending because the pipeline is full.
+   */
+  boolean dispatch(boolean force, long maxBlockMillis) {
+    if (!force && this.lingerMillis > 0L && this.pending.size() < this.maxInFlightRecords
+          && System.currentTimeMillis() < this.lingerDeadline) {
+      this.pendingRecords = this.pending.size();
+      return true;
+    }
+    final long deadline = System.currentTimeMillis() + maxBlockMillis;
+    SinkCommand command;
+    while ((command = this.pending.peekFirst()) != null) {
+      if (command.superseded || command.discarded) {
+        this.pending.pollFirst();
+        continue;
+      }
+      if (!acquire(command, deadline)) {
+        this.pendingRecords = this.pending.size();
+        return false;
+      }
+      // Only take a token once the command has room to go, so that no token is wasted on a full pipeline
+      if (this.rateController != null && !this.rateController.acquire(deadline)) {
+        release(command);
+        this.pendingRecords = this.pending.size();
+        return false;
+      }
+      this.pending.pollFirst();
+      if (command.entryKey() != null) {
+        this.pendingByLane.remove(new LaneKey(command.hostUri(), command.nodeUri(), command.laneUri(),
+              command.entryKey()), command);
+      }
+      // Never call into the client while holding the pipeline lock, the client completes
+      // commands on its own threads.
+      final WarpRef ref = this.hostAffinity != null ? this.hostAffinity.refFor(command.hostUri()) : this.swimRef;
+      command.dispatchTime = System.nanoTime();
+      if (this.lagMetrics != null && command.timestamp() >= 0L) {
+        this.lagMetrics.recordDispatchLag(command.topicPartition(),
+              System.currentTimeMillis() - command.timestamp());
+      }
+      ref.command(command.hostUri(), command.nodeUri(), command.laneUri(), 0.0f, command.body(), command);
+    }
+    this.pendingRecords = 0;
+    return true;
+  }
+
+  /**
+   * Dispatches every pending command and waits up to {@code timeoutMillis} for all in-flight
+   * commands to be written.
+   *
+   * @return {@code true} if the pipeline was fully drained.
+   */
+  boolean flush(long timeoutMillis) {
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    if (!dispatch(true, timeoutMillis)) {
+      return false;
+    }
+    synchronized (this) {
+      while (this.inFlightRecords > 0 && this.failed.isEmpty()) {
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0L || !await(remaining)) {
+          return false;
+        }
+      }
+      return this.failed.isEmpty();
+    }
+  }
+
+  /**
+   * Drops the commands that failed to be written, along with every later command of their
+   * partitions, and returns the offsets from which the partitions must be re-consumed.
+   *
+   * @return the offset to rewind to by partition, empty if no command failed.
+   */
+  Map<TopicPartition, Long> rewindFailed() {
+    final Map<TopicPartition, Long> rewinds = new HashMap<>();
+    synchronized (this) {
+      SinkCommand command;
+      while ((command = this.failed.pollFirst()) != null) {
+        // Commands of records without a partition, sent to the fallback agent, can not be re-consumed
+        if (!command.discarded && command.topicPartition().partition() >= 0) {
+          final Long offset = rewinds.get(command.topicPartition());
+          if (offset == null || command.offset() < offset) {
+            rewinds.put(command.topicPartition(), command.offset());
+          }
+        }
+      }
+    }
+    if (!rewinds.isEmpty()) {
+      for (Map.Entry<TopicPartition, Long> rewind : rewinds.entrySet()) {
+        this.offsetTracker.rewind(rewind.getKey(), rewind.getValue());
+      }
+      dropDiscarded();
+    }
+    return rewinds;
+  }
+
+  Map<TopicPartition, OffsetAndMetadata> committableOffsets(Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
+    return this.offsetTracker.committableOffsets(currentOffsets);
+  }
+
+  /**
+   * Forgets the commands of partitions that are no longer assigned to the task: those still
+   * pending are dropped, since the task that now owns the partitions re-consumes their records,
+   * and those in flight are neither acknowledged nor rewound.
+   */
+  void close(Collection<TopicPartition> topicPartitions) {
+    this.offsetTracker.close(topicPartitions);
+    dropDiscarded();
+  }
+
+  // Forgets every command once the task is stopped, whether it is still pending or in flight
+  void clear() {
+    this.offsetTracker.clear();
+    this.pending.clear();
+    if (this.pendingByLane != null) {
+      this.pendingByLane.clear();
+    }
+    this.pendingRecords = 0;
+    synchronized (this) {
+      this.failed.clear();
+    }
+  }
+
+  // Removes the pending commands whose records are re-consumed, by this task or another one
+  private void dropDiscarded() {
+    final Iterator<SinkCommand> commands = this.pending.iterator();
+    while (commands.hasNext()) {
+      final SinkCommand command = commands.next();
+      if (command.discarded) {
+        commands.remove();
+        if (command.entryKey() != null) {
+          this.pendingByLane.remove(new LaneKey(command.hostUri(), command.nodeUri(), command.laneUri(),
+                command.entryKey()), command);
+        }
+      }
+    }
+    this.pendingRecords = this.pending.size();
+  }
+
+  synchronized int inFlightRecords() {
+    return this.inFlightRecords;
+  }
+
+  // Safe to call from any thread, as of the last dispatch
+  int pendingRecords() {
+    return this.pendingRecords;
+  }
+
+  // Safe to call from any thread
+  long coalescedRecords() {
+    return this.coalescedRecords;
+  }
+
+  synchronized long writeFailures() {
+    return this.writeFailures;
+  }
+
+  /**
+   * Number of times the client went back to writing commands after having failed to write them,
+   * that is the number of times it reconnected to the host.
+   */
+  synchronized long reconnects() {
+    return this.reconnects;
+  }
+
+  void didWrite(SinkCommand command) {
+    synchronized (this) {
+      if (this.failing) {
+        this.failing = false;
+        this.reconnects += 1L;
+      }
+    }
+    release(command);
+    if (this.rateController != null) {
+      this.rateController.didWrite(System.nanoTime() - command.dispatchTime);
+    }
+    this.offsetTracker.ack(command);
+  }
+
+  void didFail(SinkCommand command, Throwable error) {
+    synchronized (this) {
+      // The partition of the command is rewound by the next call to rewindFailed; its offset
+      // stays uncommitted until then
+      if (!command.discarded) {
+        this.failed.addLast(command);
+      }
+      this.writeFailures += 1L;
+      this.failing = true;
+    }
+    release(command);
+    if (this.rateController != null) {
+      this.rateController.didFail();
+    }
+  }
+
+  private synchronized boolean acquire(SinkCommand command, long deadline) {
+    while (!hasCapacity(command.size())) {
+      final long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0L || !await(remaining)) {
+        return false;
+      }
+    }
+    this.inFlightRecords += 1;
+    this.inFlightBytes += command.size();
+    return true;
+  }
+
+  private synchronized void release(SinkCommand command) {
+    this.inFlightRecords -= 1;
+    this.inFlightBytes -= command.size();
+    notifyAll();
+  }
+
+  private boolean hasCapacity(int size) {
+    // Always let a command through an empty pipeline, however large it is
+    return this.inFlightRecords == 0
+          || this.inFlightRecords < this.maxInFlightRecords
+          && (this.maxInFlightBytes <= 0L || this.inFlightBytes + size <= this.maxInFlightBytes);
+  }
+
+  // Must be called while holding the pipeline lock
+  private boolean await(long timeoutMillis) {
+    try {
+      wait(timeoutMillis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static final class LaneKey {
+
+    private final Uri hostUri;
+    private final Uri nodeUri;
+    private final Uri laneUri;
+    // Absent for the whole lane
+    private final Value entryKey;
+
+    LaneKey(Uri hostUri, Uri nodeUri, Uri laneUri, Value entryKey) {
+      this.hostUri = hostUri;
+      this.nodeUri = nodeUri;
+      this.laneUri = laneUri;
+      this.entryKey = entryKey;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      } else if (other instanceof LaneKey) {
+        final LaneKey that = (LaneKey) other;
+        return this.nodeUri.equals(that.nodeUri) && this.laneUri.equals(that.laneUri)
+              && this.entryKey.equals(that.entryKey) && this.hostUri.equals(that.hostUri);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((this.hostUri.hashCode() * 31 + this.nodeUri.hashCode()) * 31 + this.laneUri.hashCode()) * 31
+            + this.entryKey.hashCode();
+    }
+
+  }
+
+}
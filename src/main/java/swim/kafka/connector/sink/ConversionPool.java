@@ -0,0 +1,91 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the conversion of the records of a batch on a fork-join pool shared by all the tasks of
+ * the worker. The batch is split into contiguous chunks, one of which is converted by the calling
+ * task thread; the results are then dispatched by the task thread in the order of the batch, so
+ * that the order of the records of each partition, and of each key, is unchanged.
+ */
+final class ConversionPool {
+
+  private ConversionPool() {
+    // static
+  }
+
+  private static final class SharedPool {
+
+    static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+      final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("swim-sink-conversion-" + thread.getPoolIndex());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false);
+
+  }
+
+  /**
+   * Applies {@code action} to every index in {@code [0, size)}, on up to {@code parallelism}
+   * threads, with at least {@code minChunkSize} indices per thread. Returns once every index has
+   * been processed, and rethrows the first exception thrown by the action.
+   */
+  static void forEach(int size, int parallelism, int minChunkSize, IntConsumer action) {
+    final int chunkCount = Math.min(parallelism, Math.max(1, size / Math.max(1, minChunkSize)));
+    if (chunkCount <= 1) {
+      for (int i = 0; i < size; i += 1) {
+        action.accept(i);
+      }
+      return;
+    }
+    final ForkJoinTask<?>[] chunks = new ForkJoinTask<?>[chunkCount - 1];
+    for (int chunk = 1; chunk < chunkCount; chunk += 1) {
+      final int from = (int) ((long) size * chunk / chunkCount);
+      final int to = (int) ((long) size * (chunk + 1) / chunkCount);
+      chunks[chunk - 1] = SharedPool.POOL.submit(() -> {
+        for (int i = from; i < to; i += 1) {
+          action.accept(i);
+        }
+      });
+    }
+    RuntimeException error = null;
+    try {
+      final int to = size / chunkCount;
+      for (int i = 0; i < to; i += 1) {
+        action.accept(i);
+      }
+    } catch (RuntimeException e) {
+      error = e;
+    }
+    // Always wait for every chunk, the results are shared with the task thread. The wait is not
+    // interruptible, an interrupt of the task thread stays pending until every chunk is done.
+    for (ForkJoinTask<?> chunk : chunks) {
+      chunk.quietlyJoin();
+      if (chunk.isCompletedAbnormally() && error == null) {
+        final Throwable cause = chunk.getException();
+        error = cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+}
@@ -0,0 +1,222 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import swim.structure.Field;
+import swim.structure.Item;
+import swim.structure.Record;
+import swim.structure.Slot;
+import swim.structure.Value;
+import swim.uri.Uri;
+
+/**
+ * Turns the values sent to the value lanes of the agents into patches of the slots that changed
+ * since the last value sent to the same lane, eg: {@code @patch(remove: {b}) {a: 2}} after
+ * {@code {a: 1, b: 1, c: 1}} for {@code {a: 2, c: 1}}. The agent merges the patch into its
+ * current value.
+ * <p>
+ * The last value sent to each lane is kept in a bounded LRU cache. A full value is sent for the
+ * first value of a lane, after the lane was evicted from the cache, once per resync interval so
+ * that agents that lost their state catch up, and whenever the patch would not be smaller than
+ * the value. Only records with unique slot keys are patched; other values are always sent whole.
+ * <p>
+ * Only accessed from the task thread.
+ */
+final class DeltaEncoder {
+
+  static final String PATCH_TAG = "patch";
+
+  private final int cacheSize;
+  private final long resyncIntervalMillis;
+  private final LinkedHashMap<LaneKey, Entry> lastValues;
+  // Written by the task thread, read by the metrics
+  private volatile long fullValues;
+  private volatile long patches;
+  private volatile long unchangedValues;
+  private volatile int cachedLanes;
+
+  DeltaEncoder(int cacheSize, long resyncIntervalMillis) {
+    this.cacheSize = cacheSize;
+    this.resyncIntervalMillis = resyncIntervalMillis;
+    this.lastValues = new LinkedHashMap<LaneKey, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<LaneKey, Entry> eldest) {
+        return size() > DeltaEncoder.this.cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Returns what to send to a lane instead of {@code value}: the value itself, a patch tagged
+   * {@code @patch}, or null if nothing changed since the last value sent.
+   */
+  Value encode(Uri nodeUri, Uri laneUri, Value value, long now) {
+    final LaneKey key = new LaneKey(nodeUri, laneUri);
+    final Entry last = this.lastValues.get(key);
+    if (!isPatchable(value)) {
+      if (last != null) {
+        this.lastValues.remove(key);
+        this.cachedLanes = this.lastValues.size();
+      }
+      return full(value);
+    } else if (last == null || now - last.fullTime >= this.resyncIntervalMillis) {
+      this.lastValues.put(key, new Entry(value, now));
+      this.cachedLanes = this.lastValues.size();
+      return full(value);
+    }
+    final Value patch = diff((Record) last.value, (Record) value);
+    if (patch == null) {
+      this.unchangedValues += 1L;
+      return null;
+    }
+    last.value = value;
+    if (patch == value) {
+      last.fullTime = now;
+      return full(value);
+    }
+    this.patches += 1L;
+    return patch;
+  }
+
+  /**
+   * Forgets the last values sent to every lane, so that the next value of each lane is sent whole.
+   */
+  void clear() {
+    this.lastValues.clear();
+    this.cachedLanes = 0;
+  }
+
+  static boolean isPatch(Value body) {
+    return PATCH_TAG.equals(body.tag());
+  }
+
+  long fullValues() {
+    return this.fullValues;
+  }
+
+  long patches() {
+    return this.patches;
+  }
+
+  long unchangedValues() {
+    return this.unchangedValues;
+  }
+
+  int cachedLanes() {
+    return this.cachedLanes;
+  }
+
+  private Value full(Value value) {
+    this.fullValues += 1L;
+    return value;
+  }
+
+  /**
+   * Returns the patch from {@code previous} to {@code next}, {@code next} itself if the patch
+   * would not be smaller, or null if both have the same slots.
+   */
+  static Value diff(Record previous, Record next) {
+    final Record changed = Record.create();
+    for (Item item : next) {
+      final Value key = item.key();
+      final Value value = item.toValue();
+      if (!previous.containsKey(key) || !previous.get(key).equals(value)) {
+        changed.add(item);
+      }
+    }
+    final Record removed = Record.create();
+    for (Item item : previous) {
+      if (!next.containsKey(item.key())) {
+        removed.add(item.key());
+      }
+    }
+    if (changed.isEmpty() && removed.isEmpty()) {
+      return null;
+    } else if (changed.size() + removed.size() >= next.size()) {
+      return next;
+    }
+    final Record patch = Record.create(1 + changed.size());
+    if (removed.isEmpty()) {
+      patch.attr(PATCH_TAG);
+    } else {
+      patch.attr(PATCH_TAG, Record.create(1).slot("remove", removed));
+    }
+    for (Item item : changed) {
+      patch.add(item);
+    }
+    return patch;
+  }
+
+  // Records of slots with distinct keys, that are not themselves tagged as patches
+  private static boolean isPatchable(Value value) {
+    if (!(value instanceof Record) || isPatch(value)) {
+      return false;
+    }
+    final Record record = (Record) value;
+    final HashSet<Value> keys = new HashSet<>();
+    for (Item item : record) {
+      if (!(item instanceof Slot) || !keys.add(((Field) item).key())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final class Entry {
+
+    Value value;
+    long fullTime;
+
+    Entry(Value value, long fullTime) {
+      this.value = value;
+      this.fullTime = fullTime;
+    }
+
+  }
+
+  private static final class LaneKey {
+
+    private final Uri nodeUri;
+    private final Uri laneUri;
+
+    LaneKey(Uri nodeUri, Uri laneUri) {
+      this.nodeUri = nodeUri;
+      this.laneUri = laneUri;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      } else if (other instanceof LaneKey) {
+        final LaneKey that = (LaneKey) other;
+        return this.nodeUri.equals(that.nodeUri) && this.laneUri.equals(that.laneUri);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.nodeUri.hashCode() * 31 + this.laneUri.hashCode();
+    }
+
+  }
+
+}
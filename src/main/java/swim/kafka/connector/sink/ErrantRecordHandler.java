@@ -0,0 +1,110 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.Locale;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.sink.ErrantRecordReporter;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import swim.uri.Uri;
+
+/**
+ * Decides what happens to a record that cannot be converted, or for which no agent uri can be
+ * computed, so that one bad record does not fail the task.
+ * <p>
+ * Bad records are first reported to the errant record reporter of Connect, when the connector
+ * is configured with {@code errors.tolerance=all} and, optionally, a dead letter queue. They are
+ * then handled by the local {@link Action}; with a reporter, {@code fail} skips the record
+ * instead, since Connect has been told to tolerate it.
+ */
+public final class ErrantRecordHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ErrantRecordHandler.class);
+
+  public enum Action {
+
+    FAIL, SKIP, LOG, FALLBACK;
+
+    public static Action from(String label) {
+      return valueOf(label.trim().toUpperCase(Locale.ROOT));
+    }
+
+  }
+
+  private final Action action;
+  private final Uri fallbackAgentUri;
+  private final long logIntervalMillis;
+  private final ErrantRecordReporter reporter;
+  // Only accessed from the task thread
+  private long nextLogTime;
+  private long suppressedLogs;
+
+  ErrantRecordHandler(Action action, Uri fallbackAgentUri, long logIntervalMillis, ErrantRecordReporter reporter) {
+    this.action = action;
+    this.fallbackAgentUri = fallbackAgentUri;
+    this.logIntervalMillis = logIntervalMillis;
+    this.reporter = reporter;
+  }
+
+  Uri getFallbackAgentUri() {
+    return this.fallbackAgentUri;
+  }
+
+  /**
+   * Handles a bad record.
+   *
+   * @return {@code true} if the record is to be sent to the fallback agent, {@code false} if it
+   * is to be skipped.
+   * @throws ConnectException if the task is to fail.
+   */
+  boolean handle(SinkRecord record, Throwable error) {
+    if (this.reporter != null) {
+      // Connect waits for the reported records to be written before committing their offsets
+      this.reporter.report(record, error);
+    }
+    switch (this.action) {
+      case FALLBACK:
+        return true;
+      case LOG:
+        log(record, error);
+        return false;
+      case SKIP:
+        return false;
+      default:
+        if (this.reporter != null) {
+          return false;
+        }
+        throw new ConnectException("Bad record at offset " + record.kafkaOffset() + " of partition "
+              + record.kafkaPartition() + " of " + record.topic(), error);
+    }
+  }
+
+  // Logs at most one bad record per interval, along with the number of records not logged
+  private void log(SinkRecord record, Throwable error) {
+    final long now = System.currentTimeMillis();
+    if (now < this.nextLogTime) {
+      this.suppressedLogs += 1L;
+      return;
+    }
+    this.nextLogTime = now + this.logIntervalMillis;
+    final long suppressed = this.suppressedLogs;
+    this.suppressedLogs = 0L;
+    LOG.warn("Skipped bad record at offset {} of partition {} of {} ({} more skipped since last logged)",
+          record.kafkaOffset(), record.kafkaPartition(), record.topic(), suppressed, error);
+  }
+
+}
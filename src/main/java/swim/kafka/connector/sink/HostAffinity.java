@@ -0,0 +1,91 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import swim.api.ref.WarpRef;
+import swim.client.ClientRuntime;
+import swim.uri.Uri;
+
+/**
+ * Assigns each of the Swim hosts to one task of the connector, and sends the commands of a task
+ * through the client runtime of the task that owns their host. Host {@code i} is owned by task
+ * {@code i % taskCount}.
+ * <p>
+ * The runtime of every task is registered in the {@link ClientRuntimeRegistry}, so commands for a
+ * host owned by another task of the same worker are handed off to the connection of that task.
+ * Commands for a host whose owner does not run in this worker go through the runtime of the task
+ * itself, until the owner starts here.
+ */
+final class HostAffinity {
+
+  private final String connectorKey;
+  private final int taskIndex;
+  private final int taskCount;
+  private final WarpRef ownRef;
+  // Owner task of each host
+  private final Map<Uri, Integer> owners;
+  // Runtimes of the other tasks acquired from the registry, indexed by task
+  private final ClientRuntime[] ownerRefs;
+
+  HostAffinity(String connectorKey, int taskIndex, int taskCount, List<Uri> hostUris, WarpRef ownRef) {
+    this.connectorKey = connectorKey;
+    this.taskIndex = taskIndex;
+    this.taskCount = taskCount;
+    this.ownRef = ownRef;
+    this.owners = new HashMap<>();
+    for (int i = 0; i < hostUris.size(); i += 1) {
+      this.owners.put(hostUris.get(i), i % taskCount);
+    }
+    this.ownerRefs = new ClientRuntime[taskCount];
+  }
+
+  static String runtimeKey(String connectorKey, int taskIndex) {
+    return connectorKey + "#" + taskIndex;
+  }
+
+  WarpRef refFor(Uri hostUri) {
+    final Integer owner = this.owners.get(hostUri);
+    if (owner == null || owner == this.taskIndex) {
+      return this.ownRef;
+    }
+    final ClientRuntime ownerRef = this.ownerRefs[owner];
+    return ownerRef != null ? ownerRef : this.ownRef;
+  }
+
+  /**
+   * Looks up the runtimes of the owner tasks that have started in this worker since the last call.
+   * Called when the task starts and on every flush, rather than for every command.
+   */
+  void resolveOwners() {
+    for (int owner = 0; owner < this.taskCount; owner += 1) {
+      if (owner != this.taskIndex && this.ownerRefs[owner] == null && this.owners.containsValue(owner)) {
+        this.ownerRefs[owner] = ClientRuntimeRegistry.acquireIfPresent(runtimeKey(this.connectorKey, owner));
+      }
+    }
+  }
+
+  void release() {
+    for (int owner = 0; owner < this.taskCount; owner += 1) {
+      if (this.ownerRefs[owner] != null) {
+        ClientRuntimeRegistry.release(runtimeKey(this.connectorKey, owner));
+        this.ownerRefs[owner] = null;
+      }
+    }
+  }
+
+}
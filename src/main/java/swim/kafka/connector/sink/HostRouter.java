@@ -0,0 +1,113 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import swim.uri.Uri;
+
+/**
+ * Maps the URI of a Web Agent to the Swim host that owns it, using rendezvous (highest random
+ * weight) hashing: every host scores the agent URI and the host with the highest score wins.
+ * <p>
+ * Adding or removing a host only moves the agents that the host wins or owned, about
+ * {@code 1 / hostCount} of them, so commands keep going directly to the owning node of the
+ * fabric after the host list changes.
+ */
+public final class HostRouter {
+
+  private final Uri[] hostUris;
+  private final long[] hostSeeds;
+
+  public HostRouter(List<Uri> hostUris) {
+    if (hostUris.isEmpty()) {
+      throw new IllegalArgumentException("A host router needs at least one host");
+    }
+    this.hostUris = hostUris.toArray(new Uri[0]);
+    this.hostSeeds = new long[this.hostUris.length];
+    for (int i = 0; i < this.hostUris.length; i += 1) {
+      this.hostSeeds[i] = hash(this.hostUris[i].toString());
+    }
+  }
+
+  public static HostRouter of(Uri hostUri) {
+    return new HostRouter(Collections.singletonList(hostUri));
+  }
+
+  public List<Uri> getHostUris() {
+    return Collections.unmodifiableList(Arrays.asList(this.hostUris));
+  }
+
+  public int hostCount() {
+    return this.hostUris.length;
+  }
+
+  public Uri route(Uri agentUri) {
+    if (this.hostUris.length == 1) {
+      return this.hostUris[0];
+    }
+    // The whole 64 bits of the hash, rather than the 32 bits of String.hashCode, keep the agents of colliding
+    // strings apart
+    final long agentHash = hash(agentUri.toString());
+    int owner = 0;
+    long maxScore = Long.MIN_VALUE;
+    for (int i = 0; i < this.hostSeeds.length; i += 1) {
+      final long score = mix(agentHash ^ this.hostSeeds[i]);
+      if (score > maxScore) {
+        maxScore = score;
+        owner = i;
+      }
+    }
+    return this.hostUris[owner];
+  }
+
+  // 64 bit FNV-1a over the UTF-8 bytes of the string, encoded on the fly so that routing an agent does not allocate
+  static long hash(String string) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < string.length(); i += 1) {
+      final int c = string.codePointAt(i);
+      if (c < 0x80) {
+        hash = fnv(hash, c);
+      } else if (c < 0x800) {
+        hash = fnv(fnv(hash, 0xc0 | c >>> 6), 0x80 | c & 0x3f);
+      } else if (c < 0x10000) {
+        // Lone surrogates are encoded as '?', like String.getBytes does
+        hash = Character.isSurrogate((char) c) ? fnv(hash, '?')
+              : fnv(fnv(fnv(hash, 0xe0 | c >>> 12), 0x80 | c >>> 6 & 0x3f), 0x80 | c & 0x3f);
+      } else {
+        hash = fnv(fnv(fnv(fnv(hash, 0xf0 | c >>> 18), 0x80 | c >>> 12 & 0x3f), 0x80 | c >>> 6 & 0x3f),
+              0x80 | c & 0x3f);
+        i += 1;
+      }
+    }
+    return hash;
+  }
+
+  private static long fnv(long hash, int b) {
+    return (hash ^ b) * 0x100000001b3L;
+  }
+
+  // Finalizer of MurmurHash3, spreads every input bit over the whole score
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+}
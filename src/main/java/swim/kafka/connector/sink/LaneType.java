@@ -0,0 +1,49 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+/**
+ * The kind of lane that the records of a route are sent to, which decides the envelope of the
+ * commands: value lanes are sent the whole value, map and list lanes are sent keyed updates and
+ * removes.
+ */
+public enum LaneType {
+
+  VALUE("value"),
+  // @update(key: k) value and @remove(key: k)
+  MAP("map"),
+  // @update(index: i) value and @remove(index: i)
+  LIST("list");
+
+  private final String label;
+
+  LaneType(String label) {
+    this.label = label;
+  }
+
+  public String label() {
+    return this.label;
+  }
+
+  public static LaneType from(String label) {
+    for (LaneType laneType : values()) {
+      if (laneType.label.equals(label.trim())) {
+        return laneType;
+      }
+    }
+    throw new IllegalArgumentException("Unknown lane type: " + label);
+  }
+
+}
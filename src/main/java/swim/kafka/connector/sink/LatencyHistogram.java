@@ -0,0 +1,132 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of durations in nanoseconds, with power of two buckets, for recording
+ * latencies on the hot path. Percentiles are therefore precise to within a factor of two, and are
+ * computed over the samples recorded in the last one to two windows.
+ */
+final class LatencyHistogram {
+
+  static final int BUCKET_COUNT = 64;
+
+  private final long windowMillis;
+  private final LongAdder[] buckets;
+  private final LongAdder sum;
+  private final LongAccumulator max;
+
+  // Guarded by this, only used when the histogram is read
+  private final long[] base;
+  private final long[] olderBase;
+  private long baseSum;
+  private long olderBaseSum;
+  private long previousMax;
+  private long windowStart;
+
+  LatencyHistogram(long windowMillis) {
+    this.windowMillis = windowMillis;
+    this.buckets = new LongAdder[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i += 1) {
+      this.buckets[i] = new LongAdder();
+    }
+    this.sum = new LongAdder();
+    this.max = new LongAccumulator(Math::max, 0L);
+    this.base = new long[BUCKET_COUNT];
+    this.olderBase = new long[BUCKET_COUNT];
+    this.windowStart = System.currentTimeMillis();
+  }
+
+  void record(long nanos) {
+    if (nanos < 0L) {
+      nanos = 0L;
+    }
+    this.buckets[bucketOf(nanos)].increment();
+    this.sum.add(nanos);
+    this.max.accumulate(nanos);
+  }
+
+  synchronized long count(long now) {
+    roll(now);
+    long count = 0L;
+    for (int i = 0; i < BUCKET_COUNT; i += 1) {
+      count += this.buckets[i].sum() - this.olderBase[i];
+    }
+    return count;
+  }
+
+  synchronized double mean(long now) {
+    final long count = count(now);
+    return count == 0L ? 0.0 : (double) (this.sum.sum() - this.olderBaseSum) / count;
+  }
+
+  synchronized long max(long now) {
+    roll(now);
+    return Math.max(this.previousMax, this.max.get());
+  }
+
+  /**
+   * Returns the upper bound of the bucket holding the given quantile, eg: 0.99 for the 99th
+   * percentile, or 0 if no samples were recorded.
+   */
+  synchronized long percentile(double quantile, long now) {
+    roll(now);
+    final long[] counts = new long[BUCKET_COUNT];
+    long count = 0L;
+    for (int i = 0; i < BUCKET_COUNT; i += 1) {
+      counts[i] = this.buckets[i].sum() - this.olderBase[i];
+      count += counts[i];
+    }
+    if (count == 0L) {
+      return 0L;
+    }
+    final long rank = (long) Math.ceil(quantile * count);
+    long seen = 0L;
+    for (int i = 0; i < BUCKET_COUNT; i += 1) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0L) {
+        return upperBoundOf(i);
+      }
+    }
+    return upperBoundOf(BUCKET_COUNT - 1);
+  }
+
+  private void roll(long now) {
+    if (now - this.windowStart < this.windowMillis) {
+      return;
+    }
+    System.arraycopy(this.base, 0, this.olderBase, 0, BUCKET_COUNT);
+    this.olderBaseSum = this.baseSum;
+    for (int i = 0; i < BUCKET_COUNT; i += 1) {
+      this.base[i] = this.buckets[i].sum();
+    }
+    this.baseSum = this.sum.sum();
+    this.previousMax = this.max.getThenReset();
+    this.windowStart = now;
+  }
+
+  // Bucket 0 holds 0, bucket i holds the values in [2^(i - 1), 2^i)
+  static int bucketOf(long nanos) {
+    return Math.min(BUCKET_COUNT - Long.numberOfLeadingZeros(nanos), BUCKET_COUNT - 1);
+  }
+
+  static long upperBoundOf(int bucket) {
+    return bucket == 0 ? 0L : bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1L;
+  }
+
+}
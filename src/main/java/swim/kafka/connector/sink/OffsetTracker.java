@@ -0,0 +1,130 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Tracks, per partition, the offsets of the commands that have been accepted by the task but not
+ * yet written to the Swim host. A record may be sent as several commands, which share its offset.
+ * Only the offsets below the oldest unacknowledged command of a partition are ever reported as
+ * committable.
+ */
+final class OffsetTracker {
+
+  private final Map<TopicPartition, PartitionOffsets> partitions = new HashMap<>();
+
+  synchronized void track(SinkCommand command) {
+    final TopicPartition topicPartition = command.topicPartition();
+    PartitionOffsets partitionOffsets = this.partitions.get(topicPartition);
+    if (partitionOffsets == null) {
+      partitionOffsets = new PartitionOffsets();
+      this.partitions.put(topicPartition, partitionOffsets);
+    }
+    partitionOffsets.pending.addLast(command);
+    // Commands are only tracked again once Connect has applied the rewind
+    partitionOffsets.rewindOffset = -1L;
+  }
+
+  synchronized void ack(SinkCommand command) {
+    command.acked = true;
+    final PartitionOffsets partitionOffsets = this.partitions.get(command.topicPartition());
+    if (partitionOffsets != null) {
+      SinkCommand head;
+      while ((head = partitionOffsets.pending.peekFirst()) != null && head.acked) {
+        partitionOffsets.pending.pollFirst();
+        final SinkCommand next = partitionOffsets.pending.peekFirst();
+        // A record routed to several lanes is only done once all of its commands are
+        if (next == null || next.offset() != head.offset()) {
+          partitionOffsets.ackedOffset = head.offset();
+        }
+      }
+    }
+  }
+
+  /**
+   * Forgets the commands of a partition from {@code offset} on, which are to be re-consumed, and
+   * caps the committable offset of the partition to {@code offset} until they are.
+   */
+  synchronized void rewind(TopicPartition topicPartition, long offset) {
+    final PartitionOffsets partitionOffsets = this.partitions.get(topicPartition);
+    if (partitionOffsets != null) {
+      final Iterator<SinkCommand> commands = partitionOffsets.pending.iterator();
+      while (commands.hasNext()) {
+        final SinkCommand command = commands.next();
+        if (command.offset() >= offset) {
+          command.discarded = true;
+          commands.remove();
+        }
+      }
+      partitionOffsets.rewindOffset = offset;
+    }
+  }
+
+  synchronized Map<TopicPartition, OffsetAndMetadata> committableOffsets(
+        Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
+    final Map<TopicPartition, OffsetAndMetadata> committable = new HashMap<>(currentOffsets.size());
+    for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : currentOffsets.entrySet()) {
+      final PartitionOffsets partitionOffsets = this.partitions.get(entry.getKey());
+      OffsetAndMetadata offset = null;
+      if (partitionOffsets == null || partitionOffsets.pending.isEmpty()) {
+        // everything consumed from this partition has been written
+        offset = entry.getValue();
+      } else if (partitionOffsets.ackedOffset >= 0L) {
+        offset = new OffsetAndMetadata(partitionOffsets.ackedOffset + 1L);
+      }
+      if (offset != null && partitionOffsets != null && partitionOffsets.rewindOffset >= 0L
+            && partitionOffsets.rewindOffset < offset.offset()) {
+        // the partition is yet to be re-consumed from a command that failed to be written
+        offset = new OffsetAndMetadata(partitionOffsets.rewindOffset);
+      }
+      if (offset != null) {
+        committable.put(entry.getKey(), offset);
+      }
+    }
+    return committable;
+  }
+
+  synchronized void close(Collection<TopicPartition> topicPartitions) {
+    for (TopicPartition topicPartition : topicPartitions) {
+      final PartitionOffsets partitionOffsets = this.partitions.remove(topicPartition);
+      if (partitionOffsets != null) {
+        for (SinkCommand command : partitionOffsets.pending) {
+          command.discarded = true;
+        }
+      }
+    }
+  }
+
+  synchronized void clear() {
+    close(new ArrayList<>(this.partitions.keySet()));
+  }
+
+  private static final class PartitionOffsets {
+
+    final ArrayDeque<SinkCommand> pending = new ArrayDeque<>();
+    long ackedOffset = -1L;
+    long rewindOffset = -1L;
+
+  }
+
+}
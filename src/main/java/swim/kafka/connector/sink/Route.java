@@ -0,0 +1,235 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import swim.kafka.connector.convertor.ValueView;
+import swim.kafka.connector.id.AgentIdSource;
+import swim.kafka.connector.id.RawFieldScanner;
+import swim.structure.Num;
+import swim.structure.Record;
+import swim.structure.Selector;
+import swim.structure.Text;
+import swim.structure.Value;
+import swim.uri.Uri;
+import swim.uri.UriPattern;
+
+/**
+ * Immutable destination of the records of a sink: the lane of the Web Agents that the records
+ * are sent to, how the agent id is extracted from a record and, optionally, which part of the
+ * value is sent.
+ * <p>
+ * Value lanes are sent the value of each record. Map and list lanes are sent an update of the
+ * entry whose key, or index, is extracted from the key, or the value, of the record, or a remove
+ * of that entry when the record is a tombstone. Tombstones have no value, so the entry removed
+ * by a tombstone of a route taking its lane keys from values is the one of the whole Kafka key.
+ */
+public final class Route {
+
+  private final String name;
+  private final Uri laneUri;
+  private final UriPattern agentUriPattern;
+  private final Selector agentIdExtractor;
+  private final AgentIdSource agentIdSource;
+  private final String agentIdHeader;
+  private final RawFieldScanner agentIdScanner;
+  private final Selector projection;
+  private final LaneType laneType;
+  private final Selector laneKeyExtractor;
+  private final boolean useValueForLaneKey;
+  private final String[] projectionPath;
+
+  /**
+   * The optional {@code agentIdHeader}, {@code agentIdScanner}, {@code projection},
+   * {@code laneKeyExtractor} and {@code projectionPath} may be null.
+   */
+  public Route(String name, Uri laneUri, UriPattern agentUriPattern, Selector agentIdExtractor,
+               AgentIdSource agentIdSource, String agentIdHeader, RawFieldScanner agentIdScanner, Selector projection,
+               LaneType laneType, Selector laneKeyExtractor, boolean useValueForLaneKey, String[] projectionPath) {
+    this.name = name;
+    this.laneUri = laneUri;
+    this.agentUriPattern = agentUriPattern;
+    this.agentIdExtractor = agentIdExtractor;
+    this.agentIdSource = agentIdSource;
+    this.agentIdHeader = agentIdHeader;
+    this.agentIdScanner = agentIdScanner;
+    this.projection = projection;
+    this.laneType = laneType;
+    this.laneKeyExtractor = laneKeyExtractor != null ? laneKeyExtractor : Selector.identity();
+    this.useValueForLaneKey = useValueForLaneKey;
+    this.projectionPath = projectionPath;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public Uri getLaneUri() {
+    return this.laneUri;
+  }
+
+  public UriPattern getAgentUriPattern() {
+    return this.agentUriPattern;
+  }
+
+  public Selector getAgentIdExtractor() {
+    return this.agentIdExtractor;
+  }
+
+  public boolean useValueForAgentId() {
+    return this.agentIdSource == AgentIdSource.VALUE;
+  }
+
+  public AgentIdSource getAgentIdSource() {
+    return this.agentIdSource;
+  }
+
+  // The name of the header holding the agent id, when the id is taken from a header
+  public String getAgentIdHeader() {
+    return this.agentIdHeader;
+  }
+
+  // Null unless values are passed through, or viewed lazily, and the agent id is taken from the value
+  public RawFieldScanner getAgentIdScanner() {
+    return this.agentIdScanner;
+  }
+
+  // Null if the whole value is sent
+  public Selector getProjection() {
+    return this.projection;
+  }
+
+  /**
+   * Returns the part of the converted value that is sent to the lane.
+   */
+  public Value project(Value value) {
+    if (this.projection == null) {
+      return value;
+    }
+    return this.projection.evaluate(value).toValue();
+  }
+
+  /**
+   * Returns the part of a lazily converted value that is sent to the lane, only converting the
+   * projected field when the projection is a plain field path.
+   */
+  public Value project(ValueView value) {
+    if (this.projection == null) {
+      return value.toValue();
+    } else if (this.projectionPath != null) {
+      final Value field = value.get(this.projectionPath);
+      if (field != null) {
+        return field;
+      }
+    }
+    return project(value.toValue());
+  }
+
+  // Null unless values are viewed lazily and the projection is a plain field path
+  public String[] getProjectionPath() {
+    return this.projectionPath;
+  }
+
+  public LaneType getLaneType() {
+    return this.laneType;
+  }
+
+  // Extracts the key, or the index, of the lane entry from the converted key, or value, of a record
+  public Selector getLaneKeyExtractor() {
+    return this.laneKeyExtractor;
+  }
+
+  public boolean useValueForLaneKey() {
+    return this.useValueForLaneKey;
+  }
+
+  /**
+   * Returns the key, or the index, of the lane entry of a record, from its converted key or its
+   * whole converted value, which is null for tombstones. Returns absent for value lanes.
+   */
+  public Value laneKey(Value key, Value value) {
+    if (this.laneType == LaneType.VALUE) {
+      return Value.absent();
+    } else if (!this.useValueForLaneKey) {
+      return this.laneKeyExtractor.evaluate(key).toValue();
+    } else if (value != null) {
+      return this.laneKeyExtractor.evaluate(value).toValue();
+    }
+    // Tombstones have no value to extract the lane key from
+    return key;
+  }
+
+  // The lane key of a lazily converted value, which is then converted as a whole
+  public Value laneKey(Value key, ValueView value) {
+    if (this.laneType != LaneType.VALUE && this.useValueForLaneKey) {
+      return laneKey(key, value.toValue());
+    }
+    return laneKey(key, (Value) null);
+  }
+
+  /**
+   * Returns the body of the command sent to the lane for a record: the value itself for value
+   * lanes; an update of the entry of the lane key, or a remove if the record is a tombstone, for
+   * map and list lanes. Returns null if the record has no lane key, or if the lane key of a list
+   * lane is not a non-negative integer.
+   */
+  public Value envelope(Value laneKey, Value value, boolean tombstone) {
+    if (this.laneType == LaneType.VALUE) {
+      return value;
+    } else if (this.laneType == LaneType.LIST) {
+      laneKey = listIndex(laneKey);
+    }
+    if (laneKey == null || !laneKey.isDefined()) {
+      return null;
+    }
+    final Value header = Record.create(1).slot(this.laneType == LaneType.MAP ? "key" : "index", laneKey);
+    if (tombstone) {
+      return Record.create(1).attr("remove", header);
+    }
+    return Record.create(1).attr("update", header).concat(value);
+  }
+
+  // List indexes are read from numbers, or from the decimal text of string keys; null if not a non-negative integer
+  private static Value listIndex(Value laneKey) {
+    if (laneKey instanceof Num) {
+      final double index = laneKey.doubleValue();
+      return index >= 0 && index <= Integer.MAX_VALUE && index == Math.rint(index) ? Num.from((int) index) : null;
+    } else if (laneKey instanceof Text) {
+      try {
+        final int index = Integer.parseInt(laneKey.stringValue());
+        return index >= 0 ? Num.from(index) : null;
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the entry of the lane that a command replaces when commands are coalesced: the whole
+   * lane for value lanes, the entry of the key for map lanes. List commands are never coalesced,
+   * since removes shift the indexes of the entries that follow, so null is returned.
+   */
+  public Value entryKey(Value envelope) {
+    switch (this.laneType) {
+      case MAP:
+        return envelope.header(envelope.tag()).get("key");
+      case LIST:
+        return null;
+      default:
+        return Value.absent();
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.kafka.common.config.ConfigException;
+import swim.kafka.connector.id.AgentIdSource;
+import swim.kafka.connector.id.RawFieldScanner;
+import swim.structure.Selector;
+import swim.uri.Uri;
+import swim.uri.UriPattern;
+
+/**
+ * Immutable, pre-parsed view of the routing related properties of a {@link SwimSinkConfig}.
+ * The configuration is validated and parsed once when the plan is created, so that the per
+ * record lookups do not have to re-parse any Uri, UriPattern or Selector.
+ * <p>
+ * Every record is sent along each of the routes of the plan: the default route, defined by the
+ * {@code swim.agent.uri.pattern} and {@code swim.lane.uri} properties, followed by the routes
+ * listed in {@code swim.routes}. The accessors of the individual route properties are those of
+ * the default route.
+ * <p>
+ * When several hosts are configured, each command is sent to the host that owns its agent, as
+ * chosen by the {@link HostRouter} of the plan.
+ */
+public final class RoutingPlan {
+
+  private final HostRouter hostRouter;
+  private final Route[] routes;
+  // Whether any route takes its agent id, or its lane keys, from the converted key
+  private final boolean needsKey;
+  private final boolean needsTombstoneKey;
+
+  // The first route is the default route
+  public RoutingPlan(HostRouter hostRouter, List<Route> routes) {
+    if (routes.isEmpty()) {
+      throw new IllegalArgumentException("A routing plan needs at least one route");
+    }
+    this.hostRouter = hostRouter;
+    this.routes = routes.toArray(new Route[0]);
+    boolean needsKey = false;
+    boolean needsTombstoneKey = false;
+    for (Route route : this.routes) {
+      needsKey |= route.getAgentIdSource() == AgentIdSource.KEY
+            || route.getLaneType() != LaneType.VALUE && !route.useValueForLaneKey();
+      needsTombstoneKey |= route.getLaneType() != LaneType.VALUE;
+    }
+    this.needsKey = needsKey;
+    this.needsTombstoneKey = needsKey || needsTombstoneKey;
+  }
+
+  public static RoutingPlan from(SwimSinkConfig config) throws ConfigException {
+    final List<Route> routes = new ArrayList<>();
+    routes.add(config.getDefaultRoute());
+    for (String name : config.getRouteNames()) {
+      routes.add(config.getRoute(name));
+    }
+    return new RoutingPlan(new HostRouter(config.getHostUris()), routes);
+  }
+
+  // The first of the hosts of the plan
+  public Uri getHostUri() {
+    return this.hostRouter.getHostUris().get(0);
+  }
+
+  public HostRouter getHostRouter() {
+    return this.hostRouter;
+  }
+
+  public Uri hostFor(Uri agentUri) {
+    return this.hostRouter.route(agentUri);
+  }
+
+  public int routeCount() {
+    return this.routes.length;
+  }
+
+  public Route getRoute(int index) {
+    return this.routes[index];
+  }
+
+  public Route getDefaultRoute() {
+    return this.routes[0];
+  }
+
+  public List<Route> getRoutes() {
+    return Collections.unmodifiableList(Arrays.asList(this.routes));
+  }
+
+  public Uri getLaneUri() {
+    return this.routes[0].getLaneUri();
+  }
+
+  public UriPattern getAgentUriPattern() {
+    return this.routes[0].getAgentUriPattern();
+  }
+
+  public Selector getAgentIdExtractor() {
+    return this.routes[0].getAgentIdExtractor();
+  }
+
+  public boolean useValueForAgentId() {
+    return this.routes[0].useValueForAgentId();
+  }
+
+  public boolean needsKey() {
+    return this.needsKey;
+  }
+
+  // The lane keys of tombstones are taken from their keys, whatever the lane key source of the route
+  public boolean needsKey(boolean tombstone) {
+    return tombstone ? this.needsTombstoneKey : this.needsKey;
+  }
+
+  // Null unless values are passed through and the agent id is taken from the value
+  public RawFieldScanner getAgentIdScanner() {
+    return this.routes[0].getAgentIdScanner();
+  }
+
+}
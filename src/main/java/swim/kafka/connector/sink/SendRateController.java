@@ -0,0 +1,150 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Additive increase, multiplicative decrease control of the rate at which a task hands commands
+ * to the Swim client, driven by how fast the client gets to write them to the host.
+ * <p>
+ * A host that pauses, eg: for garbage collection, or that falls behind stops reading from its
+ * connections, so the commands take longer to be written, and eventually fail. Once per
+ * interval, the rate is multiplied by the decrease factor if the average time to write the
+ * commands of the interval exceeded the target latency, or if a write failed; otherwise it is
+ * increased by a fixed step, provided the task was held back by the rate during the interval.
+ * <p>
+ * The rate is enforced by a token bucket holding up to a tenth of a second of commands. The
+ * task thread takes tokens; writes are reported from the threads of the client.
+ */
+public final class SendRateController {
+
+  private final double minRate;
+  private final double maxRate;
+  private final double increase;
+  private final double decreaseFactor;
+  private final long targetLatencyNanos;
+  private final long intervalNanos;
+
+  // Guarded by this
+  private double rate;
+  private double tokens;
+  private long refillTime;
+  private long intervalStart;
+  private long writes;
+  private long writeNanos;
+  private boolean failed;
+  private boolean limited;
+  private long decreases;
+
+  SendRateController(double minRate, double maxRate, double increase, double decreaseFactor,
+                     long targetLatencyMillis, long intervalMillis) {
+    this.minRate = minRate;
+    this.maxRate = maxRate;
+    this.increase = increase;
+    this.decreaseFactor = decreaseFactor;
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    // Start from the top, a responsive host never slows the task down
+    this.rate = maxRate;
+    this.tokens = burst();
+    this.refillTime = System.nanoTime();
+    this.intervalStart = this.refillTime;
+  }
+
+  /**
+   * Takes a token for one command, waiting for the bucket to refill until {@code deadline}, in
+   * milliseconds since the epoch.
+   *
+   * @return {@code false} if the rate does not allow another command before the deadline.
+   */
+  boolean acquire(long deadline) {
+    while (true) {
+      final long waitNanos;
+      synchronized (this) {
+        final long now = System.nanoTime();
+        refill(now);
+        adjust(now);
+        if (this.tokens >= 1.0) {
+          this.tokens -= 1.0;
+          return true;
+        }
+        this.limited = true;
+        waitNanos = (long) Math.ceil((1.0 - this.tokens) / this.rate * 1e9);
+      }
+      final long remainingNanos = TimeUnit.MILLISECONDS.toNanos(deadline - System.currentTimeMillis());
+      if (waitNanos > remainingNanos) {
+        return false;
+      }
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+
+  // Called once the client has written a command, latencyNanos after it was handed to it
+  synchronized void didWrite(long latencyNanos) {
+    this.writes += 1L;
+    this.writeNanos += latencyNanos;
+    adjust(System.nanoTime());
+  }
+
+  synchronized void didFail() {
+    this.failed = true;
+    adjust(System.nanoTime());
+  }
+
+  // The current rate, in commands per second
+  synchronized double rate() {
+    return this.rate;
+  }
+
+  synchronized long decreases() {
+    return this.decreases;
+  }
+
+  private void refill(long now) {
+    this.tokens = Math.min(burst(), this.tokens + (now - this.refillTime) * this.rate / 1e9);
+    this.refillTime = now;
+  }
+
+  private void adjust(long now) {
+    if (now - this.intervalStart < this.intervalNanos) {
+      return;
+    }
+    if (this.failed || this.writes > 0L && this.writeNanos / this.writes > this.targetLatencyNanos) {
+      refill(now);
+      this.rate = Math.max(this.minRate, this.rate * this.decreaseFactor);
+      this.tokens = Math.min(this.tokens, burst());
+      this.decreases += 1L;
+    } else if (this.limited) {
+      refill(now);
+      this.rate = Math.min(this.maxRate, this.rate + this.increase);
+    }
+    this.intervalStart = now;
+    this.writes = 0L;
+    this.writeNanos = 0L;
+    this.failed = false;
+    this.limited = false;
+  }
+
+  private double burst() {
+    return Math.max(1.0, this.rate / 10.0);
+  }
+
+}
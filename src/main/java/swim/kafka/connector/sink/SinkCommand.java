@@ -0,0 +1,111 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import org.apache.kafka.common.TopicPartition;
+import swim.concurrent.Cont;
+import swim.structure.Value;
+import swim.uri.Uri;
+import swim.warp.CommandMessage;
+
+/**
+ * A command waiting in, or in flight through, a {@link CommandPipeline}. The command is its own
+ * completion continuation: the client binds it once the command has been written to the host.
+ */
+final class SinkCommand implements Cont<CommandMessage> {
+
+  private final CommandPipeline pipeline;
+  private final TopicPartition topicPartition;
+  private final long offset;
+  private final Uri hostUri;
+  private final Uri nodeUri;
+  private final Uri laneUri;
+  private final Value body;
+  private final int size;
+  // The entry of the lane that the command replaces when coalescing, null if it is never replaced
+  private final Value entryKey;
+  // The timestamp of the record, in milliseconds since the epoch, or -1 if it has none
+  private final long timestamp;
+
+  // Guarded by the OffsetTracker
+  boolean acked;
+  // Only accessed from the task thread, set when a later command to the same lane replaces this one
+  boolean superseded;
+  // Set by the OffsetTracker when the partition of the command is rewound, or closed, to re-consume it
+  volatile boolean discarded;
+  // Set by the task thread when the command is handed to the client, in nanoseconds
+  long dispatchTime;
+
+  SinkCommand(CommandPipeline pipeline, TopicPartition topicPartition, long offset,
+              Uri hostUri, Uri nodeUri, Uri laneUri, Value body, int size, Value entryKey, long timestamp) {
+    this.pipeline = pipeline;
+    this.topicPartition = topicPartition;
+    this.offset = offset;
+    this.hostUri = hostUri;
+    this.nodeUri = nodeUri;
+    this.laneUri = laneUri;
+    this.body = body;
+    this.size = size;
+    this.entryKey = entryKey;
+    this.timestamp = timestamp;
+  }
+
+  TopicPartition topicPartition() {
+    return this.topicPartition;
+  }
+
+  long offset() {
+    return this.offset;
+  }
+
+  Uri hostUri() {
+    return this.hostUri;
+  }
+
+  Uri nodeUri() {
+    return this.nodeUri;
+  }
+
+  Uri laneUri() {
+    return this.laneUri;
+  }
+
+  Value body() {
+    return this.body;
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  Value entryKey() {
+    return this.entryKey;
+  }
+
+  long timestamp() {
+    return this.timestamp;
+  }
+
+  @Override
+  public void bind(CommandMessage message) {
+    this.pipeline.didWrite(this);
+  }
+
+  @Override
+  public void trap(Throwable error) {
+    this.pipeline.didFail(this, error);
+  }
+
+}
@@ -14,20 +14,61 @@
 
 package swim.kafka.connector.sink;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 import org.apache.kafka.connect.sink.SinkRecord;
+import swim.kafka.connector.convertor.BytesFormat;
 import swim.kafka.connector.convertor.MessageConvertor;
+import swim.kafka.connector.convertor.ValueView;
+import swim.structure.Text;
 import swim.structure.Value;
 
 public class SinkMessageConvertor {
 
   private MessageConvertor messageConvertor;
+  // Only values are parsed according to the bytes format, keys are always converted as is
+  private MessageConvertor valueConvertor;
 
-  public SinkMessageConvertor() {
-    this.messageConvertor = new MessageConvertor();
+  // Only the fields of the values on the given paths are converted, keys are always converted whole
+  public SinkMessageConvertor(int schemaCacheSize, BytesFormat valueBytesFormat, List<String> valueFields) {
+    this.messageConvertor = new MessageConvertor(schemaCacheSize, BytesFormat.DATA, Collections.emptyList());
+    if (valueBytesFormat == BytesFormat.DATA && valueFields.isEmpty()) {
+      this.valueConvertor = this.messageConvertor;
+    } else {
+      this.valueConvertor = new MessageConvertor(schemaCacheSize, valueBytesFormat, valueFields);
+    }
   }
 
   Value convertValue(SinkRecord sinkRecord) {
-    return messageConvertor.toValue(sinkRecord.value(), sinkRecord.valueSchema());
+    return valueConvertor.toValue(sinkRecord.value(), sinkRecord.valueSchema());
+  }
+
+  // The value is only converted as it is read
+  ValueView convertValueView(SinkRecord sinkRecord) {
+    return valueConvertor.toView(sinkRecord.value(), sinkRecord.valueSchema());
+  }
+
+  // Parses encoded string and byte array values as a whole according to the bytes format, skipping the conversion of
+  // the Connect value; they are forwarded as text, for the agent to parse, when the bytes format is data
+  Value passthroughValue(SinkRecord sinkRecord) {
+    final Object value = sinkRecord.value();
+    final Value parsed = valueConvertor.parseEncoded(value);
+    if (parsed != null) {
+      return parsed;
+    } else if (value instanceof String) {
+      return Text.from((String) value);
+    } else if (value instanceof byte[]) {
+      return Text.from(new String((byte[]) value, StandardCharsets.UTF_8));
+    } else if (value instanceof ByteBuffer) {
+      return Text.from(StandardCharsets.UTF_8.decode(((ByteBuffer) value).duplicate()).toString());
+    }
+    return convertValue(sinkRecord);
+  }
+
+  static boolean isEncoded(Object value) {
+    return value instanceof String || value instanceof byte[] || value instanceof ByteBuffer;
   }
 
   Value convertKey(SinkRecord sinkRecord) {
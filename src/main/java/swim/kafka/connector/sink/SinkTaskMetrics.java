@@ -0,0 +1,249 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.Measurable;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.metrics.stats.Rate;
+import org.apache.kafka.common.utils.Time;
+import swim.kafka.connector.id.AgentUriParser;
+
+/**
+ * Metrics of a {@link SwimKafkaSinkTask}, registered with JMX in the Kafka metrics style as
+ * {@code kafka.connect:type=swim-sink-task-metrics,connector=<name>,task=<id>}.
+ * <p>
+ * Counters and latency histograms that are updated for every record are lock free; the Kafka
+ * sensors are only recorded once per batch.
+ */
+final class SinkTaskMetrics implements AutoCloseable {
+
+  static final String JMX_PREFIX = "kafka.connect";
+  static final String GROUP = "swim-sink-task-metrics";
+  static final String DISPATCH_LAG = "dispatch-lag-ms";
+  static final String[] LAG_SUFFIXES = {"-avg", "-p50", "-p99", "-max"};
+
+  private final Metrics metrics;
+  private final Map<String, String> tags;
+  private final Sensor recordSensor;
+  private final Sensor byteSensor;
+  private final LatencyHistogram conversionTime;
+  private final LatencyHistogram agentUriTime;
+  private final LongAdder conversionErrors;
+  private final LongAdder emptyAgentUris;
+  private final LongAdder errantRecords;
+  // Only accessed from the task thread, the metrics read the histograms directly
+  private final Map<TopicPartition, LatencyHistogram> dispatchLags;
+
+  SinkTaskMetrics(String connector, String task) {
+    this(new Metrics(new MetricConfig(), Collections.singletonList(new JmxReporter()), Time.SYSTEM,
+          new KafkaMetricsContext(JMX_PREFIX)), connector, task);
+  }
+
+  SinkTaskMetrics(Metrics metrics, String connector, String task) {
+    this.metrics = metrics;
+    this.tags = new LinkedHashMap<>();
+    this.tags.put("connector", connector);
+    this.tags.put("task", task);
+
+    this.recordSensor = metrics.sensor("records");
+    this.recordSensor.add(metricName("put-record-rate", "Records per second handed to the Swim client"), new Rate());
+    this.recordSensor.add(metricName("put-record-total", "Records handed to the Swim client"), new CumulativeSum());
+    this.byteSensor = metrics.sensor("bytes");
+    this.byteSensor.add(metricName("put-byte-rate",
+          "Encoded bytes per second of the commands handed to the Swim client"), new Rate());
+    this.byteSensor.add(metricName("put-byte-total", "Encoded bytes of the commands handed to the Swim client"),
+          new CumulativeSum());
+
+    final long windowMillis = metrics.config().timeWindowMs();
+    this.conversionTime = new LatencyHistogram(windowMillis);
+    addHistogram("conversion-time-ns", "converting the key and value of a record", this.conversionTime);
+    this.agentUriTime = new LatencyHistogram(windowMillis);
+    addHistogram("agent-uri-time-ns", "extracting the agent id and building the agent uri of a record",
+          this.agentUriTime);
+
+    this.conversionErrors = new LongAdder();
+    addMetric("conversion-error-total", "Records that could not be converted", this.conversionErrors);
+    this.emptyAgentUris = new LongAdder();
+    addMetric("empty-agent-uri-total", "Records for which no agent uri could be computed", this.emptyAgentUris);
+    this.errantRecords = new LongAdder();
+    addMetric("errant-record-total", "Bad records that were reported, skipped or sent to the fallback agent",
+          this.errantRecords);
+    this.dispatchLags = new HashMap<>();
+  }
+
+  // Registers the gauges of the command pipeline of the task
+  void bindPipeline(CommandPipeline pipeline) {
+    addMetric("pending-records", "Commands waiting to be handed to the Swim client",
+          (config, now) -> pipeline.pendingRecords());
+    addMetric("in-flight-records", "Commands handed to the Swim client that have not yet been written",
+          (config, now) -> pipeline.inFlightRecords());
+    addMetric("command-queue-depth", "Commands waiting or in flight",
+          (config, now) -> pipeline.pendingRecords() + pipeline.inFlightRecords());
+    addMetric("coalesced-record-total", "Records that were not sent because a later record replaced them",
+          (config, now) -> pipeline.coalescedRecords());
+    addMetric("write-failure-total", "Commands that the Swim client failed to write",
+          (config, now) -> pipeline.writeFailures());
+    addMetric("reconnect-total", "Times the Swim client resumed writing commands after write failures",
+          (config, now) -> pipeline.reconnects());
+  }
+
+  // Registers the gauges of the agent uri cache of the task
+  void bindAgentUriParser(AgentUriParser agentUriParser) {
+    addMetric("agent-uri-cache-hit-total", "Agent uris found in the cache",
+          (config, now) -> agentUriParser.cacheHits());
+    addMetric("agent-uri-cache-miss-total", "Agent uris computed because they were not in the cache",
+          (config, now) -> agentUriParser.cacheMisses());
+    addMetric("agent-uri-cache-size", "Agent uris in the cache",
+          (config, now) -> agentUriParser.cacheSize());
+  }
+
+  // Registers the gauges of the send rate controller of the task, when the rate is controlled
+  void bindSendRateController(SendRateController rateController) {
+    addMetric("send-rate-limit", "Commands per second that the task is currently allowed to send",
+          (config, now) -> rateController.rate());
+    addMetric("send-rate-decrease-total", "Times the send rate was decreased because the hosts fell behind",
+          (config, now) -> rateController.decreases());
+  }
+
+  // Registers the gauges of the delta encoder of the task, when delta mode is enabled
+  void bindDeltaEncoder(DeltaEncoder deltaEncoder) {
+    addMetric("delta-full-total", "Values sent whole in delta mode",
+          (config, now) -> deltaEncoder.fullValues());
+    addMetric("delta-patch-total", "Values sent as a patch of their changed slots",
+          (config, now) -> deltaEncoder.patches());
+    addMetric("delta-unchanged-total", "Values not sent because they did not change",
+          (config, now) -> deltaEncoder.unchangedValues());
+    addMetric("delta-cache-size", "Lanes whose last value is kept to compute the patches",
+          (config, now) -> deltaEncoder.cachedLanes());
+  }
+
+  void recordBatch(int records, long bytes) {
+    final long now = System.currentTimeMillis();
+    this.recordSensor.record(records, now);
+    this.byteSensor.record(bytes, now);
+  }
+
+  void recordConversionTime(long nanos) {
+    this.conversionTime.record(nanos);
+  }
+
+  void recordAgentUriTime(long nanos) {
+    this.agentUriTime.record(nanos);
+  }
+
+  void recordConversionError() {
+    this.conversionErrors.increment();
+  }
+
+  void recordEmptyAgentUri() {
+    this.emptyAgentUris.increment();
+  }
+
+  void recordErrantRecord() {
+    this.errantRecords.increment();
+  }
+
+  /**
+   * Records the time between the production of a record, as of its timestamp, and the dispatch of
+   * its command, in milliseconds. The lag metrics of a partition are registered on its first
+   * record, with the topic and partition as additional tags.
+   */
+  void recordDispatchLag(TopicPartition topicPartition, long lagMillis) {
+    LatencyHistogram histogram = this.dispatchLags.get(topicPartition);
+    if (histogram == null) {
+      histogram = new LatencyHistogram(this.metrics.config().timeWindowMs());
+      this.dispatchLags.put(topicPartition, histogram);
+      addLagHistogram(topicPartition, histogram);
+    }
+    histogram.record(lagMillis);
+  }
+
+  // Unregisters the lag metrics of the partitions that are no longer assigned to the task
+  void closePartitions(Collection<TopicPartition> topicPartitions) {
+    for (TopicPartition topicPartition : topicPartitions) {
+      if (this.dispatchLags.remove(topicPartition) != null) {
+        for (String suffix : LAG_SUFFIXES) {
+          this.metrics.removeMetric(lagMetricName(topicPartition, DISPATCH_LAG + suffix, ""));
+        }
+      }
+    }
+  }
+
+  Metrics metrics() {
+    return this.metrics;
+  }
+
+  MetricName metricName(String name, String description) {
+    return this.metrics.metricName(name, GROUP, description, this.tags);
+  }
+
+  @Override
+  public void close() {
+    this.metrics.close();
+  }
+
+  private void addMetric(String name, String description, LongAdder counter) {
+    addMetric(name, description, (config, now) -> counter.sum());
+  }
+
+  private void addMetric(String name, String description, Measurable measurable) {
+    this.metrics.addMetric(metricName(name, description), measurable);
+  }
+
+  private void addLagHistogram(TopicPartition topicPartition, LatencyHistogram histogram) {
+    final String description = "time in milliseconds between the production of a record and the dispatch of its "
+          + "command";
+    this.metrics.addMetric(lagMetricName(topicPartition, DISPATCH_LAG + "-avg", "Average " + description),
+          (config, now) -> histogram.mean(now));
+    this.metrics.addMetric(lagMetricName(topicPartition, DISPATCH_LAG + "-p50", "Median " + description),
+          (config, now) -> histogram.percentile(0.50, now));
+    this.metrics.addMetric(lagMetricName(topicPartition, DISPATCH_LAG + "-p99",
+          "99th percentile of the " + description), (config, now) -> histogram.percentile(0.99, now));
+    this.metrics.addMetric(lagMetricName(topicPartition, DISPATCH_LAG + "-max", "Maximum " + description),
+          (config, now) -> histogram.max(now));
+  }
+
+  private MetricName lagMetricName(TopicPartition topicPartition, String name, String description) {
+    final Map<String, String> tags = new LinkedHashMap<>(this.tags);
+    tags.put("topic", topicPartition.topic());
+    tags.put("partition", Integer.toString(topicPartition.partition()));
+    return this.metrics.metricName(name, GROUP, description, tags);
+  }
+
+  private void addHistogram(String name, String description, LatencyHistogram histogram) {
+    addMetric(name + "-avg", "Average time in nanoseconds spent " + description,
+          (config, now) -> histogram.mean(now));
+    addMetric(name + "-p50", "Median time in nanoseconds spent " + description,
+          (config, now) -> histogram.percentile(0.50, now));
+    addMetric(name + "-p99", "99th percentile of the time in nanoseconds spent " + description,
+          (config, now) -> histogram.percentile(0.99, now));
+    addMetric(name + "-max", "Maximum time in nanoseconds spent " + description,
+          (config, now) -> histogram.max(now));
+  }
+
+}
@@ -16,6 +16,7 @@ package swim.kafka.connector.sink;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -42,7 +43,10 @@ public class SwimKafkaSinkConnector extends SinkConnector {
   public List<Map<String, String>> taskConfigs(int maxTasks) {
     final List<Map<String, String>> configs = new ArrayList<>(maxTasks);
     for (int i = 0; i < maxTasks; ++i) {
-      configs.add(this.props);
+      final Map<String, String> config = new HashMap<>(this.props);
+      config.put(SwimSinkConfig.SWIM_TASK_ID_PROP, Integer.toString(i));
+      config.put(SwimSinkConfig.SWIM_TASK_COUNT_PROP, Integer.toString(maxTasks));
+      configs.add(config);
     }
     return configs;
   }
@@ -15,53 +15,386 @@
 package swim.kafka.connector.sink;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.ErrantRecordReporter;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.sink.SinkTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import swim.client.ClientRuntime;
+import swim.kafka.connector.convertor.ValueView;
 import swim.kafka.connector.id.AgentUriParser;
+import swim.structure.Record;
 import swim.structure.Value;
 import swim.uri.Uri;
 
 public class SwimKafkaSinkTask extends SinkTask {
 
-  private static final SinkMessageConvertor MESSAGE_CONVERTOR = new SinkMessageConvertor();
-  private static final AgentUriParser AGENT_URI_PARSER = new AgentUriParser();
+  private static final Logger LOG = LoggerFactory.getLogger(SwimKafkaSinkTask.class);
 
   private ClientRuntime swimRef;
+  // Key of the runtime shared through the ClientRuntimeRegistry, null if the runtime is owned by the task
+  private String clientKey;
+  // Null unless each task owns a subset of the hosts
+  private HostAffinity hostAffinity;
+  private ErrantRecordHandler errantRecordHandler;
   private SwimSinkConfig config;
+  private SinkMessageConvertor messageConvertor;
+  private AgentUriParser agentUriParser;
+  // Plan of the topics without overrides
+  private RoutingPlan routingPlan;
+  private TopicRoutingPlans topicRoutingPlans;
+  private CommandPipeline pipeline;
+  private DeltaEncoder deltaEncoder;
+  private TraceMetadata traceMetadata;
+  private Uri deltaLaneUri;
+  private SinkTaskMetrics metrics;
+  private long maxBlockMs;
+  private long flushTimeoutMs;
+  private boolean paused;
+  private boolean passthrough;
+  private boolean lazy;
+  private int conversionParallelism;
+  private int conversionChunkSize;
 
   @Override
   public void start(Map<String, String> props) {
-    this.swimRef = new ClientRuntime();
-    swimRef.start();
     this.config = new SwimSinkConfig(props);
+    this.topicRoutingPlans = new TopicRoutingPlans(this.config);
+    this.routingPlan = this.topicRoutingPlans.getDefaultPlan();
+    this.maxBlockMs = this.config.getMaxBlockMs();
+    this.flushTimeoutMs = this.config.getFlushTimeoutMs();
+    this.passthrough = this.config.isValuePassthrough();
+    this.lazy = this.config.isValueLazy();
+    this.conversionParallelism = this.config.getConversionParallelism();
+    this.conversionChunkSize = this.config.getConversionChunkSize();
+    this.messageConvertor = new SinkMessageConvertor(this.config.getSchemaCacheSize(),
+          this.config.getValueBytesFormat(), this.config.getValueFields());
+    this.agentUriParser = new AgentUriParser(this.config.getAgentUriCacheSize(),
+          this.config.getAgentUriCachePolicy());
+    if (this.config.isHostAffinity()) {
+      // Each task registers its own runtime, through which the other tasks send to its hosts
+      final String connectorKey = getClass().getName() + ":" + this.config.getConnectorName();
+      final int taskIndex = this.config.getTaskIndex();
+      this.clientKey = HostAffinity.runtimeKey(connectorKey, taskIndex);
+      this.swimRef = ClientRuntimeRegistry.acquire(this.clientKey, this::createClientRuntime);
+      this.hostAffinity = new HostAffinity(connectorKey, taskIndex, this.config.getTaskCount(),
+            this.routingPlan.getHostRouter().getHostUris(), this.swimRef);
+      this.hostAffinity.resolveOwners();
+    } else if (this.config.isClientShared()) {
+      this.clientKey = clientKey(this.routingPlan);
+      this.swimRef = ClientRuntimeRegistry.acquire(this.clientKey, this::createClientRuntime);
+    } else {
+      this.swimRef = createClientRuntime();
+      this.swimRef.start();
+    }
+    final SendRateController rateController = this.config.getSendRateController();
+    this.metrics = new SinkTaskMetrics(this.config.getConnectorName(), this.config.getTaskId());
+    this.pipeline = new CommandPipeline(this.swimRef, this.config.getMaxInFlightRecords(),
+          this.config.getMaxInFlightBytes(), this.config.getLingerMs(), this.config.isMetricsBytesEnabled(),
+          this.config.isCoalesceEnabled(), this.hostAffinity, rateController,
+          this.config.isTraceLagEnabled() ? this.metrics : null);
+    this.errantRecordHandler = new ErrantRecordHandler(this.config.getErrorsAction(),
+          this.config.getErrorsFallbackAgentUri(), this.config.getErrorsLogIntervalMs(), errantRecordReporter());
+    this.traceMetadata = new TraceMetadata(this.config.getTraceMetadata());
+    this.metrics.bindPipeline(this.pipeline);
+    this.metrics.bindAgentUriParser(getAgentUriParser());
+    if (rateController != null) {
+      this.metrics.bindSendRateController(rateController);
+    }
+    if (this.config.isDeltaEnabled()) {
+      this.deltaEncoder = new DeltaEncoder(this.config.getDeltaCacheSize(), this.config.getDeltaResyncIntervalMs());
+      this.deltaLaneUri = this.config.getDeltaLaneUri();
+      this.metrics.bindDeltaEncoder(this.deltaEncoder);
+    }
   }
 
   @Override
   public void put(Collection<SinkRecord> records) {
-    for(SinkRecord record: records) {
-      final Value key = getKey(record);
-      final Value value = getMessage(record);
-      final Uri agentUri = parseAgentUri(key, value);
-      if (!agentUri.isEmpty()) {
-        swimRef.command(this.config.getHostUri(), agentUri, this.config.getLaneUri(), value);
+    final SinkRecord[] batch = records.toArray(new SinkRecord[0]);
+    // The routing plan of the topic of each record
+    final RoutingPlan[] plans = new RoutingPlan[batch.length];
+    int maxRouteCount = 1;
+    for (int i = 0; i < batch.length; i += 1) {
+      plans[i] = this.topicRoutingPlans.get(batch[i].topic());
+      maxRouteCount = Math.max(maxRouteCount, plans[i].routeCount());
+    }
+    // One command per record and route of its plan, the commands of a record are adjacent
+    final int routeCount = maxRouteCount;
+    final Value[] bodies = new Value[batch.length * routeCount];
+    final Uri[] agentUris = new Uri[batch.length * routeCount];
+    // Conversion errors by record, handled on the task thread
+    final RuntimeException[] errors = new RuntimeException[batch.length];
+    // Records are converted concurrently when enabled, but always dispatched in the batch order
+    ConversionPool.forEach(batch.length, this.conversionParallelism, this.conversionChunkSize,
+          index -> convert(batch[index], plans[index], index * routeCount, bodies, agentUris, errors, index));
+    final long now = System.currentTimeMillis();
+    int count = 0;
+    long bytes = 0L;
+    try {
+      for (int i = 0; i < batch.length; i += 1) {
+        final SinkRecord record = batch[i];
+        final RoutingPlan plan = plans[i];
+        final Integer partition = record.kafkaPartition();
+        final TopicPartition topicPartition = new TopicPartition(record.topic(), partition != null ? partition : -1);
+        if (errors[i] == null && partition == null) {
+          // The offsets of a record can only be tracked, and committed, within its partition
+          errors[i] = new DataException("No Kafka partition for the record at offset " + record.kafkaOffset()
+                + " of " + record.topic());
+        }
+        if (errors[i] != null) {
+          // Skipped records are never tracked, so their offsets are committed with the next records
+          if (handleErrantRecord(record, errors[i])) {
+            bytes += enqueueFallback(topicPartition, record, plan, plan.getDefaultRoute(),
+                  errorBody(record, errors[i]));
+            count += 1;
+          }
+          continue;
+        }
+        for (int r = 0; r < plan.routeCount(); r += 1) {
+          final Route route = plan.getRoute(r);
+          final Uri agentUri = agentUris[i * routeCount + r];
+          final Value body = bodies[i * routeCount + r];
+          if (body == null) {
+            // Map and list lanes need a key for every record, and list lanes a non-negative index
+            final DataException error = new DataException("No lane key, or an invalid list index, for the "
+                  + route.getName() + " route");
+            if (handleErrantRecord(record, error)) {
+              bytes += enqueueFallback(topicPartition, record, plan, route, errorBody(record, error));
+              count += 1;
+            }
+          } else if (!agentUri.isEmpty()) {
+            if (this.deltaEncoder != null && route.getLaneType() == LaneType.VALUE) {
+              final int size = enqueueDelta(topicPartition, record, plan, route, agentUri, body, now);
+              if (size >= 0) {
+                bytes += size;
+                count += 1;
+              }
+              continue;
+            }
+            bytes += enqueue(topicPartition, record, plan, agentUri, route.getLaneUri(), body, route.entryKey(body),
+                  route.getLaneType() != LaneType.VALUE);
+            count += 1;
+          } else {
+            this.metrics.recordEmptyAgentUri();
+            if (handleErrantRecord(record, new DataException("No agent uri for the " + route.getName() + " route"))) {
+              bytes += enqueueFallback(topicPartition, record, plan, route, body);
+              count += 1;
+            }
+          }
+        }
+      }
+    } finally {
+      this.metrics.recordBatch(count, bytes);
+    }
+    dispatch();
+  }
+
+  // Sends the changed slots of a value, returns -1 if the value did not change. Neither patches
+  // nor full values are coalesced, since each patch applies to the value sent before it.
+  private int enqueueDelta(TopicPartition topicPartition, SinkRecord record, RoutingPlan plan, Route route,
+                           Uri agentUri, Value body, long now) {
+    final Value delta = this.deltaEncoder.encode(agentUri, route.getLaneUri(), body, now);
+    if (delta == null) {
+      // Unchanged values are never tracked, so their offsets are committed with the next records
+      return -1;
+    }
+    final Uri laneUri = this.deltaLaneUri != null && DeltaEncoder.isPatch(delta) ? this.deltaLaneUri
+          : route.getLaneUri();
+    return enqueue(topicPartition, record, plan, agentUri, laneUri, delta, null, false);
+  }
+
+  // Sends a command for a record, along with its metadata when traced
+  private int enqueue(TopicPartition topicPartition, SinkRecord record, RoutingPlan plan, Uri agentUri, Uri laneUri,
+                      Value body, Value entryKey, boolean enveloped) {
+    if (this.traceMetadata.isEnabled()) {
+      body = this.traceMetadata.attach(body, enveloped, record);
+    }
+    final long timestamp = record.timestamp() != null ? record.timestamp() : -1L;
+    return this.pipeline.enqueue(topicPartition, record.kafkaOffset(), plan.hostFor(agentUri), agentUri, laneUri,
+          body, entryKey, timestamp);
+  }
+
+  // Returns whether the record is to be sent to the fallback agent, throws if the task is to fail
+  private boolean handleErrantRecord(SinkRecord record, RuntimeException error) {
+    this.metrics.recordErrantRecord();
+    return this.errantRecordHandler.handle(record, error);
+  }
+
+  private int enqueueFallback(TopicPartition topicPartition, SinkRecord record, RoutingPlan plan, Route route,
+                              Value body) {
+    final Uri agentUri = this.errantRecordHandler.getFallbackAgentUri();
+    // Every bad record is sent to the same lane of the fallback agent, none of them may be coalesced
+    return this.pipeline.enqueue(topicPartition, record.kafkaOffset(), plan.hostFor(agentUri),
+          agentUri, route.getLaneUri(), body, null);
+  }
+
+  // Sent to the fallback agent in place of a record that could not be converted
+  private static Value errorBody(SinkRecord record, RuntimeException error) {
+    return Record.create(1).attr("error", Record.create(4)
+          .slot("topic", record.topic())
+          .slot("partition", record.kafkaPartition() != null ? record.kafkaPartition() : -1)
+          .slot("offset", record.kafkaOffset())
+          .slot("message", String.valueOf(error.getMessage())));
+  }
+
+  // Null when errant record reporting is not configured, or not supported by the Connect worker
+  private ErrantRecordReporter errantRecordReporter() {
+    if (this.context == null) {
+      return null;
+    }
+    try {
+      return this.context.errantRecordReporter();
+    } catch (NoSuchMethodError | NoClassDefFoundError e) {
+      // Connect workers before 2.6
+      return null;
+    }
+  }
+
+  // May be called concurrently from the conversion pool when swim.conversion.parallelism is set
+  private void convert(SinkRecord record, RoutingPlan plan, int index, Value[] bodies, Uri[] agentUris,
+                       RuntimeException[] errors, int recordIndex) {
+    final long startTime = System.nanoTime();
+    final boolean encoded = this.passthrough && SinkMessageConvertor.isEncoded(record.value());
+    final boolean tombstone = record.value() == null;
+    final Value key;
+    final Value value;
+    final ValueView view;
+    try {
+      // The key is only converted when some route takes its agent id, or its lane keys, from it
+      key = plan.needsKey(tombstone) ? getKey(record) : Value.absent();
+      if (this.lazy && !encoded) {
+        value = null;
+        view = getMessageView(record);
       } else {
-        throw new RuntimeException("Agent Uri is empty");
+        value = encoded ? getMessageConvertor().passthroughValue(record) : getMessage(record);
+        view = null;
+      }
+    } catch (RuntimeException e) {
+      this.metrics.recordConversionError();
+      errors[recordIndex] = e;
+      return;
+    }
+    final long convertedTime = System.nanoTime();
+    this.metrics.recordConversionTime(convertedTime - startTime);
+    try {
+      for (int r = 0; r < plan.routeCount(); r += 1) {
+        final Route route = plan.getRoute(r);
+        if (route.getAgentIdSource().isRaw()) {
+          agentUris[index + r] = getAgentUriParser().computeAgentUriFromRecord(record, route);
+        } else if (encoded) {
+          agentUris[index + r] = getAgentUriParser().computeAgentUriFromRaw(key, record.value(), route);
+        } else if (view != null) {
+          agentUris[index + r] = getAgentUriParser().computeAgentUri(key, view, route);
+        } else if (route == this.routingPlan.getDefaultRoute()) {
+          // Keeps sub-classes that only override the original hook working
+          agentUris[index + r] = parseAgentUri(key, value);
+        } else {
+          agentUris[index + r] = parseAgentUri(key, value, route);
+        }
+        // Passed through values are never projected
+        final Value body = view != null ? route.project(view) : encoded ? value : route.project(value);
+        final Value laneKey = tombstone ? route.laneKey(key, (Value) null)
+              : view != null ? route.laneKey(key, view) : route.laneKey(key, value);
+        bodies[index + r] = route.envelope(laneKey, body, tombstone);
       }
+    } catch (RuntimeException e) {
+      // Lazily viewed values are converted as their fields are read
+      this.metrics.recordConversionError();
+      errors[recordIndex] = e;
+      return;
     }
+    this.metrics.recordAgentUriTime(System.nanoTime() - convertedTime);
+  }
+
+  // Pauses consumption while the pipeline is full, or held back by the send rate; Connect keeps
+  // calling put with empty batches while the partitions are paused, which gives the pipeline the
+  // chance to drain.
+  private void dispatch() {
+    rewindFailed();
+    if (this.pipeline.dispatch(false, this.maxBlockMs)) {
+      if (this.paused) {
+        final Set<TopicPartition> assignment = this.context.assignment();
+        this.context.resume(assignment.toArray(new TopicPartition[0]));
+        this.paused = false;
+      }
+    } else if (!this.paused) {
+      final Set<TopicPartition> assignment = this.context.assignment();
+      this.context.pause(assignment.toArray(new TopicPartition[0]));
+      this.paused = true;
+    }
+  }
+
+  @Override
+  public void flush(Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
+    if (this.hostAffinity != null) {
+      this.hostAffinity.resolveOwners();
+    }
+    this.pipeline.flush(this.flushTimeoutMs);
+    rewindFailed();
+  }
+
+  // Re-consumes the records whose commands failed to be written, rather than re-sending the
+  // commands out of order with the later commands to the same lanes.
+  private void rewindFailed() {
+    final Map<TopicPartition, Long> rewinds = this.pipeline.rewindFailed();
+    if (!rewinds.isEmpty()) {
+      LOG.warn("Rewinding partitions {} to re-send the commands that failed to be written", rewinds);
+      this.context.offset(rewinds);
+      if (this.deltaEncoder != null) {
+        // The cached values may never have reached the agents
+        this.deltaEncoder.clear();
+      }
+    }
+  }
+
+  @Override
+  public Map<TopicPartition, OffsetAndMetadata> preCommit(Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
+    flush(currentOffsets);
+    // Only report the offsets whose commands have actually been written to the Swim host
+    return this.pipeline.committableOffsets(currentOffsets);
+  }
+
+  @Override
+  public void close(Collection<TopicPartition> partitions) {
+    this.pipeline.close(partitions);
+    if (this.metrics != null) {
+      this.metrics.closePartitions(partitions);
+    }
+  }
+
+  // To be used by sub-classes for overriding and to provide a specialized Swim client
+  protected ClientRuntime createClientRuntime() {
+    return this.config.getTransportSettings().createClientRuntime();
+  }
+
+  // Tasks share a runtime when they connect to the same hosts with the same settings, and create it the same way
+  private String clientKey(RoutingPlan routingPlan) {
+    final List<String> hostUris = new ArrayList<>();
+    for (Uri hostUri : routingPlan.getHostRouter().getHostUris()) {
+      hostUris.add(hostUri.toString());
+    }
+    Collections.sort(hostUris);
+    return getClass().getName() + hostUris + this.config.getTransportSettings();
   }
 
   // To be used by sub-classes for overriding and to provide a specialized MessageConvertor
   protected SinkMessageConvertor getMessageConvertor() {
-    return MESSAGE_CONVERTOR;
+    return this.messageConvertor;
   }
 
   // To be used by sub-classes for overriding and to provide a specialized IdParser
   protected AgentUriParser getAgentUriParser() {
-    return AGENT_URI_PARSER;
+    return this.agentUriParser;
   }
 
   protected Value getKey(SinkRecord record) {
@@ -72,13 +405,47 @@ public class SwimKafkaSinkTask extends SinkTask {
     return getMessageConvertor().convertValue(record);
   }
 
+  // Used instead of getMessage when swim.value.lazy is enabled
+  protected ValueView getMessageView(SinkRecord record) {
+    return getMessageConvertor().convertValueView(record);
+  }
+
+  // Called for the default route of the connector, which sub-classes may override to compute the agent URIs
   protected Uri parseAgentUri(Value key, Value value) {
-    return getAgentUriParser().computeAgentUri(key, value, this.config);
+    return parseAgentUri(key, value, this.routingPlan.getDefaultRoute());
+  }
+
+  // Called for the named routes, and the default routes of the topic groups
+  protected Uri parseAgentUri(Value key, Value value, Route route) {
+    return getAgentUriParser().computeAgentUri(key, value, route);
   }
 
   @Override
   public void stop() {
-
+    if (this.pipeline != null) {
+      // Give the commands a last chance to be written, the client may be shared with other tasks
+      // and outlive this one; the records of those that are not written are re-consumed
+      this.pipeline.flush(this.flushTimeoutMs);
+      this.pipeline.clear();
+      this.paused = false;
+    }
+    if (this.metrics != null) {
+      this.metrics.close();
+      this.metrics = null;
+    }
+    if (this.hostAffinity != null) {
+      this.hostAffinity.release();
+      this.hostAffinity = null;
+    }
+    if (this.swimRef != null) {
+      if (this.clientKey != null) {
+        ClientRuntimeRegistry.release(this.clientKey);
+        this.clientKey = null;
+      } else {
+        this.swimRef.stop();
+      }
+      this.swimRef = null;
+    }
   }
 
   @Override
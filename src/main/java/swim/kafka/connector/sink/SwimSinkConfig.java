@@ -14,10 +14,23 @@
 
 package swim.kafka.connector.sink;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigException;
 import swim.codec.ParserException;
+import swim.kafka.connector.convertor.BytesFormat;
+import swim.kafka.connector.convertor.MessageConvertor;
+import swim.kafka.connector.id.AgentIdSource;
+import swim.kafka.connector.id.AgentUriCache;
+import swim.kafka.connector.id.RawFieldScanner;
 import swim.recon.Recon;
 import swim.structure.Selector;
 import swim.structure.Value;
@@ -31,12 +44,147 @@ public class SwimSinkConfig {
   public static final String SWIM_LANE_URI_PROP = "swim.lane.uri";
   public static final String SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP = "swim.use.value.field.for.agent.id";
   public static final String SWIM_AGENT_ID_EXTRACTOR_PROP = "swim.agent.id.extractor";
+  public static final String SWIM_MAX_IN_FLIGHT_RECORDS_PROP = "swim.max.in.flight.records";
+  public static final String SWIM_MAX_IN_FLIGHT_BYTES_PROP = "swim.max.in.flight.bytes";
+  public static final String SWIM_LINGER_MS_PROP = "swim.linger.ms";
+  public static final String SWIM_MAX_BLOCK_MS_PROP = "swim.max.block.ms";
+  public static final String SWIM_FLUSH_TIMEOUT_MS_PROP = "swim.flush.timeout.ms";
+  public static final String SWIM_SCHEMA_CACHE_SIZE_PROP = "swim.schema.cache.size";
+  public static final String SWIM_VALUE_BYTES_FORMAT_PROP = "swim.value.bytes.format";
+  public static final String SWIM_VALUE_PASSTHROUGH_PROP = "swim.value.passthrough";
+  public static final String SWIM_VALUE_FIELDS_PROP = "swim.value.fields";
+  public static final String SWIM_VALUE_LAZY_PROP = "swim.value.lazy";
+  public static final String SWIM_AGENT_ID_SOURCE_PROP = "swim.agent.id.source";
+  public static final String SWIM_AGENT_ID_HEADER_PROP = "swim.agent.id.header";
+  public static final String SWIM_LANE_TYPE_PROP = "swim.lane.type";
+  public static final String SWIM_LANE_KEY_EXTRACTOR_PROP = "swim.lane.key.extractor";
+  public static final String SWIM_LANE_KEY_SOURCE_PROP = "swim.lane.key.source";
+  public static final String SWIM_PROJECTION_PROP = "swim.projection";
+  public static final String SWIM_AGENT_URI_CACHE_SIZE_PROP = "swim.agent.uri.cache.size";
+  public static final String SWIM_AGENT_URI_CACHE_POLICY_PROP = "swim.agent.uri.cache.policy";
+  public static final String SWIM_ROUTES_PROP = "swim.routes";
+  public static final String SWIM_TOPIC_GROUPS_PROP = "swim.topic.groups";
+  // Per topic, or per topic group, overrides of the routing swim.* properties: topic.<topic>.swim.* and
+  // topic.group.<group>.swim.*
+  public static final String TOPIC_PREFIX = "topic.";
+  public static final String TOPIC_GROUP_PREFIX = "topic.group.";
+  public static final String TOPIC_OVERRIDE_INFIX = ".swim.";
+  public static final String TOPIC_GROUP_REGEX_SUFFIX = ".regex";
+  // The topics of the connector, set by Connect
+  public static final String TOPICS_PROP = "topics";
+  // Properties of the additional routes, prefixed by swim.route.<name>.
+  public static final String SWIM_ROUTE_PREFIX = "swim.route.";
+  public static final String ROUTE_AGENT_URI_PATTERN_SUFFIX = ".agent.uri.pattern";
+  public static final String ROUTE_LANE_URI_SUFFIX = ".lane.uri";
+  public static final String ROUTE_USE_VALUE_FIELD_FOR_AGENT_ID_SUFFIX = ".use.value.field.for.agent.id";
+  public static final String ROUTE_AGENT_ID_EXTRACTOR_SUFFIX = ".agent.id.extractor";
+  public static final String ROUTE_AGENT_ID_SOURCE_SUFFIX = ".agent.id.source";
+  public static final String ROUTE_AGENT_ID_HEADER_SUFFIX = ".agent.id.header";
+  public static final String ROUTE_PROJECTION_SUFFIX = ".projection";
+  public static final String ROUTE_LANE_TYPE_SUFFIX = ".lane.type";
+  public static final String ROUTE_LANE_KEY_EXTRACTOR_SUFFIX = ".lane.key.extractor";
+  public static final String ROUTE_LANE_KEY_SOURCE_SUFFIX = ".lane.key.source";
+  public static final String SWIM_CONVERSION_PARALLELISM_PROP = "swim.conversion.parallelism";
+  public static final String SWIM_CONVERSION_CHUNK_SIZE_PROP = "swim.conversion.chunk.size";
+  public static final String SWIM_COALESCE_ENABLED_PROP = "swim.coalesce.enabled";
+  public static final String SWIM_DELTA_ENABLED_PROP = "swim.delta.enabled";
+  public static final String SWIM_DELTA_LANE_URI_PROP = "swim.delta.lane.uri";
+  public static final String SWIM_DELTA_CACHE_SIZE_PROP = "swim.delta.cache.size";
+  public static final String SWIM_DELTA_RESYNC_INTERVAL_MS_PROP = "swim.delta.resync.interval.ms";
+  public static final String SWIM_RATE_CONTROL_ENABLED_PROP = "swim.rate.control.enabled";
+  public static final String SWIM_RATE_CONTROL_MIN_RATE_PROP = "swim.rate.control.min.rate";
+  public static final String SWIM_RATE_CONTROL_MAX_RATE_PROP = "swim.rate.control.max.rate";
+  public static final String SWIM_RATE_CONTROL_INCREASE_PROP = "swim.rate.control.increase";
+  public static final String SWIM_RATE_CONTROL_DECREASE_FACTOR_PROP = "swim.rate.control.decrease.factor";
+  public static final String SWIM_RATE_CONTROL_TARGET_LATENCY_MS_PROP = "swim.rate.control.target.latency.ms";
+  public static final String SWIM_RATE_CONTROL_INTERVAL_MS_PROP = "swim.rate.control.interval.ms";
+  public static final String SWIM_TRACE_METADATA_PROP = "swim.trace.metadata";
+  public static final String SWIM_TRACE_LAG_ENABLED_PROP = "swim.trace.lag.enabled";
+  public static final String SWIM_METRICS_BYTES_ENABLED_PROP = "swim.metrics.bytes.enabled";
+  public static final String SWIM_CLIENT_SHARED_PROP = "swim.client.shared";
+  public static final String SWIM_HOST_AFFINITY_PROP = "swim.host.affinity";
+  public static final String SWIM_ERRORS_ACTION_PROP = "swim.errors.action";
+  public static final String SWIM_ERRORS_FALLBACK_AGENT_URI_PROP = "swim.errors.fallback.agent.uri";
+  public static final String SWIM_ERRORS_LOG_INTERVAL_MS_PROP = "swim.errors.log.interval.ms";
+  public static final String SWIM_WS_COMPRESSION_LEVEL_PROP = "swim.ws.compression.level";
+  public static final String SWIM_WS_MAX_FRAME_SIZE_PROP = "swim.ws.max.frame.size";
+  public static final String SWIM_TCP_SEND_BUFFER_SIZE_PROP = "swim.tcp.send.buffer.size";
+  public static final String SWIM_TCP_RECEIVE_BUFFER_SIZE_PROP = "swim.tcp.receive.buffer.size";
+  public static final String SWIM_TCP_NO_DELAY_PROP = "swim.tcp.no.delay";
+  // Set by the connector on the configuration of each of its tasks
+  public static final String SWIM_TASK_ID_PROP = "swim.task.id";
+  public static final String SWIM_TASK_COUNT_PROP = "swim.task.count";
+  public static final String CONNECTOR_NAME_PROP = "name";
 
+  public static final String DEFAULT_ROUTE_NAME = "default";
+  public static final int SWIM_AGENT_URI_CACHE_SIZE_DEFAULT = 10000;
+  public static final String SWIM_AGENT_URI_CACHE_POLICY_DEFAULT = "slru";
+  public static final String SWIM_LANE_TYPE_DEFAULT = "value";
+  public static final String SWIM_LANE_KEY_SOURCE_DEFAULT = "key";
+  public static final int SWIM_MAX_IN_FLIGHT_RECORDS_DEFAULT = 10000;
+  public static final long SWIM_MAX_IN_FLIGHT_BYTES_DEFAULT = 0L;
+  public static final long SWIM_LINGER_MS_DEFAULT = 0L;
+  public static final long SWIM_MAX_BLOCK_MS_DEFAULT = 1000L;
+  public static final long SWIM_FLUSH_TIMEOUT_MS_DEFAULT = 30000L;
+  public static final String SWIM_ERRORS_ACTION_DEFAULT = "fail";
+  public static final long SWIM_ERRORS_LOG_INTERVAL_MS_DEFAULT = 10000L;
+  public static final int SWIM_SCHEMA_CACHE_SIZE_DEFAULT = MessageConvertor.DEFAULT_SCHEMA_CACHE_SIZE;
+  public static final String SWIM_VALUE_BYTES_FORMAT_DEFAULT = "data";
+  public static final int SWIM_CONVERSION_PARALLELISM_DEFAULT = 1;
+  public static final int SWIM_CONVERSION_CHUNK_SIZE_DEFAULT = 64;
+  public static final int SWIM_DELTA_CACHE_SIZE_DEFAULT = 10000;
+  public static final long SWIM_DELTA_RESYNC_INTERVAL_MS_DEFAULT = 60000L;
+  public static final String SWIM_TRACE_METADATA_DEFAULT = "none";
+  public static final double SWIM_RATE_CONTROL_MIN_RATE_DEFAULT = 100.0;
+  public static final double SWIM_RATE_CONTROL_MAX_RATE_DEFAULT = 100000.0;
+  public static final double SWIM_RATE_CONTROL_INCREASE_DEFAULT = 1000.0;
+  public static final double SWIM_RATE_CONTROL_DECREASE_FACTOR_DEFAULT = 0.5;
+  public static final long SWIM_RATE_CONTROL_TARGET_LATENCY_MS_DEFAULT = 100L;
+  public static final long SWIM_RATE_CONTROL_INTERVAL_MS_DEFAULT = 1000L;
 
   public static ConfigDef.Validator SWIM_HOST_URI_VALIDATOR = hostUriValidator();
   public static ConfigDef.Validator SWIM_AGENT_URI_PATTERN_VALIDATOR = agentUriPatternValidator();
   public static ConfigDef.Validator SWIM_LANE_URI_VALIDATOR = laneUriValidator();
   public static ConfigDef.Validator SWIM_AGENT_ID_EXTRACTOR_VALIDATOR = agentIdExtractorValidator();
+  public static ConfigDef.Validator SWIM_AGENT_ID_SOURCE_VALIDATOR = agentIdSourceValidator();
+  public static ConfigDef.Validator SWIM_LANE_TYPE_VALIDATOR = ConfigDef.ValidString.in("value", "map", "list");
+  public static ConfigDef.Validator SWIM_LANE_KEY_SOURCE_VALIDATOR = ConfigDef.ValidString.in("key", "value");
+  public static ConfigDef.Validator SWIM_AGENT_URI_CACHE_SIZE_VALIDATOR = ConfigDef.Range.atLeast(0);
+  public static ConfigDef.Validator SWIM_AGENT_URI_CACHE_POLICY_VALIDATOR = ConfigDef.ValidString.in("lru", "slru");
+  public static ConfigDef.Validator SWIM_ROUTES_VALIDATOR = routesValidator();
+  public static ConfigDef.Validator SWIM_TOPIC_GROUPS_VALIDATOR = topicGroupsValidator();
+  public static ConfigDef.Validator SWIM_MAX_IN_FLIGHT_RECORDS_VALIDATOR = ConfigDef.Range.atLeast(1);
+  public static ConfigDef.Validator SWIM_MAX_IN_FLIGHT_BYTES_VALIDATOR = ConfigDef.Range.atLeast(0L);
+  public static ConfigDef.Validator SWIM_LINGER_MS_VALIDATOR = ConfigDef.Range.atLeast(0L);
+  public static ConfigDef.Validator SWIM_MAX_BLOCK_MS_VALIDATOR = ConfigDef.Range.atLeast(0L);
+  public static ConfigDef.Validator SWIM_FLUSH_TIMEOUT_MS_VALIDATOR = ConfigDef.Range.atLeast(0L);
+  public static ConfigDef.Validator SWIM_SCHEMA_CACHE_SIZE_VALIDATOR = ConfigDef.Range.atLeast(0);
+  public static ConfigDef.Validator SWIM_VALUE_BYTES_FORMAT_VALIDATOR =
+        ConfigDef.ValidString.in("data", "json", "recon");
+  public static ConfigDef.Validator SWIM_VALUE_FIELDS_VALIDATOR = valueFieldsValidator();
+  public static ConfigDef.Validator SWIM_CONVERSION_PARALLELISM_VALIDATOR = ConfigDef.Range.atLeast(1);
+  public static ConfigDef.Validator SWIM_CONVERSION_CHUNK_SIZE_VALIDATOR = ConfigDef.Range.atLeast(1);
+  public static ConfigDef.Validator SWIM_DELTA_CACHE_SIZE_VALIDATOR = ConfigDef.Range.atLeast(1);
+  public static ConfigDef.Validator SWIM_DELTA_RESYNC_INTERVAL_MS_VALIDATOR = ConfigDef.Range.atLeast(0L);
+  public static ConfigDef.Validator SWIM_RATE_CONTROL_RATE_VALIDATOR = ConfigDef.Range.atLeast(1.0);
+  public static ConfigDef.Validator SWIM_RATE_CONTROL_INCREASE_VALIDATOR = ConfigDef.Range.atLeast(0.0);
+  public static ConfigDef.Validator SWIM_RATE_CONTROL_DECREASE_FACTOR_VALIDATOR = ConfigDef.Range.between(0.0, 1.0);
+  public static ConfigDef.Validator SWIM_RATE_CONTROL_TARGET_LATENCY_MS_VALIDATOR = ConfigDef.Range.atLeast(1L);
+  public static ConfigDef.Validator SWIM_RATE_CONTROL_INTERVAL_MS_VALIDATOR = ConfigDef.Range.atLeast(1L);
+  public static ConfigDef.Validator SWIM_TRACE_METADATA_VALIDATOR =
+        ConfigDef.ValidString.in("none", "attrs", "wrapper");
+  public static ConfigDef.Validator SWIM_ERRORS_ACTION_VALIDATOR =
+        ConfigDef.ValidString.in("fail", "skip", "log", "fallback");
+  public static ConfigDef.Validator SWIM_ERRORS_LOG_INTERVAL_MS_VALIDATOR = ConfigDef.Range.atLeast(0L);
+  public static ConfigDef.Validator SWIM_WS_COMPRESSION_LEVEL_VALIDATOR = ConfigDef.Range.between(-1, 9);
+  public static ConfigDef.Validator SWIM_WS_MAX_FRAME_SIZE_VALIDATOR = ConfigDef.Range.atLeast(-1);
+  public static ConfigDef.Validator SWIM_TCP_BUFFER_SIZE_VALIDATOR = ConfigDef.Range.atLeast(-1);
+
+  // The swim.* properties read by the routing plans, which are the only ones that topics and topic groups can override
+  private static final Set<String> ROUTING_PROPS = new HashSet<>(Arrays.asList(SWIM_HOST_URI_PROP,
+        SWIM_AGENT_URI_PATTERN_PROP, SWIM_LANE_URI_PROP, SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP,
+        SWIM_AGENT_ID_EXTRACTOR_PROP, SWIM_AGENT_ID_SOURCE_PROP, SWIM_AGENT_ID_HEADER_PROP, SWIM_LANE_TYPE_PROP,
+        SWIM_LANE_KEY_EXTRACTOR_PROP, SWIM_LANE_KEY_SOURCE_PROP, SWIM_PROJECTION_PROP, SWIM_ROUTES_PROP));
 
   public static ConfigDef SWIM_SINK_CONFIG_DEF = makeConfigDef();
 
@@ -47,10 +195,19 @@ public class SwimSinkConfig {
     this.props = props;
   }
 
+  // The first of the configured hosts
   public Uri getHostUri() throws ConfigException {
+    return getHostUris().get(0);
+  }
+
+  public List<Uri> getHostUris() throws ConfigException {
     final String value = getWithDefault(SWIM_HOST_URI_PROP);
     validateHostUri(SWIM_HOST_URI_PROP, value);
-    return Uri.parse(value);
+    final List<Uri> hostUris = new ArrayList<>();
+    for (String hostUri : splitHostUris(value)) {
+      hostUris.add(Uri.parse(hostUri));
+    }
+    return hostUris;
   }
 
   public UriPattern getAgentUriPattern() throws ConfigException {
@@ -72,6 +229,518 @@ public class SwimSinkConfig {
   public Selector getAgentIdExtractor() throws ConfigException {
     final String value = getWithDefault(SWIM_AGENT_ID_EXTRACTOR_PROP);
     validateAgentIdExtractor(SWIM_AGENT_ID_EXTRACTOR_PROP, value);
+    return parseSelector(value);
+  }
+
+  /**
+   * Returns where the agent id is taken from, which defaults to the key or the value depending on
+   * swim.use.value.field.for.agent.id.
+   */
+  public AgentIdSource getAgentIdSource() throws ConfigException {
+    final String value = getWithDefault(SWIM_AGENT_ID_SOURCE_PROP);
+    validateAgentIdSource(SWIM_AGENT_ID_SOURCE_PROP, value);
+    if (value.trim().equals("")) {
+      return useValueForAgentId() ? AgentIdSource.VALUE : AgentIdSource.KEY;
+    }
+    return AgentIdSource.from(value);
+  }
+
+  public String getAgentIdHeader() throws ConfigException {
+    return getWithDefault(SWIM_AGENT_ID_HEADER_PROP);
+  }
+
+  public LaneType getLaneType() throws ConfigException {
+    final String value = getWithDefault(SWIM_LANE_TYPE_PROP, SWIM_LANE_TYPE_DEFAULT);
+    SWIM_LANE_TYPE_VALIDATOR.ensureValid(SWIM_LANE_TYPE_PROP, value);
+    return LaneType.from(value);
+  }
+
+  // Extracts the key, or the index, of the entries of map and list lanes from the converted key, or value
+  public Selector getLaneKeyExtractor() throws ConfigException {
+    final String value = getWithDefault(SWIM_LANE_KEY_EXTRACTOR_PROP);
+    validateAgentIdExtractor(SWIM_LANE_KEY_EXTRACTOR_PROP, value);
+    return parseSelector(value);
+  }
+
+  public boolean useValueForLaneKey() throws ConfigException {
+    final String value = getWithDefault(SWIM_LANE_KEY_SOURCE_PROP, SWIM_LANE_KEY_SOURCE_DEFAULT);
+    SWIM_LANE_KEY_SOURCE_VALIDATOR.ensureValid(SWIM_LANE_KEY_SOURCE_PROP, value);
+    return value.trim().equals("value");
+  }
+
+  // Null if the whole value is sent along the default route
+  public Selector getProjection() throws ConfigException {
+    final String value = getWithDefault(SWIM_PROJECTION_PROP);
+    validateAgentIdExtractor(SWIM_PROJECTION_PROP, value);
+    return value.equals("") ? null : parseSelector(value);
+  }
+
+  public int getAgentUriCacheSize() throws ConfigException {
+    final int value = getWithDefault(SWIM_AGENT_URI_CACHE_SIZE_PROP, SWIM_AGENT_URI_CACHE_SIZE_DEFAULT);
+    SWIM_AGENT_URI_CACHE_SIZE_VALIDATOR.ensureValid(SWIM_AGENT_URI_CACHE_SIZE_PROP, value);
+    return value;
+  }
+
+  public AgentUriCache.Policy getAgentUriCachePolicy() throws ConfigException {
+    final String value = getWithDefault(SWIM_AGENT_URI_CACHE_POLICY_PROP, SWIM_AGENT_URI_CACHE_POLICY_DEFAULT);
+    SWIM_AGENT_URI_CACHE_POLICY_VALIDATOR.ensureValid(SWIM_AGENT_URI_CACHE_POLICY_PROP, value);
+    return AgentUriCache.Policy.from(value);
+  }
+
+  public List<String> getRouteNames() throws ConfigException {
+    final String value = getWithDefault(SWIM_ROUTES_PROP);
+    validateRoutes(SWIM_ROUTES_PROP, value);
+    return splitList(value);
+  }
+
+  public List<String> getTopicGroupNames() throws ConfigException {
+    final String value = getWithDefault(SWIM_TOPIC_GROUPS_PROP);
+    validateTopicGroups(SWIM_TOPIC_GROUPS_PROP, value);
+    return splitList(value);
+  }
+
+  // The regular expression matching the topics of a group listed in swim.topic.groups
+  public Pattern getTopicGroupPattern(String name) throws ConfigException {
+    final String prop = TOPIC_GROUP_PREFIX + name + TOPIC_GROUP_REGEX_SUFFIX;
+    final String value = getWithDefault(prop);
+    if (value.trim().isEmpty()) {
+      throw new ConfigException(prop, value, "Required for every topic group");
+    }
+    try {
+      return Pattern.compile(value.trim());
+    } catch (PatternSyntaxException e) {
+      throw new ConfigException(prop, value, "Not a valid regular expression");
+    }
+  }
+
+  public List<String> getTopics() {
+    return splitList(getWithDefault(TOPICS_PROP));
+  }
+
+  /**
+   * Returns the swim.* properties overridden for a topic by the topic.&lt;topic&gt;.swim.*
+   * properties, keyed by their swim.* name.
+   */
+  public Map<String, String> getTopicOverrides(String topic) {
+    return getOverrides(TOPIC_PREFIX + topic + TOPIC_OVERRIDE_INFIX);
+  }
+
+  /**
+   * Returns the swim.* properties overridden for a topic group by the
+   * topic.group.&lt;group&gt;.swim.* properties, keyed by their swim.* name.
+   */
+  public Map<String, String> getTopicGroupOverrides(String group) {
+    return getOverrides(TOPIC_GROUP_PREFIX + group + TOPIC_OVERRIDE_INFIX);
+  }
+
+  private Map<String, String> getOverrides(String prefix) {
+    final Map<String, String> overrides = new HashMap<>();
+    for (Map.Entry<String, String> entry : this.props.entrySet()) {
+      if (entry.getKey().startsWith(prefix)) {
+        overrides.put("swim." + entry.getKey().substring(prefix.length()), entry.getValue());
+      }
+    }
+    return overrides;
+  }
+
+  public boolean hasTopicOverrides() {
+    for (String key : this.props.keySet()) {
+      if (key.startsWith(TOPIC_PREFIX) && key.indexOf(TOPIC_OVERRIDE_INFIX, TOPIC_PREFIX.length()) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks that the topics and the topic groups only override routing properties, since the
+   * other properties, eg: swim.value.passthrough or swim.delta.enabled, apply to the whole task.
+   */
+  public void validateTopicOverrides() throws ConfigException {
+    for (Map.Entry<String, String> entry : this.props.entrySet()) {
+      final String key = entry.getKey();
+      final int infix = key.startsWith(TOPIC_PREFIX) ? key.indexOf(TOPIC_OVERRIDE_INFIX, TOPIC_PREFIX.length()) : -1;
+      if (infix > 0) {
+        final String name = "swim." + key.substring(infix + TOPIC_OVERRIDE_INFIX.length());
+        if (!ROUTING_PROPS.contains(name) && !name.startsWith(SWIM_ROUTE_PREFIX)) {
+          throw new ConfigException(key, entry.getValue(), "Only the routing properties can be overridden per "
+                + "topic, " + name + " applies to every topic");
+        }
+      }
+    }
+  }
+
+  // A configuration with some of the properties replaced
+  public SwimSinkConfig withOverrides(Map<String, String> overrides) {
+    if (overrides.isEmpty()) {
+      return this;
+    }
+    final Map<String, String> props = new HashMap<>(this.props);
+    props.putAll(overrides);
+    return new SwimSinkConfig(props);
+  }
+
+  // The route defined by the swim.agent.uri.pattern, swim.lane.uri and agent id properties
+  public Route getDefaultRoute() throws ConfigException {
+    final AgentIdSource agentIdSource = getAgentIdSource();
+    final String agentIdHeader = getAgentIdHeader();
+    validateAgentIdHeader(SWIM_AGENT_ID_HEADER_PROP, agentIdSource, agentIdHeader);
+    RawFieldScanner agentIdScanner = null;
+    if (agentIdSource == AgentIdSource.VALUE && isValuePassthrough()) {
+      agentIdScanner = getAgentIdScanner();
+    } else if (agentIdSource == AgentIdSource.VALUE && isValueLazy()) {
+      // Null if the id extractor is not a plain field path, the id is then extracted from the whole value
+      agentIdScanner = RawFieldScanner.forSelector(getWithDefault(SWIM_AGENT_ID_EXTRACTOR_PROP));
+    }
+    final Selector projection = getProjection();
+    final boolean useValueForLaneKey = useValueForLaneKey();
+    validatePassthrough(SWIM_PROJECTION_PROP, getWithDefault(SWIM_PROJECTION_PROP),
+          SWIM_LANE_KEY_SOURCE_PROP, useValueForLaneKey);
+    String[] projectionPath = null;
+    if (projection != null && isValueLazy()) {
+      final RawFieldScanner projectionScanner = RawFieldScanner.forSelector(getWithDefault(SWIM_PROJECTION_PROP));
+      projectionPath = projectionScanner != null ? projectionScanner.getPath() : null;
+    }
+    return new Route(DEFAULT_ROUTE_NAME, getLaneUri(), getAgentUriPattern(), getAgentIdExtractor(),
+          agentIdSource, agentIdHeader, agentIdScanner, projection, getLaneType(), getLaneKeyExtractor(),
+          useValueForLaneKey, projectionPath);
+  }
+
+  /**
+   * Returns one of the routes listed in swim.routes, whose properties are prefixed by
+   * swim.route.&lt;name&gt;. Apart from the agent uri pattern, they default to those of the default route.
+   */
+  public Route getRoute(String name) throws ConfigException {
+    final String prefix = SWIM_ROUTE_PREFIX + name;
+
+    final String agentUriPatternProp = prefix + ROUTE_AGENT_URI_PATTERN_SUFFIX;
+    final String agentUriPattern = getWithDefault(agentUriPatternProp);
+    validateAgentUriPattern(agentUriPatternProp, agentUriPattern);
+
+    final String laneUriProp = prefix + ROUTE_LANE_URI_SUFFIX;
+    final String laneUri = getWithDefault(laneUriProp, getWithDefault(SWIM_LANE_URI_PROP));
+    validateUri(laneUriProp, laneUri);
+
+    final String agentIdSourceProp = prefix + ROUTE_AGENT_ID_SOURCE_SUFFIX;
+    final String agentIdSourceValue = getWithDefault(agentIdSourceProp);
+    validateAgentIdSource(agentIdSourceProp, agentIdSourceValue);
+    final String useValueForAgentIdValue = getWithDefault(prefix + ROUTE_USE_VALUE_FIELD_FOR_AGENT_ID_SUFFIX);
+    final AgentIdSource agentIdSource;
+    if (!agentIdSourceValue.trim().equals("")) {
+      agentIdSource = AgentIdSource.from(agentIdSourceValue);
+    } else if (!useValueForAgentIdValue.trim().equals("")) {
+      agentIdSource = Boolean.parseBoolean(useValueForAgentIdValue.trim()) ? AgentIdSource.VALUE : AgentIdSource.KEY;
+    } else {
+      agentIdSource = getAgentIdSource();
+    }
+
+    final String agentIdHeaderProp = prefix + ROUTE_AGENT_ID_HEADER_SUFFIX;
+    final String agentIdHeader = getWithDefault(agentIdHeaderProp, getAgentIdHeader());
+    validateAgentIdHeader(agentIdHeaderProp, agentIdSource, agentIdHeader);
+
+    final String agentIdExtractorProp = prefix + ROUTE_AGENT_ID_EXTRACTOR_SUFFIX;
+    final String agentIdExtractor = getWithDefault(agentIdExtractorProp, getWithDefault(SWIM_AGENT_ID_EXTRACTOR_PROP));
+    validateAgentIdExtractor(agentIdExtractorProp, agentIdExtractor);
+
+    final String projectionProp = prefix + ROUTE_PROJECTION_SUFFIX;
+    final String projection = getWithDefault(projectionProp);
+    validateAgentIdExtractor(projectionProp, projection);
+
+    final String laneTypeProp = prefix + ROUTE_LANE_TYPE_SUFFIX;
+    final String laneType = getWithDefault(laneTypeProp, getWithDefault(SWIM_LANE_TYPE_PROP, SWIM_LANE_TYPE_DEFAULT));
+    SWIM_LANE_TYPE_VALIDATOR.ensureValid(laneTypeProp, laneType);
+
+    final String laneKeyExtractorProp = prefix + ROUTE_LANE_KEY_EXTRACTOR_SUFFIX;
+    final String laneKeyExtractor = getWithDefault(laneKeyExtractorProp,
+          getWithDefault(SWIM_LANE_KEY_EXTRACTOR_PROP));
+    validateAgentIdExtractor(laneKeyExtractorProp, laneKeyExtractor);
+
+    final String laneKeySourceProp = prefix + ROUTE_LANE_KEY_SOURCE_SUFFIX;
+    final String laneKeySource = getWithDefault(laneKeySourceProp,
+          getWithDefault(SWIM_LANE_KEY_SOURCE_PROP, SWIM_LANE_KEY_SOURCE_DEFAULT));
+    SWIM_LANE_KEY_SOURCE_VALIDATOR.ensureValid(laneKeySourceProp, laneKeySource);
+    final boolean useValueForLaneKey = laneKeySource.trim().equals("value");
+    validatePassthrough(projectionProp, projection, laneKeySourceProp, useValueForLaneKey);
+
+    RawFieldScanner agentIdScanner = null;
+    if (isValuePassthrough()) {
+      if (agentIdSource == AgentIdSource.VALUE) {
+        agentIdScanner = agentIdScanner(agentIdExtractorProp, agentIdExtractor);
+      }
+    }
+
+    String[] projectionPath = null;
+    if (isValueLazy()) {
+      if (agentIdSource == AgentIdSource.VALUE && agentIdScanner == null) {
+        agentIdScanner = RawFieldScanner.forSelector(agentIdExtractor);
+      }
+      final RawFieldScanner projectionScanner = projection.equals("") ? null : RawFieldScanner.forSelector(projection);
+      projectionPath = projectionScanner != null ? projectionScanner.getPath() : null;
+    }
+
+    return new Route(name, Uri.parse(laneUri), UriPattern.parse(agentUriPattern), parseSelector(agentIdExtractor),
+          agentIdSource, agentIdHeader, agentIdScanner, projection.equals("") ? null : parseSelector(projection),
+          LaneType.from(laneType), parseSelector(laneKeyExtractor), useValueForLaneKey, projectionPath);
+  }
+
+  // Passed through values are sent as they are, they can neither be projected nor looked into for lane keys
+  private void validatePassthrough(String projectionProp, String projection, String laneKeySourceProp,
+                                   boolean useValueForLaneKey) {
+    if (!isValuePassthrough()) {
+      return;
+    } else if (!projection.equals("")) {
+      throw new ConfigException(projectionProp, projection,
+            "Values can not be projected when " + SWIM_VALUE_PASSTHROUGH_PROP + " is enabled");
+    } else if (useValueForLaneKey) {
+      throw new ConfigException(laneKeySourceProp, "value",
+            "Lane keys can not be taken from the value when " + SWIM_VALUE_PASSTHROUGH_PROP + " is enabled");
+    }
+  }
+
+  public int getMaxInFlightRecords() throws ConfigException {
+    final int value = getWithDefault(SWIM_MAX_IN_FLIGHT_RECORDS_PROP, SWIM_MAX_IN_FLIGHT_RECORDS_DEFAULT);
+    SWIM_MAX_IN_FLIGHT_RECORDS_VALIDATOR.ensureValid(SWIM_MAX_IN_FLIGHT_RECORDS_PROP, value);
+    return value;
+  }
+
+  public long getMaxInFlightBytes() throws ConfigException {
+    final long value = getWithDefault(SWIM_MAX_IN_FLIGHT_BYTES_PROP, SWIM_MAX_IN_FLIGHT_BYTES_DEFAULT);
+    SWIM_MAX_IN_FLIGHT_BYTES_VALIDATOR.ensureValid(SWIM_MAX_IN_FLIGHT_BYTES_PROP, value);
+    return value;
+  }
+
+  public long getLingerMs() throws ConfigException {
+    final long value = getWithDefault(SWIM_LINGER_MS_PROP, SWIM_LINGER_MS_DEFAULT);
+    SWIM_LINGER_MS_VALIDATOR.ensureValid(SWIM_LINGER_MS_PROP, value);
+    return value;
+  }
+
+  public long getMaxBlockMs() throws ConfigException {
+    final long value = getWithDefault(SWIM_MAX_BLOCK_MS_PROP, SWIM_MAX_BLOCK_MS_DEFAULT);
+    SWIM_MAX_BLOCK_MS_VALIDATOR.ensureValid(SWIM_MAX_BLOCK_MS_PROP, value);
+    return value;
+  }
+
+  public long getFlushTimeoutMs() throws ConfigException {
+    final long value = getWithDefault(SWIM_FLUSH_TIMEOUT_MS_PROP, SWIM_FLUSH_TIMEOUT_MS_DEFAULT);
+    SWIM_FLUSH_TIMEOUT_MS_VALIDATOR.ensureValid(SWIM_FLUSH_TIMEOUT_MS_PROP, value);
+    return value;
+  }
+
+  public int getSchemaCacheSize() throws ConfigException {
+    final int value = getWithDefault(SWIM_SCHEMA_CACHE_SIZE_PROP, SWIM_SCHEMA_CACHE_SIZE_DEFAULT);
+    SWIM_SCHEMA_CACHE_SIZE_VALIDATOR.ensureValid(SWIM_SCHEMA_CACHE_SIZE_PROP, value);
+    return value;
+  }
+
+  public boolean isValuePassthrough() throws ConfigException {
+    return getWithDefault(SWIM_VALUE_PASSTHROUGH_PROP, false);
+  }
+
+  // Whether values are converted on demand, through a ValueView, instead of as a whole
+  public boolean isValueLazy() throws ConfigException {
+    return getWithDefault(SWIM_VALUE_LAZY_PROP, false);
+  }
+
+  /**
+   * Returns the paths of the value fields that are converted, or an empty list to convert whole
+   * values. The plain field paths of every agent id extractor, lane key extractor and projection
+   * are added, so that the fields the routes read are never pruned.
+   */
+  public List<String> getValueFields() throws ConfigException {
+    final String value = getWithDefault(SWIM_VALUE_FIELDS_PROP);
+    validateValueFields(SWIM_VALUE_FIELDS_PROP, value);
+    final List<String> fields = splitList(value);
+    if (fields.isEmpty()) {
+      return fields;
+    }
+    for (Map.Entry<String, String> entry : this.props.entrySet()) {
+      final String key = entry.getKey();
+      if ((key.startsWith("swim.") || key.startsWith(TOPIC_PREFIX)) && (key.endsWith(ROUTE_AGENT_ID_EXTRACTOR_SUFFIX)
+            || key.endsWith(ROUTE_LANE_KEY_EXTRACTOR_SUFFIX) || key.endsWith(ROUTE_PROJECTION_SUFFIX))) {
+        final String selector = entry.getValue().trim();
+        if (!selector.isEmpty() && RawFieldScanner.forSelector(selector) != null && !fields.contains(selector)) {
+          fields.add(selector);
+        }
+      }
+    }
+    return fields;
+  }
+
+  public int getConversionParallelism() throws ConfigException {
+    final int value = getWithDefault(SWIM_CONVERSION_PARALLELISM_PROP, SWIM_CONVERSION_PARALLELISM_DEFAULT);
+    SWIM_CONVERSION_PARALLELISM_VALIDATOR.ensureValid(SWIM_CONVERSION_PARALLELISM_PROP, value);
+    return value;
+  }
+
+  public int getConversionChunkSize() throws ConfigException {
+    final int value = getWithDefault(SWIM_CONVERSION_CHUNK_SIZE_PROP, SWIM_CONVERSION_CHUNK_SIZE_DEFAULT);
+    SWIM_CONVERSION_CHUNK_SIZE_VALIDATOR.ensureValid(SWIM_CONVERSION_CHUNK_SIZE_PROP, value);
+    return value;
+  }
+
+  public boolean isCoalesceEnabled() throws ConfigException {
+    return getWithDefault(SWIM_COALESCE_ENABLED_PROP, false);
+  }
+
+  public boolean isDeltaEnabled() throws ConfigException {
+    return getWithDefault(SWIM_DELTA_ENABLED_PROP, false);
+  }
+
+  // Null when the patches are sent to the lanes of the routes
+  public Uri getDeltaLaneUri() throws ConfigException {
+    final String value = getWithDefault(SWIM_DELTA_LANE_URI_PROP);
+    if (value == null || value.trim().isEmpty()) {
+      return null;
+    }
+    validateUri(SWIM_DELTA_LANE_URI_PROP, value.trim());
+    return Uri.parse(value.trim());
+  }
+
+  public int getDeltaCacheSize() throws ConfigException {
+    final int value = getWithDefault(SWIM_DELTA_CACHE_SIZE_PROP, SWIM_DELTA_CACHE_SIZE_DEFAULT);
+    SWIM_DELTA_CACHE_SIZE_VALIDATOR.ensureValid(SWIM_DELTA_CACHE_SIZE_PROP, value);
+    return value;
+  }
+
+  public long getDeltaResyncIntervalMs() throws ConfigException {
+    final long value = getWithDefault(SWIM_DELTA_RESYNC_INTERVAL_MS_PROP, SWIM_DELTA_RESYNC_INTERVAL_MS_DEFAULT);
+    SWIM_DELTA_RESYNC_INTERVAL_MS_VALIDATOR.ensureValid(SWIM_DELTA_RESYNC_INTERVAL_MS_PROP, value);
+    return value;
+  }
+
+  public boolean isRateControlEnabled() throws ConfigException {
+    return getWithDefault(SWIM_RATE_CONTROL_ENABLED_PROP, false);
+  }
+
+  /**
+   * Returns a new controller of the dispatch rate of a task, or null if the rate is not
+   * controlled.
+   */
+  public SendRateController getSendRateController() throws ConfigException {
+    if (!isRateControlEnabled()) {
+      return null;
+    }
+    final double minRate = getWithDefault(SWIM_RATE_CONTROL_MIN_RATE_PROP, SWIM_RATE_CONTROL_MIN_RATE_DEFAULT);
+    SWIM_RATE_CONTROL_RATE_VALIDATOR.ensureValid(SWIM_RATE_CONTROL_MIN_RATE_PROP, minRate);
+    final double maxRate = getWithDefault(SWIM_RATE_CONTROL_MAX_RATE_PROP, SWIM_RATE_CONTROL_MAX_RATE_DEFAULT);
+    SWIM_RATE_CONTROL_RATE_VALIDATOR.ensureValid(SWIM_RATE_CONTROL_MAX_RATE_PROP, maxRate);
+    if (maxRate < minRate) {
+      throw new ConfigException(SWIM_RATE_CONTROL_MAX_RATE_PROP, maxRate,
+            "Must not be less than " + SWIM_RATE_CONTROL_MIN_RATE_PROP);
+    }
+    final double increase = getWithDefault(SWIM_RATE_CONTROL_INCREASE_PROP, SWIM_RATE_CONTROL_INCREASE_DEFAULT);
+    SWIM_RATE_CONTROL_INCREASE_VALIDATOR.ensureValid(SWIM_RATE_CONTROL_INCREASE_PROP, increase);
+    final double decreaseFactor = getWithDefault(SWIM_RATE_CONTROL_DECREASE_FACTOR_PROP,
+          SWIM_RATE_CONTROL_DECREASE_FACTOR_DEFAULT);
+    SWIM_RATE_CONTROL_DECREASE_FACTOR_VALIDATOR.ensureValid(SWIM_RATE_CONTROL_DECREASE_FACTOR_PROP, decreaseFactor);
+    final long targetLatencyMs = getWithDefault(SWIM_RATE_CONTROL_TARGET_LATENCY_MS_PROP,
+          SWIM_RATE_CONTROL_TARGET_LATENCY_MS_DEFAULT);
+    SWIM_RATE_CONTROL_TARGET_LATENCY_MS_VALIDATOR.ensureValid(SWIM_RATE_CONTROL_TARGET_LATENCY_MS_PROP,
+          targetLatencyMs);
+    final long intervalMs = getWithDefault(SWIM_RATE_CONTROL_INTERVAL_MS_PROP, SWIM_RATE_CONTROL_INTERVAL_MS_DEFAULT);
+    SWIM_RATE_CONTROL_INTERVAL_MS_VALIDATOR.ensureValid(SWIM_RATE_CONTROL_INTERVAL_MS_PROP, intervalMs);
+    return new SendRateController(minRate, maxRate, increase, decreaseFactor, targetLatencyMs, intervalMs);
+  }
+
+  public TraceMetadata.Mode getTraceMetadata() throws ConfigException {
+    final String value = getWithDefault(SWIM_TRACE_METADATA_PROP, SWIM_TRACE_METADATA_DEFAULT);
+    SWIM_TRACE_METADATA_VALIDATOR.ensureValid(SWIM_TRACE_METADATA_PROP, value);
+    return TraceMetadata.Mode.from(value);
+  }
+
+  public boolean isTraceLagEnabled() throws ConfigException {
+    return getWithDefault(SWIM_TRACE_LAG_ENABLED_PROP, false);
+  }
+
+  public ErrantRecordHandler.Action getErrorsAction() throws ConfigException {
+    final String value = getWithDefault(SWIM_ERRORS_ACTION_PROP, SWIM_ERRORS_ACTION_DEFAULT);
+    SWIM_ERRORS_ACTION_VALIDATOR.ensureValid(SWIM_ERRORS_ACTION_PROP, value);
+    return ErrantRecordHandler.Action.from(value);
+  }
+
+  // Null unless bad records are sent to a fallback agent
+  public Uri getErrorsFallbackAgentUri() throws ConfigException {
+    if (getErrorsAction() != ErrantRecordHandler.Action.FALLBACK) {
+      return null;
+    }
+    final String value = getWithDefault(SWIM_ERRORS_FALLBACK_AGENT_URI_PROP);
+    if (value == null || value.trim().isEmpty()) {
+      throw new ConfigException(SWIM_ERRORS_FALLBACK_AGENT_URI_PROP, value,
+            "Required when " + SWIM_ERRORS_ACTION_PROP + " is fallback");
+    }
+    validateUri(SWIM_ERRORS_FALLBACK_AGENT_URI_PROP, value.trim());
+    return Uri.parse(value.trim());
+  }
+
+  public long getErrorsLogIntervalMs() throws ConfigException {
+    final long value = getWithDefault(SWIM_ERRORS_LOG_INTERVAL_MS_PROP, SWIM_ERRORS_LOG_INTERVAL_MS_DEFAULT);
+    SWIM_ERRORS_LOG_INTERVAL_MS_VALIDATOR.ensureValid(SWIM_ERRORS_LOG_INTERVAL_MS_PROP, value);
+    return value;
+  }
+
+  public TransportSettings getTransportSettings() throws ConfigException {
+    final int compressionLevel = getWithDefault(SWIM_WS_COMPRESSION_LEVEL_PROP, TransportSettings.DEFAULT);
+    SWIM_WS_COMPRESSION_LEVEL_VALIDATOR.ensureValid(SWIM_WS_COMPRESSION_LEVEL_PROP, compressionLevel);
+    final int maxFrameSize = getWithDefault(SWIM_WS_MAX_FRAME_SIZE_PROP, TransportSettings.DEFAULT);
+    SWIM_WS_MAX_FRAME_SIZE_VALIDATOR.ensureValid(SWIM_WS_MAX_FRAME_SIZE_PROP, maxFrameSize);
+    final int sendBufferSize = getWithDefault(SWIM_TCP_SEND_BUFFER_SIZE_PROP, TransportSettings.DEFAULT);
+    SWIM_TCP_BUFFER_SIZE_VALIDATOR.ensureValid(SWIM_TCP_SEND_BUFFER_SIZE_PROP, sendBufferSize);
+    final int receiveBufferSize = getWithDefault(SWIM_TCP_RECEIVE_BUFFER_SIZE_PROP, TransportSettings.DEFAULT);
+    SWIM_TCP_BUFFER_SIZE_VALIDATOR.ensureValid(SWIM_TCP_RECEIVE_BUFFER_SIZE_PROP, receiveBufferSize);
+    return new TransportSettings(compressionLevel, maxFrameSize, sendBufferSize, receiveBufferSize,
+          getWithDefault(SWIM_TCP_NO_DELAY_PROP, true));
+  }
+
+  public boolean isHostAffinity() throws ConfigException {
+    return getWithDefault(SWIM_HOST_AFFINITY_PROP, false);
+  }
+
+  public boolean isClientShared() throws ConfigException {
+    return getWithDefault(SWIM_CLIENT_SHARED_PROP, true);
+  }
+
+  public boolean isMetricsBytesEnabled() throws ConfigException {
+    return getWithDefault(SWIM_METRICS_BYTES_ENABLED_PROP, false);
+  }
+
+  public String getConnectorName() {
+    return getWithDefault(CONNECTOR_NAME_PROP, "swim-sink");
+  }
+
+  public String getTaskId() {
+    return getWithDefault(SWIM_TASK_ID_PROP, "0");
+  }
+
+  public int getTaskIndex() throws ConfigException {
+    return parseTaskNumber(SWIM_TASK_ID_PROP, getTaskId(), 0);
+  }
+
+  public int getTaskCount() throws ConfigException {
+    final int taskCount = parseTaskNumber(SWIM_TASK_COUNT_PROP, getWithDefault(SWIM_TASK_COUNT_PROP, "1"), 1);
+    if (getTaskIndex() >= taskCount) {
+      throw new ConfigException(SWIM_TASK_ID_PROP, getTaskId(), "Must be less than " + SWIM_TASK_COUNT_PROP);
+    }
+    return taskCount;
+  }
+
+  // Scanner for extracting the agent id from encoded values, which requires a plain field path
+  public RawFieldScanner getAgentIdScanner() throws ConfigException {
+    final String value = getWithDefault(SWIM_AGENT_ID_EXTRACTOR_PROP);
+    validateAgentIdExtractor(SWIM_AGENT_ID_EXTRACTOR_PROP, value);
+    return agentIdScanner(SWIM_AGENT_ID_EXTRACTOR_PROP, value);
+  }
+
+  private static RawFieldScanner agentIdScanner(String name, String value) {
+    final RawFieldScanner scanner = RawFieldScanner.forSelector(value);
+    if (scanner == null) {
+      throw new ConfigException(name, value,
+            "Must be a field path, eg: $id or $device.id, when " + SWIM_VALUE_PASSTHROUGH_PROP + " is enabled");
+    }
+    return scanner;
+  }
+
+  private static Selector parseSelector(String value) {
     if (value.equals("")) {
       return Selector.identity();
     } else {
@@ -84,6 +753,12 @@ public class SwimSinkConfig {
     }
   }
 
+  public BytesFormat getValueBytesFormat() throws ConfigException {
+    final String value = getWithDefault(SWIM_VALUE_BYTES_FORMAT_PROP, SWIM_VALUE_BYTES_FORMAT_DEFAULT);
+    SWIM_VALUE_BYTES_FORMAT_VALIDATOR.ensureValid(SWIM_VALUE_BYTES_FORMAT_PROP, value);
+    return BytesFormat.from(value);
+  }
+
   private String getWithDefault(String propKey) {
     return getWithDefault(propKey, "");
   }
@@ -95,6 +770,9 @@ public class SwimSinkConfig {
 
   private boolean getWithDefault(String propKey, boolean def) {
     final String value =  this.props.get(propKey);
+    if (value == null || value.trim().equals("")) {
+      return def;
+    }
     try {
       return Boolean.parseBoolean(value);
     } catch (Exception ignored) {
@@ -102,11 +780,48 @@ public class SwimSinkConfig {
     return def;
   }
 
+  private int getWithDefault(String propKey, int def) {
+    final String value = this.props.get(propKey);
+    if (value == null || value.trim().equals("")) {
+      return def;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new ConfigException(propKey, value, "Not a valid integer");
+    }
+  }
+
+  private long getWithDefault(String propKey, long def) {
+    final String value = this.props.get(propKey);
+    if (value == null || value.trim().equals("")) {
+      return def;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new ConfigException(propKey, value, "Not a valid long");
+    }
+  }
+
+  private double getWithDefault(String propKey, double def) {
+    final String value = this.props.get(propKey);
+    if (value == null || value.trim().equals("")) {
+      return def;
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      throw new ConfigException(propKey, value, "Not a valid double");
+    }
+  }
+
   private static ConfigDef makeConfigDef() {
     final ConfigDef configDef = new ConfigDef();
 
     configDef.define(SWIM_HOST_URI_PROP, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE,
-          SWIM_HOST_URI_VALIDATOR, ConfigDef.Importance.HIGH, "The Host URI of the Swim Application");
+          SWIM_HOST_URI_VALIDATOR, ConfigDef.Importance.HIGH,
+          "The Host URI of the Swim Application, or a comma separated list of the hosts of a Swim fabric");
 
     configDef.define(SWIM_AGENT_URI_PATTERN_PROP, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE,
           SWIM_AGENT_URI_PATTERN_VALIDATOR, ConfigDef.Importance.HIGH, "The Web Agent URI Pattern");
@@ -120,6 +835,200 @@ public class SwimSinkConfig {
     configDef.define(SWIM_AGENT_ID_EXTRACTOR_PROP, ConfigDef.Type.STRING, "",
           SWIM_AGENT_ID_EXTRACTOR_VALIDATOR, ConfigDef.Importance.HIGH, "Recon selector expression to parse the id");
 
+    configDef.define(SWIM_AGENT_ID_SOURCE_PROP, ConfigDef.Type.STRING, "", SWIM_AGENT_ID_SOURCE_VALIDATOR,
+          ConfigDef.Importance.MEDIUM, "Where the agent id is taken from: key, value, key.raw, header, topic or "
+          + "partition. Defaults to the key or the value, depending on " + SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP);
+
+    configDef.define(SWIM_AGENT_ID_HEADER_PROP, ConfigDef.Type.STRING, "", ConfigDef.Importance.MEDIUM,
+          "Name of the Kafka header holding the agent id, when " + SWIM_AGENT_ID_SOURCE_PROP + " is header");
+
+    configDef.define(SWIM_LANE_TYPE_PROP, ConfigDef.Type.STRING, SWIM_LANE_TYPE_DEFAULT, SWIM_LANE_TYPE_VALIDATOR,
+          ConfigDef.Importance.MEDIUM, "Type of the lane: value (sent the whole value), map or list (sent updates "
+                + "of the entry of the record, and removes for tombstones)");
+
+    configDef.define(SWIM_LANE_KEY_EXTRACTOR_PROP, ConfigDef.Type.STRING, "", SWIM_AGENT_ID_EXTRACTOR_VALIDATOR,
+          ConfigDef.Importance.MEDIUM, "Recon selector expression to parse the key, or the index, of the lane "
+                + "entry from the key, or the value, of the record, when " + SWIM_LANE_TYPE_PROP + " is map or "
+                + "list. List indexes must be non-negative integers");
+
+    configDef.define(SWIM_LANE_KEY_SOURCE_PROP, ConfigDef.Type.STRING, SWIM_LANE_KEY_SOURCE_DEFAULT,
+          SWIM_LANE_KEY_SOURCE_VALIDATOR, ConfigDef.Importance.MEDIUM, "Where the key, or the index, of the lane entry "
+                + "is taken from: key or value. The entry removed by a tombstone is always the one of its whole key "
+                + "when the lane key is taken from the value");
+
+    configDef.define(SWIM_PROJECTION_PROP, ConfigDef.Type.STRING, "", SWIM_AGENT_ID_EXTRACTOR_VALIDATOR,
+          ConfigDef.Importance.MEDIUM, "Recon selector expression for the part of the value that is sent to the "
+                + "lane, or that is the value of the lane entry for map and list lanes. The whole value by default");
+
+    configDef.define(SWIM_AGENT_URI_CACHE_SIZE_PROP, ConfigDef.Type.INT, SWIM_AGENT_URI_CACHE_SIZE_DEFAULT,
+          SWIM_AGENT_URI_CACHE_SIZE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Maximum number of agent uris cached per agent uri pattern, 0 to disable the cache");
+
+    configDef.define(SWIM_AGENT_URI_CACHE_POLICY_PROP, ConfigDef.Type.STRING, SWIM_AGENT_URI_CACHE_POLICY_DEFAULT,
+          SWIM_AGENT_URI_CACHE_POLICY_VALIDATOR, ConfigDef.Importance.LOW,
+          "Eviction policy of the agent uri cache: lru or slru (segmented lru, which resists scans of one-off ids)");
+
+    configDef.define(SWIM_TOPIC_GROUPS_PROP, ConfigDef.Type.STRING, "", SWIM_TOPIC_GROUPS_VALIDATOR,
+          ConfigDef.Importance.MEDIUM, "Comma separated names of the groups of topics that share the overrides of "
+                + "topic.group.<group>.swim.*, the topics of each group being matched by topic.group.<group>.regex");
+
+    configDef.define(SWIM_ROUTES_PROP, ConfigDef.Type.STRING, "", SWIM_ROUTES_VALIDATOR, ConfigDef.Importance.MEDIUM,
+          "Comma separated names of additional routes, each configured by swim.route.<name>.* properties");
+
+    configDef.define(SWIM_MAX_IN_FLIGHT_RECORDS_PROP, ConfigDef.Type.INT, SWIM_MAX_IN_FLIGHT_RECORDS_DEFAULT,
+          SWIM_MAX_IN_FLIGHT_RECORDS_VALIDATOR, ConfigDef.Importance.MEDIUM,
+          "Maximum number of commands handed to the Swim client that have not yet been written to the host");
+
+    configDef.define(SWIM_MAX_IN_FLIGHT_BYTES_PROP, ConfigDef.Type.LONG, SWIM_MAX_IN_FLIGHT_BYTES_DEFAULT,
+          SWIM_MAX_IN_FLIGHT_BYTES_VALIDATOR, ConfigDef.Importance.MEDIUM,
+          "Maximum encoded size in bytes of the commands in flight to the Swim host, 0 for no limit");
+
+    configDef.define(SWIM_LINGER_MS_PROP, ConfigDef.Type.LONG, SWIM_LINGER_MS_DEFAULT,
+          SWIM_LINGER_MS_VALIDATOR, ConfigDef.Importance.LOW,
+          "Time to hold commands back in order to dispatch them to the Swim client in larger batches");
+
+    configDef.define(SWIM_MAX_BLOCK_MS_PROP, ConfigDef.Type.LONG, SWIM_MAX_BLOCK_MS_DEFAULT,
+          SWIM_MAX_BLOCK_MS_VALIDATOR, ConfigDef.Importance.LOW,
+          "Time for which put blocks on a full pipeline before pausing the assigned partitions");
+
+    configDef.define(SWIM_FLUSH_TIMEOUT_MS_PROP, ConfigDef.Type.LONG, SWIM_FLUSH_TIMEOUT_MS_DEFAULT,
+          SWIM_FLUSH_TIMEOUT_MS_VALIDATOR, ConfigDef.Importance.LOW,
+          "Time to wait for in-flight commands to be written when offsets are committed");
+
+    configDef.define(SWIM_SCHEMA_CACHE_SIZE_PROP, ConfigDef.Type.INT, SWIM_SCHEMA_CACHE_SIZE_DEFAULT,
+          SWIM_SCHEMA_CACHE_SIZE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Maximum number of distinct schemas to keep compiled converters for, 0 to disable");
+
+    configDef.define(SWIM_VALUE_BYTES_FORMAT_PROP, ConfigDef.Type.STRING, SWIM_VALUE_BYTES_FORMAT_DEFAULT,
+          SWIM_VALUE_BYTES_FORMAT_VALIDATOR, ConfigDef.Importance.MEDIUM,
+          "How byte array values are converted: data (as is), json or recon (parsed from the UTF-8 bytes)");
+
+    configDef.define(SWIM_VALUE_FIELDS_PROP, ConfigDef.Type.STRING, "", SWIM_VALUE_FIELDS_VALIDATOR,
+          ConfigDef.Importance.MEDIUM, "Comma separated paths of the value fields to convert and send, eg: "
+                + "deviceId,location.region; all the fields are sent by default");
+
+    configDef.define(SWIM_VALUE_LAZY_PROP, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW,
+          "Whether to only convert the value fields read by the agent id extractors and projections that are field "
+                + "paths, converting the whole value only when it is sent. Values are only converted in part when "
+                + "every route projects a field path; routes without a projection, and other selectors, convert the "
+                + "whole value");
+
+    configDef.define(SWIM_VALUE_PASSTHROUGH_PROP, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.MEDIUM,
+          "Whether to forward string and byte array values without converting them, parsed as a whole according "
+                + "to " + SWIM_VALUE_BYTES_FORMAT_PROP + ", or as text when it is data");
+
+    configDef.define(SWIM_CONVERSION_PARALLELISM_PROP, ConfigDef.Type.INT, SWIM_CONVERSION_PARALLELISM_DEFAULT,
+          SWIM_CONVERSION_PARALLELISM_VALIDATOR, ConfigDef.Importance.LOW,
+          "Maximum number of threads converting the records of a batch, 1 to convert them on the task thread");
+
+    configDef.define(SWIM_CONVERSION_CHUNK_SIZE_PROP, ConfigDef.Type.INT, SWIM_CONVERSION_CHUNK_SIZE_DEFAULT,
+          SWIM_CONVERSION_CHUNK_SIZE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Minimum number of records converted per thread when converting a batch in parallel");
+
+    configDef.define(SWIM_COALESCE_ENABLED_PROP, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.MEDIUM,
+          "Whether to only send the latest of the values waiting to be sent to the same lane of the same agent, "
+                + "or to the same entry of a map lane");
+
+    configDef.define(SWIM_DELTA_ENABLED_PROP, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.MEDIUM,
+          "Whether to only send the slots that changed since the last value sent to the same value lane of the "
+                + "same agent, as a patch that the agent merges into its current value. The last values are cached "
+                + "per task, so the records of an agent must all land on the same partition");
+
+    configDef.define(SWIM_DELTA_LANE_URI_PROP, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW,
+          "The Lane URI to which the patches are sent when " + SWIM_DELTA_ENABLED_PROP + " is true, the full values "
+                + "still being sent to the lane of the route; by default they are sent to the lane of the route");
+
+    configDef.define(SWIM_DELTA_CACHE_SIZE_PROP, ConfigDef.Type.INT, SWIM_DELTA_CACHE_SIZE_DEFAULT,
+          SWIM_DELTA_CACHE_SIZE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Maximum number of lanes whose last value is kept to compute the patches, the full value is sent again "
+                + "to an evicted lane");
+
+    configDef.define(SWIM_DELTA_RESYNC_INTERVAL_MS_PROP, ConfigDef.Type.LONG, SWIM_DELTA_RESYNC_INTERVAL_MS_DEFAULT,
+          SWIM_DELTA_RESYNC_INTERVAL_MS_VALIDATOR, ConfigDef.Importance.LOW,
+          "Maximum time between two full values sent to the same lane when " + SWIM_DELTA_ENABLED_PROP + " is true");
+
+    configDef.define(SWIM_RATE_CONTROL_ENABLED_PROP, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.MEDIUM,
+          "Whether to adapt the rate at which commands are sent to how fast the Swim hosts take them, pausing the "
+                + "partitions while the rate holds the commands back");
+
+    configDef.define(SWIM_RATE_CONTROL_MIN_RATE_PROP, ConfigDef.Type.DOUBLE, SWIM_RATE_CONTROL_MIN_RATE_DEFAULT,
+          SWIM_RATE_CONTROL_RATE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Minimum number of commands per second that a task sends when the rate is controlled");
+
+    configDef.define(SWIM_RATE_CONTROL_MAX_RATE_PROP, ConfigDef.Type.DOUBLE, SWIM_RATE_CONTROL_MAX_RATE_DEFAULT,
+          SWIM_RATE_CONTROL_RATE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Maximum, and initial, number of commands per second that a task sends when the rate is controlled");
+
+    configDef.define(SWIM_RATE_CONTROL_INCREASE_PROP, ConfigDef.Type.DOUBLE, SWIM_RATE_CONTROL_INCREASE_DEFAULT,
+          SWIM_RATE_CONTROL_INCREASE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Commands per second added to the rate after each interval in which the hosts kept up");
+
+    configDef.define(SWIM_RATE_CONTROL_DECREASE_FACTOR_PROP, ConfigDef.Type.DOUBLE,
+          SWIM_RATE_CONTROL_DECREASE_FACTOR_DEFAULT, SWIM_RATE_CONTROL_DECREASE_FACTOR_VALIDATOR,
+          ConfigDef.Importance.LOW, "Factor by which the rate is multiplied after an interval in which the hosts "
+                + "fell behind");
+
+    configDef.define(SWIM_RATE_CONTROL_TARGET_LATENCY_MS_PROP, ConfigDef.Type.LONG,
+          SWIM_RATE_CONTROL_TARGET_LATENCY_MS_DEFAULT, SWIM_RATE_CONTROL_TARGET_LATENCY_MS_VALIDATOR,
+          ConfigDef.Importance.LOW, "Average time to write a command to a host above which the host is considered "
+                + "to fall behind");
+
+    configDef.define(SWIM_RATE_CONTROL_INTERVAL_MS_PROP, ConfigDef.Type.LONG, SWIM_RATE_CONTROL_INTERVAL_MS_DEFAULT,
+          SWIM_RATE_CONTROL_INTERVAL_MS_VALIDATOR, ConfigDef.Importance.LOW,
+          "Time between two adjustments of the rate");
+
+    configDef.define(SWIM_TRACE_METADATA_PROP, ConfigDef.Type.STRING, SWIM_TRACE_METADATA_DEFAULT,
+          SWIM_TRACE_METADATA_VALIDATOR, ConfigDef.Importance.LOW,
+          "Whether to attach the topic, partition, offset and timestamp of each record to the values sent for it: "
+                + "none, attrs for a @kafka attribute, or wrapper for a {kafka, value} record");
+
+    configDef.define(SWIM_TRACE_LAG_ENABLED_PROP, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW,
+          "Whether to measure, per partition, the time between the production of the records and the dispatch of "
+                + "their commands");
+
+    configDef.define(SWIM_ERRORS_ACTION_PROP, ConfigDef.Type.STRING, SWIM_ERRORS_ACTION_DEFAULT,
+          SWIM_ERRORS_ACTION_VALIDATOR, ConfigDef.Importance.MEDIUM,
+          "What to do with a record that cannot be converted or routed to an agent: fail the task, skip it, "
+                + "log and skip it, or send it to the fallback agent");
+
+    configDef.define(SWIM_ERRORS_FALLBACK_AGENT_URI_PROP, ConfigDef.Type.STRING, "", ConfigDef.Importance.MEDIUM,
+          "The URI of the Web Agent that receives the bad records when " + SWIM_ERRORS_ACTION_PROP + " is fallback");
+
+    configDef.define(SWIM_ERRORS_LOG_INTERVAL_MS_PROP, ConfigDef.Type.LONG, SWIM_ERRORS_LOG_INTERVAL_MS_DEFAULT,
+          SWIM_ERRORS_LOG_INTERVAL_MS_VALIDATOR, ConfigDef.Importance.LOW,
+          "Minimum time between two logged bad records when " + SWIM_ERRORS_ACTION_PROP + " is log");
+
+    configDef.define(SWIM_WS_COMPRESSION_LEVEL_PROP, ConfigDef.Type.INT, TransportSettings.DEFAULT,
+          SWIM_WS_COMPRESSION_LEVEL_VALIDATOR, ConfigDef.Importance.LOW,
+          "WebSocket permessage-deflate level of the connections to the Swim hosts: -1 for the Swim default, "
+                + "0 for off, or 1 to 9");
+
+    configDef.define(SWIM_WS_MAX_FRAME_SIZE_PROP, ConfigDef.Type.INT, TransportSettings.DEFAULT,
+          SWIM_WS_MAX_FRAME_SIZE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Maximum size in bytes of a WebSocket frame, -1 for the Swim default");
+
+    configDef.define(SWIM_TCP_SEND_BUFFER_SIZE_PROP, ConfigDef.Type.INT, TransportSettings.DEFAULT,
+          SWIM_TCP_BUFFER_SIZE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Size in bytes of the TCP send buffer of the connections, -1 for the Swim default");
+
+    configDef.define(SWIM_TCP_RECEIVE_BUFFER_SIZE_PROP, ConfigDef.Type.INT, TransportSettings.DEFAULT,
+          SWIM_TCP_BUFFER_SIZE_VALIDATOR, ConfigDef.Importance.LOW,
+          "Size in bytes of the TCP receive buffer of the connections, -1 for the Swim default");
+
+    configDef.define(SWIM_TCP_NO_DELAY_PROP, ConfigDef.Type.BOOLEAN, true, ConfigDef.Importance.LOW,
+          "Whether to set TCP_NODELAY on the connections, sending small commands without waiting to fill a packet");
+
+    configDef.define(SWIM_HOST_AFFINITY_PROP, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW,
+          "Whether each task owns a subset of the Swim hosts, the commands for a host being sent through the "
+                + "connection of the task that owns it when that task runs in the same worker");
+
+    configDef.define(SWIM_CLIENT_SHARED_PROP, ConfigDef.Type.BOOLEAN, true, ConfigDef.Importance.LOW,
+          "Whether the tasks of the worker that connect to the same hosts share one Swim client runtime");
+
+    configDef.define(SWIM_METRICS_BYTES_ENABLED_PROP, ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW,
+          "Whether to measure the encoded size of every command for the put-byte-rate and put-byte-total metrics, "
+                + "at the cost of an extra serialization pass per command");
+
     return configDef;
   }
 
@@ -132,13 +1041,42 @@ public class SwimSinkConfig {
       throw new ConfigException(name, null, "Host uri not defined");
     }
     final String value = (String) object;
-    if (value.startsWith("warp://") || value.startsWith("warps://")) {
-      validateUri(name, value);
-    } else {
-      throw new ConfigException(name, value, "Must start with warp:// or warps://");
+    final List<String> hostUris = splitHostUris(value);
+    if (hostUris.isEmpty()) {
+      throw new ConfigException(name, value, "Host uri not defined");
+    }
+    final Set<String> seen = new HashSet<>();
+    for (String hostUri : hostUris) {
+      if (!hostUri.startsWith("warp://") && !hostUri.startsWith("warps://")) {
+        throw new ConfigException(name, value, "Must start with warp:// or warps://");
+      } else if (!seen.add(hostUri)) {
+        throw new ConfigException(name, value, "Duplicate host uri " + hostUri);
+      }
+      validateUri(name, hostUri);
     }
   }
 
+  private static int parseTaskNumber(String name, String value, int min) {
+    try {
+      final int number = Integer.parseInt(value.trim());
+      if (number >= min) {
+        return number;
+      }
+    } catch (NumberFormatException ignore) {
+    }
+    throw new ConfigException(name, value, "Must be an integer of at least " + min);
+  }
+
+  private static List<String> splitHostUris(String value) {
+    final List<String> hostUris = new ArrayList<>();
+    for (String hostUri : value.split(",")) {
+      if (!hostUri.trim().isEmpty()) {
+        hostUris.add(hostUri.trim());
+      }
+    }
+    return hostUris;
+  }
+
   private static ConfigDef.Validator agentUriPatternValidator() {
     return (name, value) -> validateAgentUriPattern(name, value);
   }
@@ -164,7 +1102,7 @@ public class SwimSinkConfig {
 
   private static void validateUri(String name, Object object) {
     if (object == null) {
-      throw new ConfigException(name, null, "Lane Uri not defined");
+      throw new ConfigException(name, null, "Uri of " + name + " not defined");
     }
     final String value = (String) object;
     Uri uri = Uri.empty();
@@ -177,6 +1115,92 @@ public class SwimSinkConfig {
     }
   }
 
+  private static ConfigDef.Validator agentIdSourceValidator() {
+    return (name, value) -> validateAgentIdSource(name, (String) value);
+  }
+
+  private static void validateAgentIdSource(String name, String value) {
+    if (value == null || value.trim().equals("")) {
+      return;
+    }
+    try {
+      AgentIdSource.from(value);
+    } catch (IllegalArgumentException e) {
+      throw new ConfigException(name, value, "Must be one of key, value, key.raw, header, topic or partition");
+    }
+  }
+
+  private static void validateAgentIdHeader(String name, AgentIdSource agentIdSource, String value) {
+    if (agentIdSource == AgentIdSource.HEADER && value.trim().equals("")) {
+      throw new ConfigException(name, value, "Header name not defined");
+    }
+  }
+
+  private static ConfigDef.Validator routesValidator() {
+    return (name, value) -> validateRoutes(name, (String) value);
+  }
+
+  private static void validateRoutes(String name, String value) {
+    if (value == null) {
+      return;
+    }
+    final Set<String> names = new HashSet<>();
+    for (String route : splitList(value)) {
+      if (!route.matches("[A-Za-z0-9_-]+")) {
+        throw new ConfigException(name, value, "Route names may only contain letters, digits, '_' and '-'");
+      } else if (route.equals(DEFAULT_ROUTE_NAME) || !names.add(route)) {
+        throw new ConfigException(name, value, "Duplicate route " + route);
+      }
+    }
+  }
+
+  private static ConfigDef.Validator valueFieldsValidator() {
+    return (name, value) -> validateValueFields(name, (String) value);
+  }
+
+  private static void validateValueFields(String name, String value) {
+    if (value == null) {
+      return;
+    }
+    for (String path : splitList(value)) {
+      final String fieldPath = path.startsWith("$") ? path.substring(1) : path;
+      for (String field : fieldPath.split("\\.", -1)) {
+        if (field.trim().isEmpty()) {
+          throw new ConfigException(name, value, "Not a valid field path: " + path);
+        }
+      }
+    }
+  }
+
+  private static ConfigDef.Validator topicGroupsValidator() {
+    return (name, value) -> validateTopicGroups(name, (String) value);
+  }
+
+  private static void validateTopicGroups(String name, String value) {
+    if (value == null) {
+      return;
+    }
+    final Set<String> names = new HashSet<>();
+    for (String group : splitList(value)) {
+      if (!group.matches("[A-Za-z0-9_-]+")) {
+        throw new ConfigException(name, value, "Topic group names may only contain letters, digits, '_' and '-'");
+      } else if (!names.add(group)) {
+        throw new ConfigException(name, value, "Duplicate topic group " + group);
+      }
+    }
+  }
+
+  // Splits a comma separated list, eg: of routes, topics or field paths, dropping the empty items
+  private static List<String> splitList(String value) {
+    final List<String> items = new ArrayList<>();
+    for (String item : value.split(",")) {
+      if (!item.trim().isEmpty()) {
+        items.add(item.trim());
+      }
+    }
+    return items;
+  }
+
   private static ConfigDef.Validator agentIdExtractorValidator() {
     return (name, value) -> validateAgentIdExtractor(name, (String) value);
   }
@@ -0,0 +1,113 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.apache.kafka.common.config.ConfigException;
+
+/**
+ * The routing plans of the topics of a connector. The routing properties of a topic are those
+ * of the connector, overridden by the {@code topic.group.<group>.swim.*} properties of the first
+ * topic group whose regular expression matches the topic, themselves overridden by the
+ * {@code topic.<topic>.swim.*} properties. Only the routing properties can be overridden.
+ * <p>
+ * The plans of the groups, and of the topics listed in {@code topics}, are compiled, and
+ * validated, when the task starts. Other topics, eg: topics subscribed through
+ * {@code topics.regex}, are resolved on their first record. Lookups are safe from any thread.
+ */
+final class TopicRoutingPlans {
+
+  private final SwimSinkConfig config;
+  private final RoutingPlan defaultPlan;
+  private final List<TopicGroup> groups;
+  private final Map<String, RoutingPlan> plans;
+  // Whether any topic or group overrides the connector properties
+  private final boolean overridden;
+
+  TopicRoutingPlans(SwimSinkConfig config) throws ConfigException {
+    config.validateTopicOverrides();
+    this.config = config;
+    this.defaultPlan = RoutingPlan.from(config);
+    this.groups = new ArrayList<>();
+    for (String name : config.getTopicGroupNames()) {
+      final Map<String, String> overrides = config.getTopicGroupOverrides(name);
+      this.groups.add(new TopicGroup(name, config.getTopicGroupPattern(name), overrides,
+            RoutingPlan.from(config.withOverrides(overrides))));
+    }
+    this.overridden = !this.groups.isEmpty() || config.hasTopicOverrides();
+    this.plans = new ConcurrentHashMap<>();
+    if (this.overridden) {
+      for (String topic : config.getTopics()) {
+        this.plans.put(topic, resolve(topic));
+      }
+    }
+  }
+
+  RoutingPlan getDefaultPlan() {
+    return this.defaultPlan;
+  }
+
+  RoutingPlan get(String topic) {
+    if (!this.overridden) {
+      return this.defaultPlan;
+    }
+    RoutingPlan plan = this.plans.get(topic);
+    if (plan == null) {
+      plan = this.plans.computeIfAbsent(topic, this::resolve);
+    }
+    return plan;
+  }
+
+  private RoutingPlan resolve(String topic) {
+    for (TopicGroup group : this.groups) {
+      if (topic.equals("group." + group.name)) {
+        // topic.group.<group>.swim.* would override the properties of both the topic and the group
+        throw new ConfigException(SwimSinkConfig.SWIM_TOPIC_GROUPS_PROP, group.name,
+              "The topic " + topic + " clashes with the overrides of the topic group " + group.name);
+      }
+    }
+    final Map<String, String> topicOverrides = this.config.getTopicOverrides(topic);
+    for (TopicGroup group : this.groups) {
+      if (group.pattern.matcher(topic).matches()) {
+        if (topicOverrides.isEmpty()) {
+          return group.plan;
+        }
+        return RoutingPlan.from(this.config.withOverrides(group.overrides).withOverrides(topicOverrides));
+      }
+    }
+    return topicOverrides.isEmpty() ? this.defaultPlan : RoutingPlan.from(this.config.withOverrides(topicOverrides));
+  }
+
+  private static final class TopicGroup {
+
+    final String name;
+    final Pattern pattern;
+    final Map<String, String> overrides;
+    final RoutingPlan plan;
+
+    TopicGroup(String name, Pattern pattern, Map<String, String> overrides, RoutingPlan plan) {
+      this.name = name;
+      this.pattern = pattern;
+      this.overrides = overrides;
+      this.plan = plan;
+    }
+
+  }
+
+}
@@ -0,0 +1,88 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.Locale;
+import org.apache.kafka.connect.sink.SinkRecord;
+import swim.structure.Record;
+import swim.structure.Value;
+
+/**
+ * Attaches the topic, partition, offset and timestamp of a record to the values sent for it, so
+ * that agents can tell how stale their state is, eg: by comparing the timestamp to their clock.
+ * <p>
+ * The metadata is either prepended to the value as a {@code @kafka} attribute, eg:
+ * {@code @kafka(topic: t, partition: 0, offset: 42, timestamp: 1660000000000) {a: 1}}, or
+ * wraps it, eg: {@code {kafka: {topic: t, ...}, value: {a: 1}}}. For map and list lanes it
+ * applies to the value of the entry, inside the {@code @update} envelope; removes carry none.
+ */
+public final class TraceMetadata {
+
+  static final String KAFKA_TAG = "kafka";
+
+  public enum Mode {
+
+    NONE, ATTRS, WRAPPER;
+
+    public static Mode from(String label) {
+      return valueOf(label.trim().toUpperCase(Locale.ROOT));
+    }
+
+  }
+
+  private final Mode mode;
+
+  TraceMetadata(Mode mode) {
+    this.mode = mode;
+  }
+
+  boolean isEnabled() {
+    return this.mode != Mode.NONE;
+  }
+
+  /**
+   * Returns the command body with the metadata of the record attached, {@code enveloped} telling
+   * whether it is the {@code @update} or {@code @remove} envelope of a map or list lane.
+   */
+  Value attach(Value body, boolean enveloped, SinkRecord record) {
+    if (this.mode == Mode.NONE) {
+      return body;
+    } else if (!enveloped) {
+      return attach(body, metadata(record));
+    }
+    if (!"update".equals(body.tag())) {
+      return body;
+    }
+    return Record.create(1).attr("update", body.header("update")).concat(attach(body.body(), metadata(record)));
+  }
+
+  private Value attach(Value value, Record metadata) {
+    if (this.mode == Mode.WRAPPER) {
+      return Record.create(2).slot(KAFKA_TAG, metadata).slot("value", value);
+    }
+    return Record.create(1).attr(KAFKA_TAG, metadata).concat(value);
+  }
+
+  static Record metadata(SinkRecord record) {
+    final Record metadata = Record.create(4).slot("topic", record.topic())
+          .slot("partition", record.kafkaPartition() != null ? record.kafkaPartition() : -1)
+          .slot("offset", record.kafkaOffset());
+    if (record.timestamp() != null) {
+      metadata.slot("timestamp", record.timestamp());
+    }
+    return metadata;
+  }
+
+}
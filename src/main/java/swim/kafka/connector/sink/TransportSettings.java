@@ -0,0 +1,113 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import swim.client.ClientRuntime;
+import swim.concurrent.Theater;
+import swim.io.IpSettings;
+import swim.io.TcpSettings;
+import swim.io.http.HttpEndpoint;
+import swim.io.http.HttpSettings;
+import swim.io.warp.WarpSettings;
+import swim.io.ws.WsSettings;
+
+/**
+ * Client side WARP transport settings of the Swim client runtime of a task. A compression level,
+ * frame size or buffer size of {@code -1} keeps the default of the Swim client.
+ */
+public final class TransportSettings {
+
+  public static final int DEFAULT = -1;
+
+  private final int compressionLevel;
+  private final int maxFrameSize;
+  private final int sendBufferSize;
+  private final int receiveBufferSize;
+  private final boolean tcpNoDelay;
+
+  public TransportSettings(int compressionLevel, int maxFrameSize, int sendBufferSize,
+                           int receiveBufferSize, boolean tcpNoDelay) {
+    this.compressionLevel = compressionLevel;
+    this.maxFrameSize = maxFrameSize;
+    this.sendBufferSize = sendBufferSize;
+    this.receiveBufferSize = receiveBufferSize;
+    this.tcpNoDelay = tcpNoDelay;
+  }
+
+  public int getCompressionLevel() {
+    return this.compressionLevel;
+  }
+
+  public int getMaxFrameSize() {
+    return this.maxFrameSize;
+  }
+
+  public int getSendBufferSize() {
+    return this.sendBufferSize;
+  }
+
+  public int getReceiveBufferSize() {
+    return this.receiveBufferSize;
+  }
+
+  public boolean isTcpNoDelay() {
+    return this.tcpNoDelay;
+  }
+
+  public boolean isDefault() {
+    return this.compressionLevel == DEFAULT && this.maxFrameSize == DEFAULT && this.sendBufferSize == DEFAULT
+          && this.receiveBufferSize == DEFAULT && this.tcpNoDelay;
+  }
+
+  /**
+   * Returns a new, unstarted, client runtime that connects with these settings.
+   */
+  public ClientRuntime createClientRuntime() {
+    if (isDefault()) {
+      return new ClientRuntime();
+    }
+    TcpSettings tcpSettings = TcpSettings.standard().noDelay(this.tcpNoDelay);
+    if (this.sendBufferSize != DEFAULT) {
+      tcpSettings = tcpSettings.sendBufferSize(this.sendBufferSize);
+    }
+    if (this.receiveBufferSize != DEFAULT) {
+      tcpSettings = tcpSettings.receiveBufferSize(this.receiveBufferSize);
+    }
+    WsSettings wsSettings = WsSettings.standard();
+    if (this.compressionLevel != DEFAULT) {
+      // Offer permessage-deflate at the same level in both directions, 0 turns it off
+      wsSettings = wsSettings.clientCompressionLevel(this.compressionLevel)
+            .serverCompressionLevel(this.compressionLevel);
+    }
+    if (this.maxFrameSize != DEFAULT) {
+      wsSettings = wsSettings.maxFrameSize(this.maxFrameSize);
+    }
+    final HttpSettings httpSettings = HttpSettings.standard()
+          .ipSettings(IpSettings.standard().tcpSettings(tcpSettings));
+    final WarpSettings warpSettings = WarpSettings.standard().httpSettings(httpSettings).wsSettings(wsSettings);
+    final Theater stage = new Theater("SwimKafkaSink");
+    final ClientRuntime runtime = new ClientRuntime(stage, new HttpEndpoint(stage, httpSettings));
+    runtime.warpSettings(warpSettings);
+    return runtime;
+  }
+
+  // Runtimes are only shared between tasks that connect with the same settings
+  @Override
+  public String toString() {
+    return "TransportSettings(" + this.compressionLevel + ", " + this.maxFrameSize + ", " + this.sendBufferSize
+          + ", " + this.receiveBufferSize + ", " + this.tcpNoDelay + ")";
+  }
+
+}
@@ -0,0 +1,73 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import org.testng.annotations.Test;
+import swim.client.ClientRuntime;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class ClientRuntimeRegistrySpec {
+
+  @Test
+  public void shareRuntimeUntilLastRelease() {
+    final String key = "shareRuntimeUntilLastRelease";
+    final CountingClientRuntime runtime = (CountingClientRuntime) ClientRuntimeRegistry.acquire(key,
+          CountingClientRuntime::new);
+    assertSame(ClientRuntimeRegistry.acquire(key, CountingClientRuntime::new), runtime);
+    assertEquals(runtime.starts, 1);
+    assertEquals(ClientRuntimeRegistry.refCount(key), 2);
+
+    ClientRuntimeRegistry.release(key);
+    assertEquals(runtime.stops, 0);
+    ClientRuntimeRegistry.release(key);
+    assertEquals(runtime.stops, 1);
+    assertEquals(ClientRuntimeRegistry.refCount(key), 0);
+
+    // a released key is not stopped twice, and a new acquire gets a new runtime
+    ClientRuntimeRegistry.release(key);
+    assertEquals(runtime.stops, 1);
+    assertNotSame(ClientRuntimeRegistry.acquire(key, CountingClientRuntime::new), runtime);
+    ClientRuntimeRegistry.release(key);
+  }
+
+  @Test
+  public void separateRuntimesPerKey() {
+    final ClientRuntime runtime1 = ClientRuntimeRegistry.acquire("separateRuntimesPerKey1", CountingClientRuntime::new);
+    final ClientRuntime runtime2 = ClientRuntimeRegistry.acquire("separateRuntimesPerKey2", CountingClientRuntime::new);
+    assertNotSame(runtime1, runtime2);
+    ClientRuntimeRegistry.release("separateRuntimesPerKey1");
+    ClientRuntimeRegistry.release("separateRuntimesPerKey2");
+  }
+
+  static final class CountingClientRuntime extends ClientRuntime {
+
+    int starts;
+    int stops;
+
+    @Override
+    public void start() {
+      this.starts += 1;
+    }
+
+    @Override
+    public void stop() {
+      this.stops += 1;
+    }
+
+  }
+
+}
@@ -0,0 +1,326 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.testng.annotations.Test;
+import swim.client.ClientRuntime;
+import swim.concurrent.Cont;
+import swim.structure.Num;
+import swim.structure.Text;
+import swim.structure.Value;
+import swim.uri.Uri;
+import swim.warp.CommandMessage;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class CommandPipelineSpec {
+
+  private static final TopicPartition PARTITION = new TopicPartition("test-topic", 1);
+  private static final Uri HOST_URI = Uri.parse("warp://localhost:9001");
+  private static final Uri LANE_URI = Uri.parse("latest");
+
+  @Test
+  public void dispatchWithinLimits() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 0L, false, false, null, null, null);
+    enqueue(pipeline, 0L, 3);
+    assertTrue(pipeline.dispatch(false, 0L));
+    assertEquals(swimRef.commands.size(), 3);
+    assertEquals(pipeline.inFlightRecords(), 3);
+  }
+
+  @Test
+  public void blockOnFullPipeline() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 2, 0L, 0L, false, false, null, null, null);
+    enqueue(pipeline, 0L, 3);
+    assertFalse(pipeline.dispatch(false, 0L));
+    assertEquals(swimRef.commands.size(), 2);
+    assertEquals(pipeline.pendingRecords(), 1);
+
+    swimRef.write(0);
+    assertTrue(pipeline.dispatch(false, 0L));
+    assertEquals(swimRef.commands.size(), 3);
+    assertEquals(pipeline.pendingRecords(), 0);
+  }
+
+  @Test
+  public void keepRateTokensWhilePipelineIsFull() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    // A bucket of two tokens that barely refills during the test
+    final SendRateController rateController = new SendRateController(20.0, 20.0, 0.0, 0.5, 100L, 60000L);
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 1, 0L, 0L, false, false, null, rateController, null);
+    enqueue(pipeline, 0L, 3);
+    assertFalse(pipeline.dispatch(false, 0L));
+    assertFalse(pipeline.dispatch(false, 0L));
+    assertEquals(swimRef.commands.size(), 1);
+    swimRef.write(0);
+    assertFalse(pipeline.dispatch(false, 0L));
+    assertEquals(swimRef.commands.size(), 2);
+  }
+
+  @Test
+  public void lingerBeforeDispatch() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 60000L, false, false, null, null, null);
+    enqueue(pipeline, 0L, 3);
+    assertTrue(pipeline.dispatch(false, 0L));
+    assertEquals(swimRef.commands.size(), 0);
+    assertTrue(pipeline.dispatch(true, 0L));
+    assertEquals(swimRef.commands.size(), 3);
+  }
+
+  @Test
+  public void commitOnlyWrittenOffsets() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 0L, false, false, null, null, null);
+    enqueue(pipeline, 100L, 3);
+    pipeline.dispatch(false, 0L);
+    final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    currentOffsets.put(PARTITION, new OffsetAndMetadata(103L));
+
+    assertTrue(pipeline.committableOffsets(currentOffsets).isEmpty());
+    swimRef.write(1);
+    assertTrue(pipeline.committableOffsets(currentOffsets).isEmpty());
+    swimRef.write(0);
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION), new OffsetAndMetadata(102L));
+    swimRef.write(2);
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION), new OffsetAndMetadata(103L));
+  }
+
+  @Test
+  public void commitRecordsSentToSeveralLanes() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 0L, false, false, null, null, null);
+    pipeline.enqueue(PARTITION, 0L, HOST_URI, Uri.parse("/device/0"), LANE_URI, Num.from(0));
+    pipeline.enqueue(PARTITION, 0L, HOST_URI, Uri.parse("/region/0"), LANE_URI, Num.from(0));
+    pipeline.enqueue(PARTITION, 1L, HOST_URI, Uri.parse("/device/1"), LANE_URI, Num.from(1));
+    pipeline.enqueue(PARTITION, 1L, HOST_URI, Uri.parse("/region/0"), LANE_URI, Num.from(1));
+    pipeline.dispatch(false, 0L);
+    final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    currentOffsets.put(PARTITION, new OffsetAndMetadata(2L));
+    swimRef.write(0);
+    assertTrue(pipeline.committableOffsets(currentOffsets).isEmpty());
+    swimRef.write(1);
+    swimRef.write(2);
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION), new OffsetAndMetadata(1L));
+    swimRef.write(3);
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION), new OffsetAndMetadata(2L));
+  }
+
+  @Test
+  public void rewindFailedCommands() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 0L, false, false, null, null, null);
+    enqueue(pipeline, 0L, 1);
+    pipeline.dispatch(false, 0L);
+    swimRef.fail(0);
+    assertEquals(pipeline.inFlightRecords(), 0);
+    assertFalse(pipeline.flush(10L));
+
+    // the failed command is not re-sent, its partition is re-consumed from its offset instead
+    assertTrue(pipeline.dispatch(false, 0L));
+    assertEquals(swimRef.commands.size(), 1);
+    assertEquals(pipeline.rewindFailed().get(PARTITION), Long.valueOf(0L));
+    assertTrue(pipeline.rewindFailed().isEmpty());
+    final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    currentOffsets.put(PARTITION, new OffsetAndMetadata(1L));
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION).offset(), 0L);
+  }
+
+  @Test
+  public void keepLaneOrderWhenRewinding() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 0L, false, false, null, null, null);
+    final Uri agentUri = Uri.parse("/agent/0");
+    pipeline.enqueue(PARTITION, 0L, HOST_URI, agentUri, LANE_URI, Num.from(0));
+    pipeline.enqueue(PARTITION, 1L, HOST_URI, agentUri, LANE_URI, Num.from(1));
+    assertTrue(pipeline.dispatch(false, 0L));
+    swimRef.fail(0);
+    swimRef.write(1);
+    // a command consumed before the rewind is applied is dropped along with the failed one
+    pipeline.enqueue(PARTITION, 2L, HOST_URI, agentUri, LANE_URI, Num.from(2));
+    assertEquals(pipeline.rewindFailed().get(PARTITION), Long.valueOf(0L));
+    assertTrue(pipeline.dispatch(false, 0L));
+    assertEquals(swimRef.commands.size(), 2);
+
+    // the records are re-consumed from the failed offset, in order
+    for (long offset = 0L; offset < 3L; offset += 1L) {
+      pipeline.enqueue(PARTITION, offset, HOST_URI, agentUri, LANE_URI, Num.from(offset));
+    }
+    assertTrue(pipeline.dispatch(false, 0L));
+    for (int i = 2; i < 5; i += 1) {
+      swimRef.write(i);
+    }
+    assertEquals(swimRef.written.get(agentUri), Num.from(2L));
+    final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    currentOffsets.put(PARTITION, new OffsetAndMetadata(3L));
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION).offset(), 3L);
+  }
+
+  @Test
+  public void dropCommandsOfClosedPartitions() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 60000L, false, true, null, null, null);
+    final TopicPartition other = new TopicPartition("test-topic", 2);
+    pipeline.enqueue(PARTITION, 0L, HOST_URI, Uri.parse("/agent/0"), LANE_URI, Num.from(0));
+    assertTrue(pipeline.dispatch(true, 0L));
+    pipeline.enqueue(PARTITION, 1L, HOST_URI, Uri.parse("/agent/1"), LANE_URI, Num.from(1));
+    pipeline.enqueue(other, 0L, HOST_URI, Uri.parse("/agent/2"), LANE_URI, Num.from(2));
+    assertTrue(pipeline.dispatch(false, 0L));
+    assertEquals(pipeline.pendingRecords(), 2);
+
+    pipeline.close(Collections.singletonList(PARTITION));
+    assertEquals(pipeline.pendingRecords(), 1);
+    // the partition is now owned by another task, its commands are neither sent nor rewound
+    swimRef.fail(0);
+    assertTrue(pipeline.rewindFailed().isEmpty());
+    pipeline.enqueue(other, 1L, HOST_URI, Uri.parse("/agent/1"), LANE_URI, Num.from(3));
+    assertTrue(pipeline.dispatch(true, 0L));
+    assertEquals(swimRef.commands.size(), 3);
+    assertEquals(swimRef.commands.get(1).body, Num.from(2));
+    assertEquals(swimRef.commands.get(2).body, Num.from(3));
+  }
+
+  @Test
+  public void forgetCommandsWhenCleared() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 1, 0L, 0L, false, false, null, null, null);
+    enqueue(pipeline, 0L, 2);
+    assertFalse(pipeline.dispatch(false, 0L));
+    pipeline.clear();
+    assertEquals(pipeline.pendingRecords(), 0);
+    // callbacks of the commands still in flight no longer affect the pipeline
+    swimRef.fail(0);
+    assertTrue(pipeline.rewindFailed().isEmpty());
+    assertTrue(pipeline.flush(10L));
+    assertEquals(swimRef.commands.size(), 1);
+  }
+
+  @Test
+  public void flushTimesOutWhileInFlight() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 0L, false, false, null, null, null);
+    enqueue(pipeline, 0L, 1);
+    assertFalse(pipeline.flush(10L));
+    swimRef.write(0);
+    assertTrue(pipeline.flush(10L));
+  }
+
+  @Test
+  public void coalesceLatestValuePerLane() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 60000L, false, true, null, null, null);
+    final Uri agentUri = Uri.parse("/agent/0");
+    pipeline.enqueue(PARTITION, 0L, HOST_URI, agentUri, LANE_URI, Num.from(0));
+    pipeline.enqueue(PARTITION, 1L, HOST_URI, Uri.parse("/agent/1"), LANE_URI, Num.from(1));
+    pipeline.enqueue(PARTITION, 2L, HOST_URI, agentUri, LANE_URI, Num.from(2));
+    pipeline.enqueue(PARTITION, 3L, HOST_URI, agentUri, Uri.parse("other"), Num.from(3));
+    assertTrue(pipeline.dispatch(true, 0L));
+    assertEquals(pipeline.coalescedRecords(), 1L);
+    assertEquals(swimRef.commands.size(), 3);
+    assertEquals(swimRef.commands.get(0).body, Num.from(1));
+    assertEquals(swimRef.commands.get(1).body, Num.from(2));
+
+    // the replaced command is acknowledged, the offsets advance as the others are written
+    final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    currentOffsets.put(PARTITION, new OffsetAndMetadata(4L));
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION).offset(), 1L);
+    swimRef.write(0);
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION).offset(), 2L);
+    swimRef.write(1);
+    swimRef.write(2);
+    assertEquals(pipeline.committableOffsets(currentOffsets).get(PARTITION).offset(), 4L);
+
+    // commands already dispatched are not replaced
+    pipeline.enqueue(PARTITION, 4L, HOST_URI, agentUri, LANE_URI, Num.from(4));
+    assertTrue(pipeline.dispatch(true, 0L));
+    assertEquals(swimRef.commands.size(), 4);
+    assertEquals(pipeline.coalescedRecords(), 1L);
+  }
+
+  @Test
+  public void coalesceLatestValuePerMapEntry() {
+    final StubClientRuntime swimRef = new StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 60000L, false, true, null, null, null);
+    final Uri agentUri = Uri.parse("/agent/0");
+    pipeline.enqueue(PARTITION, 0L, HOST_URI, agentUri, LANE_URI, Num.from(0), Text.from("a"));
+    pipeline.enqueue(PARTITION, 1L, HOST_URI, agentUri, LANE_URI, Num.from(1), Text.from("b"));
+    pipeline.enqueue(PARTITION, 2L, HOST_URI, agentUri, LANE_URI, Num.from(2), Text.from("a"));
+    // commands without an entry key are never replaced
+    pipeline.enqueue(PARTITION, 3L, HOST_URI, agentUri, LANE_URI, Num.from(3), null);
+    pipeline.enqueue(PARTITION, 4L, HOST_URI, agentUri, LANE_URI, Num.from(4), null);
+    assertTrue(pipeline.dispatch(true, 0L));
+    assertEquals(pipeline.coalescedRecords(), 1L);
+    assertEquals(swimRef.commands.size(), 4);
+    assertEquals(swimRef.commands.get(0).body, Num.from(1));
+    assertEquals(swimRef.commands.get(1).body, Num.from(2));
+    assertEquals(swimRef.commands.get(2).body, Num.from(3));
+  }
+
+  private void enqueue(CommandPipeline pipeline, long firstOffset, int count) {
+    for (int i = 0; i < count; i += 1) {
+      pipeline.enqueue(PARTITION, firstOffset + i, HOST_URI, Uri.parse("/agent/" + i), LANE_URI, Num.from(i));
+    }
+  }
+
+  static final class StubCommand {
+
+    final Uri nodeUri;
+    final Uri laneUri;
+    final Value body;
+    final Cont<CommandMessage> cont;
+
+    StubCommand(Uri nodeUri, Uri laneUri, Value body, Cont<CommandMessage> cont) {
+      this.nodeUri = nodeUri;
+      this.laneUri = laneUri;
+      this.body = body;
+      this.cont = cont;
+    }
+
+  }
+
+  static final class StubClientRuntime extends ClientRuntime {
+
+    final List<StubCommand> commands = new ArrayList<>();
+    // The last body written to each agent
+    final Map<Uri, Value> written = new HashMap<>();
+
+    @Override
+    public void command(Uri hostUri, Uri nodeUri, Uri laneUri, float prio, Value body, Cont<CommandMessage> cont) {
+      this.commands.add(new StubCommand(nodeUri, laneUri, body, cont));
+    }
+
+    void write(int index) {
+      final StubCommand command = this.commands.get(index);
+      this.written.put(command.nodeUri, command.body);
+      command.cont.bind(new CommandMessage(command.nodeUri, command.laneUri, command.body));
+    }
+
+    void fail(int index) {
+      this.commands.get(index).cont.trap(new Exception("connection closed"));
+    }
+
+  }
+
+}
@@ -0,0 +1,86 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class ConversionPoolSpec {
+
+  @Test
+  public void convertEveryIndexOnce() {
+    final AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+    final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    ConversionPool.forEach(1000, 4, 10, index -> {
+      visits.incrementAndGet(index);
+      threads.add(Thread.currentThread());
+    });
+    for (int i = 0; i < 1000; i += 1) {
+      assertEquals(visits.get(i), 1);
+    }
+    assertTrue(threads.contains(Thread.currentThread()));
+  }
+
+  @Test
+  public void convertSmallBatchesOnCallingThread() {
+    final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    ConversionPool.forEach(10, 4, 64, index -> threads.add(Thread.currentThread()));
+    assertEquals(threads.size(), 1);
+    assertTrue(threads.contains(Thread.currentThread()));
+  }
+
+  @Test
+  public void rethrowConversionErrors() {
+    final AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+    assertThrows(IllegalStateException.class, () -> ConversionPool.forEach(1000, 4, 10, index -> {
+      visits.incrementAndGet(index);
+      if (index == 500) {
+        throw new IllegalStateException("bad record");
+      }
+    }));
+    // the other chunks still ran to completion
+    assertEquals(visits.get(0), 1);
+    assertEquals(visits.get(999), 1);
+  }
+
+  @Test
+  public void waitForEveryChunkWhenInterrupted() {
+    final Thread caller = Thread.currentThread();
+    final AtomicIntegerArray visits = new AtomicIntegerArray(100);
+    caller.interrupt();
+    try {
+      ConversionPool.forEach(100, 4, 10, index -> {
+        if (Thread.currentThread() != caller) {
+          // outlast the chunk of the interrupted task thread
+          LockSupport.parkNanos(1000000L);
+        }
+        visits.incrementAndGet(index);
+      });
+    } finally {
+      // the interrupt is kept for the task thread to handle
+      assertTrue(Thread.interrupted());
+    }
+    for (int i = 0; i < 100; i += 1) {
+      assertEquals(visits.get(i), 1);
+    }
+  }
+
+}
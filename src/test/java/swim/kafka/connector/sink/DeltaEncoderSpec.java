@@ -0,0 +1,72 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import org.testng.annotations.Test;
+import swim.structure.Record;
+import swim.structure.Text;
+import swim.structure.Value;
+import swim.uri.Uri;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class DeltaEncoderSpec {
+
+  private static final Uri NODE_URI = Uri.parse("/agent/device-1");
+  private static final Uri LANE_URI = Uri.parse("latest");
+
+  @Test
+  public void sendChangedSlots() {
+    final DeltaEncoder encoder = new DeltaEncoder(10, 60000L);
+    final Value first = Record.create(4).slot("a", 1).slot("b", 1).slot("c", 1).slot("d", 1);
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, first, 0L), first);
+
+    final Value second = Record.create(4).slot("a", 2).slot("b", 1).slot("c", 1).slot("d", 1);
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, second, 1L), Record.create(2).attr("patch").slot("a", 2));
+
+    final Value third = Record.create(3).slot("a", 2).slot("b", 2).slot("c", 1);
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, third, 2L),
+          Record.create(2).attr("patch", Record.create(1).slot("remove", Record.create(1).item("d"))).slot("b", 2));
+
+    assertNull(encoder.encode(NODE_URI, LANE_URI, third, 3L));
+    assertEquals(encoder.fullValues(), 1L);
+    assertEquals(encoder.patches(), 2L);
+    assertEquals(encoder.unchangedValues(), 1L);
+  }
+
+  @Test
+  public void sendFullValues() {
+    final DeltaEncoder encoder = new DeltaEncoder(1, 1000L);
+    final Value first = Record.create(3).slot("a", 1).slot("b", 1).slot("c", 1);
+    final Value second = Record.create(3).slot("a", 2).slot("b", 1).slot("c", 1);
+    encoder.encode(NODE_URI, LANE_URI, first, 0L);
+    // Once per resync interval
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, second, 1000L), second);
+    // When the patch is not smaller than the value
+    final Value changed = Record.create(3).slot("a", 3).slot("b", 3).slot("c", 3);
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, changed, 1001L), changed);
+    // After eviction
+    encoder.encode(Uri.parse("/agent/device-2"), LANE_URI, first, 1002L);
+    assertEquals(encoder.cachedLanes(), 1);
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, first, 1003L), first);
+    // For values that are not records of distinct slots
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, Text.from("on"), 1004L), Text.from("on"));
+    final Value items = Record.create(2).item(1).item(2);
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, items, 1005L), items);
+    assertEquals(encoder.encode(NODE_URI, LANE_URI, items, 1006L), items);
+    assertEquals(encoder.patches(), 0L);
+  }
+
+}
@@ -0,0 +1,67 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.ErrantRecordReporter;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.testng.annotations.Test;
+import swim.uri.Uri;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class ErrantRecordHandlerSpec {
+
+  private static final SinkRecord RECORD = new SinkRecord("test-topic", 1, null, "key", null, "value", 42L);
+  private static final DataException ERROR = new DataException("No agent uri");
+
+  @Test
+  public void handleLocally() {
+    assertThrows(ConnectException.class, () -> makeHandler(ErrantRecordHandler.Action.FAIL, null).handle(RECORD, ERROR));
+    assertFalse(makeHandler(ErrantRecordHandler.Action.SKIP, null).handle(RECORD, ERROR));
+    assertFalse(makeHandler(ErrantRecordHandler.Action.LOG, null).handle(RECORD, ERROR));
+    assertTrue(makeHandler(ErrantRecordHandler.Action.FALLBACK, null).handle(RECORD, ERROR));
+  }
+
+  @Test
+  public void reportToConnect() {
+    final List<SinkRecord> reported = new ArrayList<>();
+    final ErrantRecordReporter reporter = (record, error) -> {
+      reported.add(record);
+      return CompletableFuture.completedFuture(null);
+    };
+    // Connect tolerates the errors, so the task does not fail
+    assertFalse(makeHandler(ErrantRecordHandler.Action.FAIL, reporter).handle(RECORD, ERROR));
+    assertTrue(makeHandler(ErrantRecordHandler.Action.FALLBACK, reporter).handle(RECORD, ERROR));
+    assertEquals(reported.size(), 2);
+  }
+
+  @Test
+  public void actionFromLabel() {
+    assertEquals(ErrantRecordHandler.Action.from("log"), ErrantRecordHandler.Action.LOG);
+    assertEquals(ErrantRecordHandler.Action.from(" Fallback"), ErrantRecordHandler.Action.FALLBACK);
+  }
+
+  private static ErrantRecordHandler makeHandler(ErrantRecordHandler.Action action, ErrantRecordReporter reporter) {
+    return new ErrantRecordHandler(action, Uri.parse("/errors"), 1000L, reporter);
+  }
+
+}
@@ -0,0 +1,55 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.Arrays;
+import java.util.List;
+import org.testng.annotations.Test;
+import swim.client.ClientRuntime;
+import swim.uri.Uri;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class HostAffinitySpec {
+
+  private static final List<Uri> HOST_URIS = Arrays.asList(Uri.parse("warp://node0:9001"),
+        Uri.parse("warp://node1:9001"), Uri.parse("warp://node2:9001"));
+
+  @Test
+  public void handOffToOwnerTask() {
+    final String connectorKey = "handOffToOwnerTask";
+    final ClientRuntime ownRef = ClientRuntimeRegistry.acquire(HostAffinity.runtimeKey(connectorKey, 0),
+          ClientRuntime::new);
+    final HostAffinity hostAffinity = new HostAffinity(connectorKey, 0, 2, HOST_URIS, ownRef);
+    hostAffinity.resolveOwners();
+    // node1 is owned by task 1, which has not started yet
+    assertSame(hostAffinity.refFor(HOST_URIS.get(1)), ownRef);
+
+    final String ownerKey = HostAffinity.runtimeKey(connectorKey, 1);
+    final ClientRuntime ownerRef = ClientRuntimeRegistry.acquire(ownerKey, ClientRuntime::new);
+    hostAffinity.resolveOwners();
+    assertSame(hostAffinity.refFor(HOST_URIS.get(0)), ownRef);
+    assertSame(hostAffinity.refFor(HOST_URIS.get(1)), ownerRef);
+    assertSame(hostAffinity.refFor(HOST_URIS.get(2)), ownRef);
+    assertSame(hostAffinity.refFor(Uri.parse("warp://unknown:9001")), ownRef);
+    assertEquals(ClientRuntimeRegistry.refCount(ownerKey), 2);
+
+    hostAffinity.release();
+    assertEquals(ClientRuntimeRegistry.refCount(ownerKey), 1);
+    ClientRuntimeRegistry.release(ownerKey);
+    ClientRuntimeRegistry.release(HostAffinity.runtimeKey(connectorKey, 0));
+  }
+
+}
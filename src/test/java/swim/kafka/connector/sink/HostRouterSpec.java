@@ -0,0 +1,95 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.testng.annotations.Test;
+import swim.uri.Uri;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class HostRouterSpec {
+
+  private static final Uri NODE1 = Uri.parse("warp://node1:9001");
+  private static final Uri NODE2 = Uri.parse("warp://node2:9001");
+  private static final Uri NODE3 = Uri.parse("warp://node3:9001");
+  private static final Uri NODE4 = Uri.parse("warp://node4:9001");
+
+  @Test
+  public void routeToSingleHost() {
+    final HostRouter router = HostRouter.of(NODE1);
+    assertEquals(router.route(Uri.parse("/agent/1")), NODE1);
+    assertEquals(router.hostCount(), 1);
+  }
+
+  @Test
+  public void spreadAgentsOverHosts() {
+    final HostRouter router = new HostRouter(Arrays.asList(NODE1, NODE2, NODE3, NODE4));
+    final Map<Uri, Integer> counts = new HashMap<>();
+    for (int i = 0; i < 10000; i += 1) {
+      final Uri agentUri = Uri.parse("/agent/" + i);
+      final Uri hostUri = router.route(agentUri);
+      assertEquals(router.route(agentUri), hostUri);
+      counts.merge(hostUri, 1, Integer::sum);
+    }
+    assertEquals(counts.size(), 4);
+    for (int count : counts.values()) {
+      assertTrue(count > 2000 && count < 3000, "Unbalanced hosts " + counts);
+    }
+  }
+
+  @Test
+  public void onlyMoveAgentsOfChangedHosts() {
+    final List<Uri> hostUris = Arrays.asList(NODE1, NODE2, NODE3);
+    final HostRouter router = new HostRouter(hostUris);
+    // host order does not matter
+    final HostRouter reordered = new HostRouter(Arrays.asList(NODE3, NODE1, NODE2));
+    final HostRouter added = new HostRouter(Arrays.asList(NODE1, NODE2, NODE3, NODE4));
+    final HostRouter removed = new HostRouter(Arrays.asList(NODE1, NODE3));
+    int moved = 0;
+    for (int i = 0; i < 10000; i += 1) {
+      final Uri agentUri = Uri.parse("/agent/" + i);
+      final Uri hostUri = router.route(agentUri);
+      assertEquals(reordered.route(agentUri), hostUri);
+      final Uri addedHostUri = added.route(agentUri);
+      if (!addedHostUri.equals(hostUri)) {
+        assertEquals(addedHostUri, NODE4);
+        moved += 1;
+      }
+      if (!hostUri.equals(NODE2)) {
+        assertEquals(removed.route(agentUri), hostUri);
+      }
+    }
+    assertTrue(moved > 2000 && moved < 3000, "Moved " + moved + " agents");
+  }
+
+  @Test
+  public void hashUtf8Bytes() {
+    for (String string : Arrays.asList("", "/agent/1", "/caf\u00e9/\u20ac", "/emoji/\ud83d\ude00", "/lone/\ud83d")) {
+      long hash = 0xcbf29ce484222325L;
+      for (byte b : string.getBytes(StandardCharsets.UTF_8)) {
+        hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+      }
+      assertEquals(HostRouter.hash(string), hash, string);
+    }
+    // "Aa" and "BB" share their String.hashCode
+    assertTrue(HostRouter.hash("/agent/Aa") != HostRouter.hash("/agent/BB"));
+  }
+
+}
@@ -0,0 +1,311 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.kafka.common.config.ConfigException;
+import org.testng.annotations.Test;
+import swim.kafka.connector.id.AgentIdSource;
+import swim.structure.Num;
+import swim.structure.Record;
+import swim.structure.Selector;
+import swim.structure.Text;
+import swim.structure.Value;
+import swim.uri.Uri;
+import swim.uri.UriPattern;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_EXTRACTOR_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_HEADER_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_SOURCE_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_URI_PATTERN_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_HOST_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_KEY_EXTRACTOR_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_KEY_SOURCE_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_TYPE_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_PROJECTION_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_ROUTES_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP;
+
+public class RoutingPlanSpec {
+
+  @Test
+  public void fromConfig() {
+    final RoutingPlan plan = RoutingPlan.from(makeConfig("warp://localhost:9001", "/agent/:id", "latest", "$id"));
+    assertEquals(plan.getHostUri(), Uri.parse("warp://localhost:9001"));
+    assertEquals(plan.getLaneUri(), Uri.parse("latest"));
+    assertEquals(plan.getAgentUriPattern(), UriPattern.parse("/agent/:id"));
+    assertEquals(plan.getAgentIdExtractor(), Selector.identity().get("id"));
+    assertTrue(plan.useValueForAgentId());
+  }
+
+  @Test
+  public void fromInvalidConfig() {
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(makeConfig("localhost:9001", "/agent/:id", "latest", "$id")));
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(makeConfig("warp://localhost:9001", "", "latest", "$id")));
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(makeConfig("warp://localhost:9001", "/agent/:id", "", "$id")));
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(makeConfig("warp://localhost:9001", "/agent/:id", "latest", "id")));
+  }
+
+  @Test
+  public void fromConfigWithRoutes() {
+    final Map<String, String> props = makeProps("warp://localhost:9001", "/device/:id", "latest", "$id");
+    props.put(SWIM_ROUTES_PROP, "region, raw");
+    props.put("swim.route.region.agent.uri.pattern", "/region/:id");
+    props.put("swim.route.region.agent.id.extractor", "$region");
+    props.put("swim.route.region.lane.uri", "readings");
+    props.put("swim.route.region.projection", "$reading");
+    props.put("swim.route.raw.agent.uri.pattern", "/raw/:id");
+    final RoutingPlan plan = RoutingPlan.from(new SwimSinkConfig(props));
+    assertEquals(plan.routeCount(), 3);
+    assertEquals(plan.getDefaultRoute().getAgentUriPattern(), UriPattern.parse("/device/:id"));
+    assertNull(plan.getDefaultRoute().getProjection());
+
+    final Route region = plan.getRoute(1);
+    assertEquals(region.getName(), "region");
+    assertEquals(region.getAgentUriPattern(), UriPattern.parse("/region/:id"));
+    assertEquals(region.getAgentIdExtractor(), Selector.identity().get("region"));
+    assertEquals(region.getLaneUri(), Uri.parse("readings"));
+    assertEquals(region.getProjection(), Selector.identity().get("reading"));
+    assertEquals(region.project(Record.create(2).slot("region", "west").slot("reading", 42)), Num.from(42));
+
+    // unset route properties default to those of the default route
+    final Route raw = plan.getRoute(2);
+    assertEquals(raw.getLaneUri(), Uri.parse("latest"));
+    assertEquals(raw.getAgentIdExtractor(), Selector.identity().get("id"));
+    assertTrue(raw.useValueForAgentId());
+  }
+
+  @Test
+  public void fromConfigWithAgentIdSources() {
+    final Map<String, String> props = makeProps("warp://localhost:9001", "/device/:id", "latest", "$id");
+    props.put(SWIM_AGENT_ID_SOURCE_PROP, "header");
+    props.put(SWIM_AGENT_ID_HEADER_PROP, "deviceId");
+    props.put(SWIM_ROUTES_PROP, "topic, value");
+    props.put("swim.route.topic.agent.uri.pattern", "/topic/:id");
+    props.put("swim.route.topic.agent.id.source", "topic");
+    props.put("swim.route.value.agent.uri.pattern", "/value/:id");
+    props.put("swim.route.value.use.value.field.for.agent.id", "true");
+    final RoutingPlan plan = RoutingPlan.from(new SwimSinkConfig(props));
+    assertEquals(plan.getDefaultRoute().getAgentIdSource(), AgentIdSource.HEADER);
+    assertEquals(plan.getDefaultRoute().getAgentIdHeader(), "deviceId");
+    assertEquals(plan.getRoute(1).getAgentIdSource(), AgentIdSource.TOPIC);
+    assertEquals(plan.getRoute(2).getAgentIdSource(), AgentIdSource.VALUE);
+    assertFalse(plan.needsKey());
+
+    props.put(SWIM_AGENT_ID_SOURCE_PROP, "key");
+    assertTrue(RoutingPlan.from(new SwimSinkConfig(props)).needsKey());
+    props.put(SWIM_AGENT_ID_SOURCE_PROP, "header");
+    props.remove(SWIM_AGENT_ID_HEADER_PROP);
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+    props.put(SWIM_AGENT_ID_SOURCE_PROP, "offset");
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+  }
+
+  @Test
+  public void fromConfigWithLaneTypes() {
+    final Map<String, String> props = makeProps("warp://localhost:9001", "/store/:id", "inventory", "$store");
+    props.put(SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP, "false");
+    props.put(SWIM_LANE_TYPE_PROP, "map");
+    props.put(SWIM_LANE_KEY_EXTRACTOR_PROP, "$sku");
+    props.put(SWIM_ROUTES_PROP, "latest, history");
+    props.put("swim.route.latest.agent.uri.pattern", "/item/:id");
+    props.put("swim.route.latest.lane.uri", "latest");
+    props.put("swim.route.latest.lane.type", "value");
+    props.put("swim.route.history.agent.uri.pattern", "/history/:id");
+    props.put("swim.route.history.lane.type", "list");
+    props.put("swim.route.history.lane.key.extractor", "$index");
+    final RoutingPlan plan = RoutingPlan.from(new SwimSinkConfig(props));
+    assertTrue(plan.needsKey());
+
+    final Route inventory = plan.getDefaultRoute();
+    assertEquals(inventory.getLaneType(), LaneType.MAP);
+    assertEquals(inventory.getLaneKeyExtractor(), Selector.identity().get("sku"));
+    final Value key = Record.create(3).slot("store", "s1").slot("sku", "a-42").slot("index", 3);
+    final Value update = inventory.envelope(inventory.laneKey(key, Num.from(7)), Num.from(7), false);
+    assertEquals(update, Record.create(2).attr("update", Record.create(1).slot("key", "a-42")).concat(Num.from(7)));
+    assertEquals(inventory.entryKey(update), Text.from("a-42"));
+    assertEquals(inventory.envelope(inventory.laneKey(key, (Value) null), Value.absent(), true),
+          Record.create(1).attr("remove", Record.create(1).slot("key", "a-42")));
+    // records without a lane key can not be sent to a map lane
+    assertNull(inventory.envelope(inventory.laneKey(Record.create(1).slot("store", "s1"), Num.from(7)), Num.from(7),
+          false));
+
+    final Route latest = plan.getRoute(1);
+    assertEquals(latest.getLaneType(), LaneType.VALUE);
+    assertEquals(latest.envelope(latest.laneKey(key, Num.from(7)), Num.from(7), false), Num.from(7));
+    assertEquals(latest.entryKey(Num.from(7)), Value.absent());
+
+    final Route history = plan.getRoute(2);
+    assertEquals(history.getLaneType(), LaneType.LIST);
+    assertEquals(history.envelope(history.laneKey(key, (Value) null), Value.absent(), true),
+          Record.create(1).attr("remove", Record.create(1).slot("index", 3)));
+    // list commands are never coalesced
+    assertNull(history.entryKey(history.envelope(history.laneKey(key, Num.from(7)), Num.from(7), false)));
+    // list indexes are non-negative integers, string keys are parsed
+    assertEquals(history.envelope(Text.from("5"), Num.from(7), false),
+          Record.create(2).attr("update", Record.create(1).slot("index", 5)).concat(Num.from(7)));
+    assertNull(history.envelope(Num.from(-1), Num.from(7), false));
+    assertNull(history.envelope(Num.from(2.5), Num.from(7), false));
+    assertNull(history.envelope(Text.from("a-42"), Num.from(7), false));
+    assertNull(history.envelope(Record.create(1).slot("index", 3), Value.absent(), true));
+
+    props.put("swim.route.history.lane.type", "set");
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+    props.put("swim.route.history.lane.type", "list");
+    props.put(SWIM_LANE_KEY_EXTRACTOR_PROP, "sku");
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+  }
+
+  @Test
+  public void fromConfigWithLaneKeysAndProjectionOfTheValue() {
+    final Map<String, String> props = makeProps("warp://localhost:9001", "/store/:id", "inventory", "$store");
+    props.put(SWIM_LANE_TYPE_PROP, "map");
+    props.put(SWIM_LANE_KEY_SOURCE_PROP, "value");
+    props.put(SWIM_LANE_KEY_EXTRACTOR_PROP, "$sku");
+    props.put(SWIM_PROJECTION_PROP, "$count");
+    props.put(SWIM_ROUTES_PROP, "keyed");
+    props.put("swim.route.keyed.agent.uri.pattern", "/keyed/:id");
+    props.put("swim.route.keyed.lane.key.source", "key");
+    final RoutingPlan plan = RoutingPlan.from(new SwimSinkConfig(props));
+    assertTrue(plan.needsKey());
+
+    final Route inventory = plan.getDefaultRoute();
+    assertTrue(inventory.useValueForLaneKey());
+    final Value value = Record.create(3).slot("store", "s1").slot("sku", "a-42").slot("count", 7);
+    final Value body = inventory.project(value);
+    assertEquals(body, Num.from(7));
+    assertEquals(inventory.envelope(inventory.laneKey(Value.absent(), value), body, false),
+          Record.create(2).attr("update", Record.create(1).slot("key", "a-42")).concat(Num.from(7)));
+    // tombstones have no value to take the lane key from, the entry of their whole key is removed
+    assertEquals(inventory.envelope(inventory.laneKey(Text.from("a-42"), (Value) null), Value.absent(), true),
+          Record.create(1).attr("remove", Record.create(1).slot("key", "a-42")));
+    assertNull(inventory.envelope(inventory.laneKey(Value.absent(), (Value) null), Value.absent(), true));
+    assertFalse(plan.getRoute(1).useValueForLaneKey());
+
+    props.remove("swim.route.keyed.lane.key.source");
+    assertFalse(RoutingPlan.from(new SwimSinkConfig(props)).needsKey());
+    assertFalse(RoutingPlan.from(new SwimSinkConfig(props)).needsKey(false));
+    assertTrue(RoutingPlan.from(new SwimSinkConfig(props)).needsKey(true));
+    props.put(SWIM_LANE_KEY_SOURCE_PROP, "header");
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+    props.put(SWIM_LANE_KEY_SOURCE_PROP, "value");
+    props.put(SwimSinkConfig.SWIM_VALUE_PASSTHROUGH_PROP, "true");
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+    props.remove(SWIM_PROJECTION_PROP);
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+  }
+
+  @Test
+  public void fromConfigWithLazyValues() {
+    final Map<String, String> props = makeProps("warp://localhost:9001", "/device/:id", "latest", "$device.id");
+    props.put(SWIM_ROUTES_PROP, "region, alert");
+    props.put("swim.route.region.agent.uri.pattern", "/region/:id");
+    props.put("swim.route.region.agent.id.extractor", "$region");
+    props.put("swim.route.region.projection", "$reading");
+    props.put("swim.route.alert.agent.uri.pattern", "/alert/:id");
+    props.put("swim.route.alert.projection", "$readings[0]");
+    assertNull(RoutingPlan.from(new SwimSinkConfig(props)).getAgentIdScanner());
+
+    props.put(SwimSinkConfig.SWIM_VALUE_LAZY_PROP, "true");
+    final RoutingPlan plan = RoutingPlan.from(new SwimSinkConfig(props));
+    assertEquals(plan.getAgentIdScanner().getPath(), new String[] {"device", "id"});
+    assertNull(plan.getDefaultRoute().getProjectionPath());
+    assertEquals(plan.getRoute(1).getAgentIdScanner().getPath(), new String[] {"region"});
+    assertEquals(plan.getRoute(1).getProjectionPath(), new String[] {"reading"});
+    // projections that are not field paths are evaluated against the whole value
+    assertNull(plan.getRoute(2).getProjectionPath());
+  }
+
+  @Test
+  public void fromInvalidRoutes() {
+    final Map<String, String> props = makeProps("warp://localhost:9001", "/device/:id", "latest", "$id");
+    props.put(SWIM_ROUTES_PROP, "region");
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+    props.put(SWIM_ROUTES_PROP, "region, region");
+    props.put("swim.route.region.agent.uri.pattern", "/region/:id");
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+    props.put(SWIM_ROUTES_PROP, "region.west");
+    assertThrows(ConfigException.class, () -> RoutingPlan.from(new SwimSinkConfig(props)));
+  }
+
+  @Test
+  public void fromTopicOverrides() {
+    final Map<String, String> props = makeProps("warp://localhost:9001", "/device/:id", "latest", "$id");
+    props.put(SwimSinkConfig.TOPICS_PROP, "devices, alerts");
+    props.put("topic.alerts.swim.lane.uri", "alerts");
+    props.put("topic.alerts.swim.agent.uri.pattern", "/alert/:id");
+    props.put(SwimSinkConfig.SWIM_TOPIC_GROUPS_PROP, "telemetry");
+    props.put("topic.group.telemetry.regex", "telemetry-.*");
+    props.put("topic.group.telemetry.swim.lane.uri", "readings");
+    props.put("topic.telemetry-eu.swim.host.uri", "warp://eu:9001");
+    final TopicRoutingPlans plans = new TopicRoutingPlans(new SwimSinkConfig(props));
+    assertSame(plans.get("devices"), plans.getDefaultPlan());
+    assertSame(plans.get("other"), plans.getDefaultPlan());
+    assertEquals(plans.get("alerts").getLaneUri(), Uri.parse("alerts"));
+    assertEquals(plans.get("alerts").getAgentUriPattern(), UriPattern.parse("/alert/:id"));
+    assertEquals(plans.get("telemetry-us").getLaneUri(), Uri.parse("readings"));
+    assertSame(plans.get("telemetry-us"), plans.get("telemetry-asia"));
+    // topic overrides apply over those of the group
+    assertEquals(plans.get("telemetry-eu").getLaneUri(), Uri.parse("readings"));
+    assertEquals(plans.get("telemetry-eu").getHostUri(), Uri.parse("warp://eu:9001"));
+
+    props.put("topic.alerts.swim.lane.uri", "");
+    props.put("topic.alerts.swim.agent.uri.pattern", "alert");
+    assertThrows(ConfigException.class, () -> new TopicRoutingPlans(new SwimSinkConfig(props)));
+    props.remove("topic.alerts.swim.agent.uri.pattern");
+    props.put("topic.group.telemetry.regex", "telemetry-(");
+    assertThrows(ConfigException.class, () -> new TopicRoutingPlans(new SwimSinkConfig(props)));
+    props.put("topic.group.telemetry.regex", "telemetry-.*");
+    props.put("topic.alerts.swim.lane.uri", "alerts");
+
+    // only the routing properties can be overridden
+    props.put("topic.alerts.swim.value.passthrough", "true");
+    assertThrows(ConfigException.class, () -> new TopicRoutingPlans(new SwimSinkConfig(props)));
+    props.remove("topic.alerts.swim.value.passthrough");
+    props.put("topic.group.telemetry.swim.delta.enabled", "true");
+    assertThrows(ConfigException.class, () -> new TopicRoutingPlans(new SwimSinkConfig(props)));
+    props.remove("topic.group.telemetry.swim.delta.enabled");
+    props.put("topic.alerts.swim.route.history.lane.uri", "history");
+    final TopicRoutingPlans routed = new TopicRoutingPlans(new SwimSinkConfig(props));
+    assertEquals(routed.get("alerts").getLaneUri(), Uri.parse("alerts"));
+
+    // the overrides of a topic named after a group would be those of the group
+    assertThrows(ConfigException.class, () -> routed.get("group.telemetry"));
+    props.put(SwimSinkConfig.TOPICS_PROP, "devices, group.telemetry");
+    assertThrows(ConfigException.class, () -> new TopicRoutingPlans(new SwimSinkConfig(props)));
+  }
+
+  private SwimSinkConfig makeConfig(String hostUri, String agentUriPattern, String laneUri, String agentIdExtractor) {
+    return new SwimSinkConfig(makeProps(hostUri, agentUriPattern, laneUri, agentIdExtractor));
+  }
+
+  private Map<String, String> makeProps(String hostUri, String agentUriPattern, String laneUri, String agentIdExtractor) {
+    final Map<String, String> props = new HashMap<>();
+    props.put(SWIM_HOST_URI_PROP, hostUri);
+    props.put(SWIM_AGENT_URI_PATTERN_PROP, agentUriPattern);
+    props.put(SWIM_LANE_URI_PROP, laneUri);
+    props.put(SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP, "true");
+    props.put(SWIM_AGENT_ID_EXTRACTOR_PROP, agentIdExtractor);
+    return props;
+  }
+
+}
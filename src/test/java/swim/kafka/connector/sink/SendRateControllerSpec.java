@@ -0,0 +1,84 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SendRateControllerSpec {
+
+  private static final long SLOW_WRITE = TimeUnit.MILLISECONDS.toNanos(500L);
+  private static final long FAST_WRITE = TimeUnit.MILLISECONDS.toNanos(1L);
+
+  @Test
+  public void decreaseWhenHostFallsBehind() throws InterruptedException {
+    final SendRateController controller = new SendRateController(100.0, 1000.0, 100.0, 0.5, 100L, 50L);
+    assertEquals(controller.rate(), 1000.0);
+    controller.didWrite(SLOW_WRITE);
+    controller.didWrite(FAST_WRITE);
+    Thread.sleep(60L);
+    controller.didWrite(FAST_WRITE);
+    assertEquals(controller.rate(), 500.0);
+
+    Thread.sleep(60L);
+    controller.didFail();
+    assertEquals(controller.rate(), 250.0);
+
+    for (int i = 0; i < 3; i += 1) {
+      Thread.sleep(60L);
+      controller.didFail();
+    }
+    assertEquals(controller.rate(), 100.0);
+    assertEquals(controller.decreases(), 5L);
+  }
+
+  @Test
+  public void increaseWhenHeldBack() throws InterruptedException {
+    final SendRateController controller = new SendRateController(100.0, 1000.0, 100.0, 0.5, 100L, 50L);
+    Thread.sleep(60L);
+    controller.didFail();
+    assertEquals(controller.rate(), 500.0);
+
+    // A tenth of a second of commands goes through at once, then the rate holds the task back
+    int acquired = 0;
+    while (controller.acquire(0L)) {
+      acquired += 1;
+    }
+    assertTrue(acquired >= 50);
+    Thread.sleep(60L);
+    controller.didWrite(FAST_WRITE);
+    assertEquals(controller.rate(), 600.0);
+
+    // The rate only increases when it held the task back
+    Thread.sleep(60L);
+    controller.didWrite(FAST_WRITE);
+    assertEquals(controller.rate(), 600.0);
+  }
+
+  @Test
+  public void waitForTokens() {
+    final SendRateController controller = new SendRateController(100.0, 100.0, 0.0, 0.5, 100L, 1000L);
+    for (int i = 0; i < 10; i += 1) {
+      assertTrue(controller.acquire(0L));
+    }
+    assertFalse(controller.acquire(System.currentTimeMillis()));
+    // One token every 10 milliseconds
+    assertTrue(controller.acquire(System.currentTimeMillis() + 100L));
+  }
+
+}
@@ -14,8 +14,11 @@
 
 package swim.kafka.connector.sink;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,15 +29,26 @@ import org.apache.kafka.connect.sink.SinkRecord;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 import swim.json.Json;
+import swim.kafka.connector.convertor.BytesFormat;
+import swim.kafka.connector.convertor.MessageConvertor;
+import swim.kafka.connector.convertor.ValueView;
+import swim.recon.Recon;
 import swim.structure.Data;
 import swim.structure.Form;
 import swim.structure.Record;
+import swim.structure.Text;
 import swim.structure.Value;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 public class SinkMessageConvertorSpec {
 
-  private final SinkMessageConvertor messageConvertor = new SinkMessageConvertor();
+  private final SinkMessageConvertor messageConvertor = new SinkMessageConvertor(
+        MessageConvertor.DEFAULT_SCHEMA_CACHE_SIZE, BytesFormat.DATA, Collections.emptyList());
+  private final SinkMessageConvertor uncompiledMessageConvertor = new SinkMessageConvertor(0, BytesFormat.DATA,
+        Collections.emptyList());
 
   // Data for Tests
   private SchemaBuilder baseSchema;
@@ -100,6 +114,48 @@ public class SinkMessageConvertorSpec {
     assertValueEquals(messageConvertor.convertValue(sinkRecord), value);
   }
 
+  @Test
+  public void convertSchemalessJsonBytes() {
+    final SinkMessageConvertor jsonConvertor = new SinkMessageConvertor(0, BytesFormat.JSON, Collections.emptyList());
+    final String json = " {\"key1\": \"a\", \"key2\": 1, \"key3\": [2.0, true]}\n";
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    assertValueEquals(jsonConvertor.convertValue(makeSchemalessSinkRecord(null, bytes)), Json.parse(json));
+    assertValueEquals(jsonConvertor.convertValue(makeSchemalessSinkRecord(null, ByteBuffer.wrap(bytes))), Json.parse(json));
+    // keys are never parsed
+    assertValueEquals(jsonConvertor.convertKey(makeSchemalessSinkRecord(bytes, null)), Record.fromObject(bytes));
+  }
+
+  @Test
+  public void convertSchemalessReconBytes() {
+    final SinkMessageConvertor reconConvertor = new SinkMessageConvertor(0, BytesFormat.RECON, Collections.emptyList());
+    final String recon = "{key1: a, key2: 1, key3: {2.0, true}}";
+    final byte[] bytes = recon.getBytes(StandardCharsets.UTF_8);
+    assertValueEquals(reconConvertor.convertValue(makeSchemalessSinkRecord(null, bytes)), Recon.parse(recon));
+  }
+
+  @Test(expectedExceptions = RuntimeException.class)
+  public void convertSchemalessInvalidJsonBytes() {
+    final SinkMessageConvertor jsonConvertor = new SinkMessageConvertor(0, BytesFormat.JSON, Collections.emptyList());
+    jsonConvertor.convertValue(makeSchemalessSinkRecord(null, "{\"key1\": ".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void passthroughEncodedValues() {
+    final SinkMessageConvertor jsonConvertor = new SinkMessageConvertor(0, BytesFormat.JSON, Collections.emptyList());
+    final String json = "{\"id\": \"a\", \"readings\": [1, 2]}";
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    // encoded values are parsed as a whole, never projected
+    assertValueEquals(jsonConvertor.passthroughValue(makeSchemalessSinkRecord(null, json)), Json.parse(json));
+    assertValueEquals(jsonConvertor.passthroughValue(makeSchemalessSinkRecord(null, bytes)), Json.parse(json));
+    assertValueEquals(jsonConvertor.passthroughValue(makeSchemalessSinkRecord(null, ByteBuffer.wrap(bytes))),
+          Json.parse(json));
+    final SinkMessageConvertor reconConvertor = new SinkMessageConvertor(0, BytesFormat.RECON, Collections.emptyList());
+    assertValueEquals(reconConvertor.passthroughValue(makeSchemalessSinkRecord(null, "{id: a}")),
+          Recon.parse("{id: a}"));
+    // encoded values are forwarded as text when the bytes format is data
+    assertValueEquals(messageConvertor.passthroughValue(makeSchemalessSinkRecord(null, bytes)), Text.from(json));
+  }
+
   @Test
   public void convertSchemaFlatStruct() {
     final SinkRecord sinkRecord = makeSchemaSinkRecord(null, null, baseStruct, baseSchema);
@@ -206,6 +262,100 @@ public class SinkMessageConvertorSpec {
     assertValueEquals(messageConvertor.convertValue(sinkRecord), nestedValue);
   }
 
+  @Test
+  public void convertSchemaWithAndWithoutCompiledWriters() {
+    final Schema mapSchema = SchemaBuilder.map(SchemaBuilder.STRING_SCHEMA, baseSchema);
+    final Schema arraySchema = SchemaBuilder.array(SchemaBuilder.array(Schema.INT64_SCHEMA));
+    final Schema nestedSchema = makeBaseSchema().field("5", baseSchema).field("6", mapSchema).field("7", arraySchema);
+    final HashMap<String, Struct> map = new HashMap<>();
+    map.put("0", baseStruct);
+    final List<Object> list = makeList(makeList(1L, 2L), makeList(3L));
+    final Struct struct = makeBaseStruct(nestedSchema)
+          .put("5", baseStruct)
+          .put("6", map)
+          .put("7", list);
+    final SinkRecord sinkRecord = makeSchemaSinkRecord(null, null, struct, nestedSchema);
+    final Value expected = uncompiledMessageConvertor.convertValue(sinkRecord);
+    // the second conversion is served by the cached writers
+    assertValueEquals(messageConvertor.convertValue(sinkRecord), expected);
+    assertValueEquals(messageConvertor.convertValue(sinkRecord), expected);
+  }
+
+  @Test
+  public void convertSchemaWithValueFields() {
+    final List<String> valueFields = Arrays.asList("0", "$5.1", "6.3", "7");
+    final SinkMessageConvertor projectedConvertor = new SinkMessageConvertor(10, BytesFormat.DATA, valueFields);
+    final SinkMessageConvertor uncompiledProjectedConvertor = new SinkMessageConvertor(0, BytesFormat.DATA, valueFields);
+    final Schema mapSchema = SchemaBuilder.map(SchemaBuilder.STRING_SCHEMA, baseSchema);
+    final Schema arraySchema = SchemaBuilder.array(Schema.INT64_SCHEMA);
+    final Schema nestedSchema = makeBaseSchema().field("5", baseSchema).field("6", mapSchema).field("7", arraySchema);
+    final HashMap<String, Struct> map = new HashMap<>();
+    map.put("0", baseStruct);
+    final Struct struct = makeBaseStruct(nestedSchema)
+          .put("5", baseStruct)
+          .put("6", map)
+          .put("7", makeList(1L, 2L));
+    final SinkRecord sinkRecord = makeSchemaSinkRecord(null, null, struct, nestedSchema);
+    // paths go through the values of maps
+    final Value expected = Record.create(4)
+          .slot("0", "a")
+          .slot("5", Record.create(1).slot("1", 1))
+          .slot("6", Record.create(1).slot("0", Record.create(1).slot("3", true)))
+          .slot("7", makeValue(1L, 2L));
+    assertValueEquals(projectedConvertor.convertValue(sinkRecord), expected);
+    assertValueEquals(uncompiledProjectedConvertor.convertValue(sinkRecord), expected);
+    // keys are never projected
+    assertValueEquals(projectedConvertor.convertKey(makeSchemaSinkRecord(baseStruct, baseSchema, null, null)),
+          baseValue);
+  }
+
+  @Test
+  public void convertSchemalessWithValueFields() {
+    final SinkMessageConvertor projectedConvertor = new SinkMessageConvertor(10, BytesFormat.JSON,
+          Arrays.asList("id", "location.region", "readings.value"));
+    final String json = "{\"id\":\"a\",\"firmware\":7,\"location\":{\"latitude\":37.7,\"region\":\"west\"},"
+          + "\"readings\":[{\"sensor\":\"s0\",\"value\":1},{\"sensor\":\"s1\",\"value\":2}]}";
+    final Value expected = Record.create(3)
+          .slot("id", "a")
+          .slot("location", Record.create(1).slot("region", "west"))
+          .slot("readings", Record.of(Record.create(1).slot("value", 1), Record.create(1).slot("value", 2)));
+    assertValueEquals(projectedConvertor.convertValue(
+          makeSchemalessSinkRecord(null, json.getBytes(StandardCharsets.UTF_8))), expected);
+    assertValueEquals(projectedConvertor.convertValue(makeSchemalessSinkRecord(null, json)), expected);
+
+    // schemaless maps are projected like structs
+    final SinkMessageConvertor mapConvertor = new SinkMessageConvertor(10, BytesFormat.DATA, Arrays.asList("0", "2.1"));
+    final Map<String, Object> map = makeMap("a", 7, makeMap(37.7, "west"));
+    assertValueEquals(mapConvertor.convertValue(makeSchemalessSinkRecord(null, map)),
+          Record.create(2).slot("0", "a").slot("2", Record.create(1).slot("1", "west")));
+  }
+
+  @Test
+  public void convertValueViews() {
+    final Schema arraySchema = SchemaBuilder.array(baseSchema);
+    final Schema nestedSchema = makeBaseSchema().field("5", baseSchema).field("6", arraySchema);
+    final Struct struct = makeBaseStruct(nestedSchema)
+          .put("5", baseStruct)
+          .put("6", makeList(baseStruct));
+    final SinkRecord sinkRecord = makeSchemaSinkRecord(null, null, struct, nestedSchema);
+    final ValueView view = messageConvertor.convertValueView(sinkRecord);
+    assertValueEquals(view.get(new String[] {"5", "0"}), Record.fromObject("a"));
+    assertValueEquals(view.get(new String[] {"5"}), baseValue);
+    assertValueEquals(view.get(new String[] {"7"}), Value.absent());
+    // arrays are only read from the whole value
+    assertNull(view.get(new String[] {"6", "0"}));
+    assertFalse(view.isConverted());
+    assertValueEquals(view.toValue(), messageConvertor.convertValue(sinkRecord));
+    assertTrue(view.isConverted());
+    assertValueEquals(view.get(new String[] {"5", "1"}), Record.fromObject(1));
+
+    final Map<String, Object> map = makeMap("a", makeMap(1, 2.0f));
+    final ValueView mapView = messageConvertor.convertValueView(makeSchemalessSinkRecord(null, map));
+    assertValueEquals(mapView.get(new String[] {"1", "0"}), Record.fromObject(1));
+    assertValueEquals(mapView.get(new String[] {"2"}), Value.absent());
+    assertFalse(mapView.isConverted());
+  }
+
   private SchemaBuilder makeBaseSchema() {
     return SchemaBuilder.struct()
           .field("0", Schema.STRING_SCHEMA)
@@ -0,0 +1,117 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import java.util.Collections;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.Metrics;
+import org.testng.annotations.Test;
+import swim.structure.Num;
+import swim.structure.Value;
+import swim.uri.Uri;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class SinkTaskMetricsSpec {
+
+  private static final TopicPartition PARTITION = new TopicPartition("test-topic", 1);
+  private static final Uri HOST_URI = Uri.parse("warp://localhost:9001");
+  private static final Uri LANE_URI = Uri.parse("latest");
+
+  @Test
+  public void latencyHistogramPercentiles() {
+    final LatencyHistogram histogram = new LatencyHistogram(30000L);
+    for (int i = 1; i <= 100; i += 1) {
+      histogram.record(i < 100 ? 100L : 5000L);
+    }
+    final long now = System.currentTimeMillis();
+    assertEquals(histogram.count(now), 100L);
+    assertEquals(histogram.percentile(0.50, now), 127L);
+    assertEquals(histogram.percentile(0.99, now), 127L);
+    assertEquals(histogram.percentile(1.0, now), 8191L);
+    assertEquals(histogram.max(now), 5000L);
+    assertEquals(histogram.mean(now), 149.0);
+  }
+
+  @Test
+  public void latencyHistogramWindows() {
+    final LatencyHistogram histogram = new LatencyHistogram(1000L);
+    final long start = System.currentTimeMillis();
+    histogram.record(5000L);
+    // the samples of the previous window are still reported
+    assertEquals(histogram.count(start + 1000L), 1L);
+    histogram.record(100L);
+    assertEquals(histogram.max(start + 1000L), 5000L);
+    // and dropped after two windows
+    assertEquals(histogram.count(start + 2000L), 1L);
+    assertEquals(histogram.max(start + 2000L), 100L);
+    assertEquals(histogram.count(start + 3000L), 0L);
+  }
+
+  @Test
+  public void recordMetrics() {
+    final SinkTaskMetrics metrics = new SinkTaskMetrics(new Metrics(), "test", "0");
+    final CommandPipelineSpec.StubClientRuntime swimRef = new CommandPipelineSpec.StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 0L, true, false, null, null, null);
+    metrics.bindPipeline(pipeline);
+    pipeline.enqueue(PARTITION, 0L, HOST_URI, Uri.parse("/agent/0"), LANE_URI, Num.from(0));
+    pipeline.enqueue(PARTITION, 1L, HOST_URI, Uri.parse("/agent/1"), LANE_URI, Num.from(1));
+    pipeline.dispatch(true, 0L);
+    metrics.recordBatch(2, 42L);
+    metrics.recordConversionError();
+    metrics.recordEmptyAgentUri();
+    metrics.recordEmptyAgentUri();
+
+    assertEquals(metricValue(metrics, "put-record-total"), 2.0);
+    assertEquals(metricValue(metrics, "put-byte-total"), 42.0);
+    assertEquals(metricValue(metrics, "conversion-error-total"), 1.0);
+    assertEquals(metricValue(metrics, "empty-agent-uri-total"), 2.0);
+    assertEquals(metricValue(metrics, "in-flight-records"), 2.0);
+    assertEquals(metricValue(metrics, "command-queue-depth"), 2.0);
+
+    swimRef.fail(0);
+    swimRef.write(1);
+    assertEquals(metricValue(metrics, "write-failure-total"), 1.0);
+    assertEquals(metricValue(metrics, "reconnect-total"), 1.0);
+    assertEquals(metricValue(metrics, "command-queue-depth"), 0.0);
+    metrics.close();
+  }
+
+  @Test
+  public void recordDispatchLagPerPartition() {
+    final SinkTaskMetrics metrics = new SinkTaskMetrics(new Metrics(), "test", "0");
+    final CommandPipelineSpec.StubClientRuntime swimRef = new CommandPipelineSpec.StubClientRuntime();
+    final CommandPipeline pipeline = new CommandPipeline(swimRef, 10, 0L, 0L, false, false, null, null, metrics);
+    final long timestamp = System.currentTimeMillis() - 5000L;
+    pipeline.enqueue(PARTITION, 0L, HOST_URI, Uri.parse("/agent/0"), LANE_URI, Num.from(0), Value.absent(), timestamp);
+    pipeline.enqueue(PARTITION, 1L, HOST_URI, Uri.parse("/agent/1"), LANE_URI, Num.from(1), Value.absent(), -1L);
+    pipeline.dispatch(true, 0L);
+
+    final MetricName lagMax = metrics.metrics().metricName("dispatch-lag-ms-max", SinkTaskMetrics.GROUP, "",
+          "connector", "test", "task", "0", "topic", PARTITION.topic(), "partition", "1");
+    assertTrue(((Number) metrics.metrics().metric(lagMax).metricValue()).doubleValue() >= 5000.0);
+    metrics.closePartitions(Collections.singleton(PARTITION));
+    assertNull(metrics.metrics().metric(lagMax));
+    metrics.close();
+  }
+
+  private static double metricValue(SinkTaskMetrics metrics, String name) {
+    final Object value = metrics.metrics().metric(metrics.metricName(name, "")).metricValue();
+    return ((Number) value).doubleValue();
+  }
+
+}
@@ -1,5 +1,8 @@
 package swim.kafka.connector.sink;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 import static org.testng.Assert.assertEquals;
@@ -23,6 +26,19 @@ public class SwimKafkaSinkConnectorSpec {
     assertEquals(swimKafkaSinkConnector.taskClass(), SwimKafkaSinkTask.class);
   }
 
+  @Test
+  public void taskConfigs() {
+    swimKafkaSinkConnector.start(Collections.singletonMap(SwimSinkConfig.SWIM_HOST_URI_PROP, "warp://localhost:9001"));
+    final List<Map<String, String>> taskConfigs = swimKafkaSinkConnector.taskConfigs(3);
+    assertEquals(taskConfigs.size(), 3);
+    for (int i = 0; i < 3; i += 1) {
+      final SwimSinkConfig config = new SwimSinkConfig(taskConfigs.get(i));
+      assertEquals(config.getHostUri().toString(), "warp://localhost:9001");
+      assertEquals(config.getTaskIndex(), i);
+      assertEquals(config.getTaskCount(), 3);
+    }
+  }
+
   @Test
   public void version() {
     assertEquals(swimKafkaSinkConnector.version(), "3.11.0");
@@ -1,8 +1,24 @@
 package swim.kafka.connector.sink;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.sink.SinkRecord;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
+import swim.client.ClientRuntime;
+import swim.uri.Uri;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_EXTRACTOR_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_URI_PATTERN_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_ERRORS_ACTION_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_FLUSH_TIMEOUT_MS_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_HOST_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP;
 
 public class SwimKafkaSinkTaskSpec {
 
@@ -17,4 +33,60 @@ public class SwimKafkaSinkTaskSpec {
   public void getVersion() {
     assertEquals(swimKafkaSinkTask.version(), "3.11.0");
   }
+
+  @Test
+  public void putRecordsWithoutPartition() {
+    final SinkRecord record = new SinkRecord("test-topic", 0, null, null, null,
+          Collections.singletonMap("id", "a"), 0L);
+    // Sink records built by the worker always have a partition, only sub-classes may lack one
+    final SinkRecord unpartitioned = new SinkRecord("test-topic", 0, null, null, null,
+          Collections.singletonMap("id", "b"), 1L) {
+      @Override
+      public Integer kafkaPartition() {
+        return null;
+      }
+    };
+
+    final StubSinkTask failing = new StubSinkTask();
+    failing.start(makeProps("fail"));
+    try {
+      assertThrows(ConnectException.class, () -> failing.put(Collections.singletonList(unpartitioned)));
+    } finally {
+      failing.stop();
+    }
+
+    final StubSinkTask skipping = new StubSinkTask();
+    skipping.start(makeProps("skip"));
+    try {
+      skipping.put(Arrays.asList(unpartitioned, record));
+      assertEquals(skipping.swimRef.commands.size(), 1);
+      assertEquals(skipping.swimRef.commands.get(0).nodeUri, Uri.parse("/agent/a"));
+    } finally {
+      skipping.stop();
+    }
+  }
+
+  private static Map<String, String> makeProps(String errorsAction) {
+    final Map<String, String> props = new HashMap<>();
+    props.put(SWIM_HOST_URI_PROP, "warp://localhost:9001");
+    props.put(SWIM_AGENT_URI_PATTERN_PROP, "/agent/:id");
+    props.put(SWIM_LANE_URI_PROP, "latest");
+    props.put(SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP, "true");
+    props.put(SWIM_AGENT_ID_EXTRACTOR_PROP, "$id");
+    props.put(SWIM_ERRORS_ACTION_PROP, errorsAction);
+    props.put(SWIM_FLUSH_TIMEOUT_MS_PROP, "10");
+    return props;
+  }
+
+  static final class StubSinkTask extends SwimKafkaSinkTask {
+
+    final CommandPipelineSpec.StubClientRuntime swimRef = new CommandPipelineSpec.StubClientRuntime();
+
+    @Override
+    protected ClientRuntime createClientRuntime() {
+      return this.swimRef;
+    }
+
+  }
+
 }
@@ -14,7 +14,9 @@
 
 package swim.kafka.connector.sink;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import org.apache.kafka.common.config.ConfigException;
 import org.testng.annotations.BeforeTest;
@@ -24,11 +26,23 @@ import swim.structure.Value;
 import swim.uri.Uri;
 import swim.uri.UriPattern;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
 import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_EXTRACTOR_PROP;
 import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_URI_PATTERN_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_DELTA_CACHE_SIZE_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_DELTA_ENABLED_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_DELTA_LANE_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_DELTA_RESYNC_INTERVAL_MS_PROP;
 import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_HOST_URI_PROP;
 import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LANE_URI_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_LINGER_MS_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_MAX_IN_FLIGHT_BYTES_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_MAX_IN_FLIGHT_RECORDS_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_TASK_COUNT_PROP;
+import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_TASK_ID_PROP;
 import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP;
 
 public class SwimSinkConfigSpec {
@@ -50,6 +64,16 @@ public class SwimSinkConfigSpec {
     validateHostUriError("");
   }
 
+  @Test
+  public void getHostUris() {
+    final SwimSinkConfig config = makeConfig(SWIM_HOST_URI_PROP, "warp://node1:9001, warps://node2:9001,");
+    assertEquals(config.getHostUris(), Arrays.asList(Uri.parse("warp://node1:9001"), Uri.parse("warps://node2:9001")));
+    assertEquals(config.getHostUri(), Uri.parse("warp://node1:9001"));
+    validateHostUriError("warp://node1:9001,node2:9001");
+    validateHostUriError("warp://node1:9001,warp://node1:9001");
+    validateHostUriError(" , ");
+  }
+
   private void validateHostUri(String hostUri, Uri expected) {
     final SwimSinkConfig config = makeConfig(SWIM_HOST_URI_PROP, hostUri);
     assertEquals(config.getHostUri(), expected);
@@ -60,6 +84,72 @@ public class SwimSinkConfigSpec {
     assertThrows(ConfigException.class, () -> config.getHostUri());
   }
 
+  @Test
+  public void getErrorsAction() {
+    final Map<String, String> props = new HashMap<>();
+    assertEquals(new SwimSinkConfig(props).getErrorsAction(), ErrantRecordHandler.Action.FAIL);
+    assertNull(new SwimSinkConfig(props).getErrorsFallbackAgentUri());
+    props.put(SwimSinkConfig.SWIM_ERRORS_ACTION_PROP, "fallback");
+    assertThrows(ConfigException.class, () -> new SwimSinkConfig(props).getErrorsFallbackAgentUri());
+    props.put(SwimSinkConfig.SWIM_ERRORS_FALLBACK_AGENT_URI_PROP, "/errors");
+    assertEquals(new SwimSinkConfig(props).getErrorsFallbackAgentUri(), Uri.parse("/errors"));
+    props.put(SwimSinkConfig.SWIM_ERRORS_ACTION_PROP, "ignore");
+    assertThrows(ConfigException.class, () -> new SwimSinkConfig(props).getErrorsAction());
+  }
+
+  @Test
+  public void getValueFields() {
+    final Map<String, String> props = new HashMap<>();
+    assertTrue(new SwimSinkConfig(props).getValueFields().isEmpty());
+    // the fields read by agent id extractors and projections are only added to projected values
+    props.put(SwimSinkConfig.SWIM_AGENT_ID_EXTRACTOR_PROP, "$device.id");
+    assertTrue(new SwimSinkConfig(props).getValueFields().isEmpty());
+    props.put(SwimSinkConfig.SWIM_VALUE_FIELDS_PROP, "reading, location.region");
+    props.put("swim.route.region.projection", "$reading.value");
+    props.put("topic.alerts.swim.agent.id.extractor", "$alertId");
+    props.put("swim.route.region.agent.id.extractor", "$region[0]");
+    assertEquals(new HashSet<>(new SwimSinkConfig(props).getValueFields()), new HashSet<>(Arrays.asList(
+          "reading", "location.region", "$device.id", "$reading.value", "$alertId")));
+    props.put(SwimSinkConfig.SWIM_VALUE_FIELDS_PROP, "reading,location..region");
+    assertThrows(ConfigException.class, () -> new SwimSinkConfig(props).getValueFields());
+  }
+
+  @Test
+  public void getTransportSettings() {
+    final Map<String, String> props = new HashMap<>();
+    assertTrue(new SwimSinkConfig(props).getTransportSettings().isDefault());
+    props.put(SwimSinkConfig.SWIM_WS_COMPRESSION_LEVEL_PROP, "6");
+    props.put(SwimSinkConfig.SWIM_WS_MAX_FRAME_SIZE_PROP, "65536");
+    props.put(SwimSinkConfig.SWIM_TCP_NO_DELAY_PROP, "false");
+    final TransportSettings transportSettings = new SwimSinkConfig(props).getTransportSettings();
+    assertFalse(transportSettings.isDefault());
+    assertEquals(transportSettings.getCompressionLevel(), 6);
+    assertEquals(transportSettings.getMaxFrameSize(), 65536);
+    assertEquals(transportSettings.getSendBufferSize(), TransportSettings.DEFAULT);
+    assertFalse(transportSettings.isTcpNoDelay());
+    props.put(SwimSinkConfig.SWIM_WS_COMPRESSION_LEVEL_PROP, "10");
+    assertThrows(ConfigException.class, () -> new SwimSinkConfig(props).getTransportSettings());
+  }
+
+  @Test
+  public void isMetricsBytesEnabled() {
+    final Map<String, String> props = new HashMap<>();
+    assertFalse(new SwimSinkConfig(props).isMetricsBytesEnabled());
+    props.put(SwimSinkConfig.SWIM_METRICS_BYTES_ENABLED_PROP, "true");
+    assertTrue(new SwimSinkConfig(props).isMetricsBytesEnabled());
+  }
+
+  @Test
+  public void getTaskCount() {
+    final SwimSinkConfig config = makeConfig(SWIM_TASK_ID_PROP, "2");
+    assertEquals(config.getTaskIndex(), 2);
+    assertThrows(ConfigException.class, () -> config.getTaskCount());
+    this.props.put(SWIM_TASK_COUNT_PROP, "4");
+    assertEquals(config.getTaskCount(), 4);
+    this.props.put(SWIM_TASK_COUNT_PROP, "0");
+    assertThrows(ConfigException.class, () -> config.getTaskCount());
+  }
+
   @Test
   public void getAgentUriPattern() {
     validateAgentUriPattern("/myagent/:id", UriPattern.parse("/myagent/:id"));
@@ -130,6 +220,30 @@ public class SwimSinkConfigSpec {
     assertThrows(ConfigException.class, () -> config.getAgentIdExtractor());
   }
 
+  @Test
+  public void getPipelineLimits() {
+    assertEquals(makeConfig(SWIM_MAX_IN_FLIGHT_RECORDS_PROP, null).getMaxInFlightRecords(), 10000);
+    assertEquals(makeConfig(SWIM_MAX_IN_FLIGHT_RECORDS_PROP, "500").getMaxInFlightRecords(), 500);
+    assertEquals(makeConfig(SWIM_MAX_IN_FLIGHT_BYTES_PROP, "").getMaxInFlightBytes(), 0L);
+    assertEquals(makeConfig(SWIM_MAX_IN_FLIGHT_BYTES_PROP, "1048576").getMaxInFlightBytes(), 1048576L);
+    assertEquals(makeConfig(SWIM_LINGER_MS_PROP, "5").getLingerMs(), 5L);
+    assertThrows(ConfigException.class, () -> makeConfig(SWIM_MAX_IN_FLIGHT_RECORDS_PROP, "0").getMaxInFlightRecords());
+    assertThrows(ConfigException.class, () -> makeConfig(SWIM_MAX_IN_FLIGHT_BYTES_PROP, "lots").getMaxInFlightBytes());
+    assertThrows(ConfigException.class, () -> makeConfig(SWIM_LINGER_MS_PROP, "-1").getLingerMs());
+  }
+
+  @Test
+  public void getDeltaSettings() {
+    assertTrue(makeConfig(SWIM_DELTA_ENABLED_PROP, "true").isDeltaEnabled());
+    assertNull(makeConfig(SWIM_DELTA_LANE_URI_PROP, "").getDeltaLaneUri());
+    assertEquals(makeConfig(SWIM_DELTA_LANE_URI_PROP, "latestDelta").getDeltaLaneUri(), Uri.parse("latestDelta"));
+    assertEquals(makeConfig(SWIM_DELTA_CACHE_SIZE_PROP, null).getDeltaCacheSize(), 10000);
+    assertEquals(makeConfig(SWIM_DELTA_RESYNC_INTERVAL_MS_PROP, "5000").getDeltaResyncIntervalMs(), 5000L);
+    assertThrows(ConfigException.class, () -> makeConfig(SWIM_DELTA_CACHE_SIZE_PROP, "0").getDeltaCacheSize());
+    assertThrows(ConfigException.class,
+          () -> makeConfig(SWIM_DELTA_RESYNC_INTERVAL_MS_PROP, "-1").getDeltaResyncIntervalMs());
+  }
+
   private SwimSinkConfig makeConfig(String key, String value) {
     putProp(key, value);
     return new SwimSinkConfig(props);
@@ -0,0 +1,65 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.testng.annotations.Test;
+import swim.structure.Record;
+import swim.structure.Value;
+import static org.testng.Assert.assertEquals;
+
+public class TraceMetadataSpec {
+
+  private static final SinkRecord RECORD = new SinkRecord("test-topic", 1, null, null, null, null, 42L,
+        1660000000000L, TimestampType.CREATE_TIME);
+  private static final Value METADATA = Record.create(4).slot("topic", "test-topic").slot("partition", 1)
+        .slot("offset", 42L).slot("timestamp", 1660000000000L);
+
+  @Test
+  public void attachAttributes() {
+    final TraceMetadata trace = new TraceMetadata(TraceMetadata.Mode.ATTRS);
+    final Value value = Record.create(1).slot("a", 1);
+    assertEquals(trace.attach(value, false, RECORD), Record.create(2).attr("kafka", METADATA).slot("a", 1));
+
+    final Value update = Record.create(2).attr("update", Record.create(1).slot("key", "k")).slot("a", 1);
+    assertEquals(trace.attach(update, true, RECORD), Record.create(3).attr("update", Record.create(1).slot("key", "k"))
+          .attr("kafka", METADATA).slot("a", 1));
+
+    final Value remove = Record.create(1).attr("remove", Record.create(1).slot("key", "k"));
+    assertEquals(trace.attach(remove, true, RECORD), remove);
+  }
+
+  @Test
+  public void attachWrapper() {
+    final TraceMetadata trace = new TraceMetadata(TraceMetadata.Mode.WRAPPER);
+    final Value value = Record.create(1).slot("a", 1);
+    assertEquals(trace.attach(value, false, RECORD), Record.create(2).slot("kafka", METADATA).slot("value", value));
+  }
+
+  @Test
+  public void metadataOfRecordsWithoutPartition() {
+    // Sink records built by the worker always have a partition, only sub-classes may lack one
+    final SinkRecord record = new SinkRecord("test-topic", 1, null, null, null, null, 42L) {
+      @Override
+      public Integer kafkaPartition() {
+        return null;
+      }
+    };
+    assertEquals(TraceMetadata.metadata(record),
+          Record.create(3).slot("topic", "test-topic").slot("partition", -1).slot("offset", 42L));
+  }
+
+}
@@ -0,0 +1,99 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink.id;
+
+import java.util.Collections;
+import org.testng.annotations.Test;
+import swim.kafka.connector.id.AgentIdSource;
+import swim.kafka.connector.id.AgentUriCache;
+import swim.kafka.connector.id.AgentUriParser;
+import swim.kafka.connector.sink.HostRouter;
+import swim.kafka.connector.sink.LaneType;
+import swim.kafka.connector.sink.Route;
+import swim.kafka.connector.sink.RoutingPlan;
+import swim.kafka.connector.sink.SwimSinkConfig;
+import swim.structure.Selector;
+import swim.structure.Text;
+import swim.structure.Value;
+import swim.uri.Uri;
+import swim.uri.UriPattern;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class AgentUriCacheSpec {
+
+  private static final UriPattern PATTERN = UriPattern.parse("/user/:id");
+
+  @Test
+  public void cacheAgentUris() {
+    final AgentUriCache cache = new AgentUriCache(PATTERN, 100, AgentUriCache.Policy.SLRU);
+    final Uri uri = cache.get("abcd");
+    assertEquals(uri, Uri.parse("/user/abcd"));
+    assertSame(cache.get("abcd"), uri);
+    assertSame(cache.get("abcd"), uri);
+    assertEquals(cache.hits(), 2L);
+    assertEquals(cache.misses(), 1L);
+  }
+
+  @Test
+  public void evictLeastRecentlyUsed() {
+    final AgentUriCache cache = new AgentUriCache(PATTERN, 10, AgentUriCache.Policy.LRU);
+    for (int i = 0; i < 100; i += 1) {
+      cache.get("id-" + i);
+    }
+    assertEquals(cache.size(), 10);
+    cache.get("id-99");
+    assertEquals(cache.hits(), 1L);
+    cache.get("id-0");
+    assertEquals(cache.misses(), 101L);
+  }
+
+  @Test
+  public void protectHotIdsFromScans() {
+    final AgentUriCache cache = new AgentUriCache(PATTERN, 10, AgentUriCache.Policy.SLRU);
+    cache.get("hot");
+    cache.get("hot");
+    // a scan of one-off ids only evicts other one-off ids
+    for (int i = 0; i < 100; i += 1) {
+      cache.get("id-" + i);
+    }
+    assertTrue(cache.size() <= 10);
+    final long hits = cache.hits();
+    cache.get("hot");
+    assertEquals(cache.hits(), hits + 1L);
+  }
+
+  @Test
+  public void cacheAgentUrisPerPattern() {
+    final AgentUriParser agentUriParser = new AgentUriParser(100, AgentUriCache.Policy.SLRU);
+    final RoutingPlan userPlan = makePlan("/user/:id");
+    final RoutingPlan devicePlan = makePlan("/device/:id");
+    final Value key = Text.from("abcd");
+    assertEquals(agentUriParser.computeAgentUri(key, Value.absent(), userPlan), Uri.parse("/user/abcd"));
+    assertEquals(agentUriParser.computeAgentUri(key, Value.absent(), devicePlan), Uri.parse("/device/abcd"));
+    assertEquals(agentUriParser.computeAgentUri(key, Value.absent(), userPlan), Uri.parse("/user/abcd"));
+    assertEquals(agentUriParser.cacheHits(), 1L);
+    assertEquals(agentUriParser.cacheMisses(), 2L);
+    assertEquals(agentUriParser.cacheSize(), 2);
+  }
+
+  private RoutingPlan makePlan(String agentUriPattern) {
+    return new RoutingPlan(HostRouter.of(Uri.parse("warp://localhost:9001")), Collections.singletonList(
+          new Route(SwimSinkConfig.DEFAULT_ROUTE_NAME, Uri.parse("latest"), UriPattern.parse(agentUriPattern),
+                Selector.identity(), AgentIdSource.KEY, null, null, null, LaneType.VALUE, null, false, null)));
+  }
+
+}
@@ -14,16 +14,27 @@
 
 package swim.kafka.connector.sink.id;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.sink.SinkRecord;
 import org.testng.annotations.Test;
+import swim.kafka.connector.id.AgentIdSource;
 import swim.kafka.connector.id.AgentUriParser;
+import swim.kafka.connector.sink.HostRouter;
+import swim.kafka.connector.sink.LaneType;
+import swim.kafka.connector.sink.Route;
+import swim.kafka.connector.sink.RoutingPlan;
 import swim.kafka.connector.sink.SwimSinkConfig;
 import swim.structure.Num;
 import swim.structure.Record;
+import swim.structure.Selector;
 import swim.structure.Text;
 import swim.structure.Value;
 import swim.uri.Uri;
+import swim.uri.UriPattern;
 import static org.testng.Assert.assertEquals;
 import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_AGENT_ID_EXTRACTOR_PROP;
 import static swim.kafka.connector.sink.SwimSinkConfig.SWIM_USE_VALUE_FIELD_FOR_AGENT_ID_PROP;
@@ -83,6 +94,47 @@ public class AgentUriParserSpec {
     assertEquals(agentUriParser.computeAgentUri(Value.absent(), value, swimSinkConfig), Uri.empty());
   }
 
+  @Test
+  public void agentUriFromRoutingPlan() {
+    final RoutingPlan keyPlan = makePlan("/user/:id", false, Selector.identity());
+    assertEquals(agentUriParser.computeAgentUri(Text.from("abcd"), Value.absent(), keyPlan), Uri.parse("/user/abcd"));
+
+    final RoutingPlan valuePlan = makePlan("/user/:id", true, Selector.identity().get("key0"));
+    final Value value = Record.create(2).slot("key0", "abcd").slot("key1", "value1");
+    assertEquals(agentUriParser.computeAgentUri(Value.absent(), value, valuePlan), Uri.parse("/user/abcd"));
+    assertEquals(agentUriParser.computeAgentUri(value, Value.absent(), valuePlan), Uri.empty());
+  }
+
+  @Test
+  public void agentUriFromRecord() {
+    final ConnectHeaders headers = new ConnectHeaders();
+    headers.addString("deviceId", "dev-7");
+    final SinkRecord record = new SinkRecord("devices", 3, null, "abcd".getBytes(StandardCharsets.UTF_8),
+          null, null, 0L, null, null, headers);
+    assertEquals(agentUriParser.computeAgentUriFromRecord(record, makeRoute(AgentIdSource.KEY_RAW, null)),
+          Uri.parse("/user/abcd"));
+    assertEquals(agentUriParser.computeAgentUriFromRecord(record, makeRoute(AgentIdSource.HEADER, "deviceId")),
+          Uri.parse("/user/dev-7"));
+    assertEquals(agentUriParser.computeAgentUriFromRecord(record, makeRoute(AgentIdSource.HEADER, "missing")),
+          Uri.empty());
+    assertEquals(agentUriParser.computeAgentUriFromRecord(record, makeRoute(AgentIdSource.TOPIC, null)),
+          Uri.parse("/user/devices"));
+    assertEquals(agentUriParser.computeAgentUriFromRecord(record, makeRoute(AgentIdSource.PARTITION, null)),
+          Uri.parse("/user/3"));
+  }
+
+  private Route makeRoute(AgentIdSource agentIdSource, String agentIdHeader) {
+    return new Route("test", Uri.parse("latest"), UriPattern.parse("/user/:id"), Selector.identity(),
+          agentIdSource, agentIdHeader, null, null, LaneType.VALUE, null, false, null);
+  }
+
+  private RoutingPlan makePlan(String agentUriPattern, boolean useValueForAgentId, Selector agentIdExtractor) {
+    return new RoutingPlan(HostRouter.of(Uri.parse("warp://localhost:9001")), Collections.singletonList(
+          new Route(SwimSinkConfig.DEFAULT_ROUTE_NAME, Uri.parse("latest"), UriPattern.parse(agentUriPattern),
+                agentIdExtractor, useValueForAgentId ? AgentIdSource.VALUE : AgentIdSource.KEY, null, null, null,
+                LaneType.VALUE, null, false, null)));
+  }
+
   private SwimSinkConfig makeConfig(String agentUriPattern, boolean useValueForAgentId) {
     Map<String, String> props = new HashMap<>();
     props.put(SWIM_AGENT_URI_PATTERN_PROP, agentUriPattern);
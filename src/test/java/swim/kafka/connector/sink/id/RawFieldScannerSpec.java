@@ -0,0 +1,91 @@
+// Copyright 2015-present SWIM.AI inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package swim.kafka.connector.sink.id;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.testng.annotations.Test;
+import swim.kafka.connector.id.RawFieldScanner;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class RawFieldScannerSpec {
+
+  @Test
+  public void forSelector() {
+    assertEquals(RawFieldScanner.forSelector("$userId").scan("{\"userId\": \"abcd\"}"), "abcd");
+    assertEquals(RawFieldScanner.forSelector("").scan("abcd"), "abcd");
+    assertNull(RawFieldScanner.forSelector("userId"));
+    assertNull(RawFieldScanner.forSelector("$user[0]"));
+    assertNull(RawFieldScanner.forSelector("$user..id"));
+  }
+
+  @Test
+  public void scanJson() {
+    final RawFieldScanner scanner = RawFieldScanner.forSelector("$userId");
+    assertEquals(scanner.scan("{\"name\": \"x\", \"userId\": \"User_5\", \"age\": 3}"), "User_5");
+    assertEquals(scanner.scan("{\"userId\":101}"), "101");
+    assertEquals(scanner.scan(bytes("{\"userId\": \"User_5\"}")), "User_5");
+    assertEquals(scanner.scan(ByteBuffer.wrap(bytes("{\"userId\": \"User_5\"}"))), "User_5");
+    assertEquals(scanner.scan("{\"userId\": \"a\\\"b\\u0041\"}"), "a\"bA");
+  }
+
+  @Test
+  public void scanJsonIgnoresNestedAndQuotedKeys() {
+    final RawFieldScanner scanner = RawFieldScanner.forSelector("$userId");
+    assertEquals(scanner.scan("{\"other\": {\"userId\": \"nested\"}, \"userId\": \"top\"}"), "top");
+    assertEquals(scanner.scan("{\"note\": \"userId: fake\", \"userId\": \"real\"}"), "real");
+    assertEquals(scanner.scan("{\"list\": [{\"userId\": 1}], \"userId\": 2}"), "2");
+  }
+
+  @Test
+  public void scanNestedPath() {
+    final RawFieldScanner scanner = RawFieldScanner.forSelector("$device.id");
+    assertEquals(scanner.scan("{\"id\": 0, \"device\": {\"name\": \"d\", \"id\": \"dev-7\"}}"), "dev-7");
+    assertNull(scanner.scan("{\"device\": {\"name\": \"d\"}, \"id\": \"top\"}"));
+  }
+
+  @Test
+  public void scanRecon() {
+    final RawFieldScanner scanner = RawFieldScanner.forSelector("$userId");
+    assertEquals(scanner.scan("{name: x, userId: User_5}"), "User_5");
+    assertEquals(scanner.scan("@event(userId: attr) userId: \"User_6\", age: 3"), "User_6");
+    assertEquals(scanner.scan(bytes("userId: 42")), "42");
+  }
+
+  @Test
+  public void scanReconAfterAttributes() {
+    final RawFieldScanner scanner = RawFieldScanner.forSelector("$userId");
+    assertEquals(scanner.scan("@event {userId: 1}"), "1");
+    assertEquals(scanner.scan("@event(userId: attr) @\"user event\" {name: x, userId: User_7}"), "User_7");
+    assertNull(scanner.scan("@event {user: {userId: nested}}"));
+    assertEquals(RawFieldScanner.forSelector("$device.id").scan("@event {device: {id: dev-7}}"), "dev-7");
+  }
+
+  @Test
+  public void scanMissingOrStructuredField() {
+    final RawFieldScanner scanner = RawFieldScanner.forSelector("$userId");
+    assertNull(scanner.scan("{\"name\": \"x\"}"));
+    assertNull(scanner.scan("{\"userId\": {\"a\": 1}}"));
+    assertNull(scanner.scan("{\"userId\": null}"));
+    assertNull(scanner.scan(""));
+    assertNull(scanner.scan(42));
+  }
+
+  private static byte[] bytes(String string) {
+    return string.getBytes(StandardCharsets.UTF_8);
+  }
+
+}
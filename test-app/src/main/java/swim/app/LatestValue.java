@@ -17,6 +17,7 @@ package swim.app;
 import swim.api.SwimLane;
 import swim.api.agent.AbstractAgent;
 import swim.api.http.HttpLane;
+import swim.api.lane.CommandLane;
 import swim.api.lane.ValueLane;
 import swim.codec.Output;
 import swim.http.HttpChunked;
@@ -25,12 +26,28 @@ import swim.http.HttpResponse;
 import swim.http.HttpStatus;
 import swim.http.MediaType;
 import swim.recon.Recon;
+import swim.structure.Item;
+import swim.structure.Num;
+import swim.structure.Record;
+import swim.structure.Slot;
 import swim.structure.Value;
 
 public class LatestValue extends AbstractAgent {
 
+  // Merges the patches the connector sends in delta mode into the current value, after stripping
+  // the record metadata that the connector attaches with swim.trace.metadata
   @SwimLane("latest")
-  protected ValueLane<Value> latest = valueLane();
+  protected ValueLane<Value> latest = this.<Value>valueLane()
+        .willSet(newValue -> merge(this.latest.get(), received(newValue)));
+
+  // The freshness of the latest value: the topic, partition, offset and timestamp of its record,
+  // and the latency in milliseconds from the production of the record to its reception here
+  @SwimLane("freshness")
+  protected ValueLane<Value> freshness = this.<Value>valueLane();
+
+  // Receives the patches when the connector sends them to their own lane, with swim.delta.lane.uri=latestDelta
+  @SwimLane("latestDelta")
+  protected CommandLane<Value> latestDelta = this.<Value>commandLane().onCommand(patch -> this.latest.set(patch));
 
   @SwimLane("latestData")
   protected HttpLane<Value> latestData = this.<Value>httpLane().doRespond(request -> {
@@ -42,6 +59,51 @@ public class LatestValue extends AbstractAgent {
     return HttpResponse.from(HttpStatus.OK).content(entity);
   });
 
+  // Unwraps a value traced with swim.trace.metadata=attrs or wrapper, and updates its freshness
+  private Value received(Value newValue) {
+    final Value metadata;
+    final Value value;
+    if ("kafka".equals(newValue.tag())) {
+      metadata = newValue.header("kafka");
+      value = newValue.body();
+    } else if (newValue.length() == 2 && newValue.containsKey("kafka") && newValue.containsKey("value")) {
+      metadata = newValue.get("kafka");
+      value = newValue.get("value");
+    } else {
+      return newValue;
+    }
+    final long timestamp = metadata.get("timestamp").longValue(0L);
+    if (timestamp > 0L) {
+      // Producer and agent clocks are assumed to be in sync
+      this.freshness.set(metadata.updatedSlot("latency", Num.from(System.currentTimeMillis() - timestamp)));
+    }
+    return value;
+  }
+
+  // Applies a patch, eg: @patch(remove: {b}) {a: 2}, by removing and updating the listed slots
+  static Value merge(Value current, Value newValue) {
+    if (!"patch".equals(newValue.tag())) {
+      return newValue;
+    } else if (!(current instanceof Record)) {
+      // Not patchable until the next full value
+      return current;
+    }
+    // removed and updatedSlot mutate the record they are called on, which must not be the value of the lane
+    Record merged = ((Record) current).branch();
+    final Value removed = newValue.header("patch").get("remove");
+    if (removed instanceof Record) {
+      for (Item key : (Record) removed) {
+        merged = merged.removed(key.toValue());
+      }
+    }
+    for (Item item : (Record) newValue) {
+      if (item instanceof Slot) {
+        merged = merged.updatedSlot(item.key(), item.toValue());
+      }
+    }
+    return merged;
+  }
+
   @Override
   public void didStart() {
     info(nodeUri() + ": didStart");